@@ -0,0 +1,199 @@
+package com.example.university.benchmark;
+
+import com.example.university.UniversityApplication;
+import com.example.university.dto.StudentDto;
+import com.example.university.dto.SubjectDto;
+import com.example.university.dto.TeacherDto;
+import com.example.university.service.StudentService;
+import com.example.university.service.SubjectService;
+import com.example.university.service.TeacherService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Data of the benchmarks: DTOs with realistic names and the application running on a seeded embedded database.
+ *
+ * <p>The application runs on the in-memory H2 database of the {@code embedded} profile, without the web server.
+ * It is seeded through the services, the way the data gets there in production, with {@value #DEFAULT_STUDENTS}
+ * students and {@value #DEFAULT_TEACHERS} teachers by default. Every teacher teaches {@value #SUBJECTS_PER_TEACHER}
+ * subjects, and every student has {@value #TEACHERS_PER_STUDENT} teachers and {@value #SUBJECTS_PER_STUDENT}
+ * subjects, spread evenly. The volumes can be changed with the
+ * {@code benchmark.students} and {@code benchmark.teachers} system properties of the forked JVM, e.g.
+ * {@code -jvmArgsAppend -Dbenchmark.students=100000}.
+ */
+final class BenchmarkData {
+
+    static final int DEFAULT_STUDENTS = 20_000;
+
+    static final int DEFAULT_TEACHERS = 500;
+
+    static final int STUDENTS = Integer.getInteger("benchmark.students", DEFAULT_STUDENTS);
+
+    static final int TEACHERS = Integer.getInteger("benchmark.teachers", DEFAULT_TEACHERS);
+
+    static final int SUBJECTS_PER_TEACHER = 2;
+
+    static final int TEACHERS_PER_STUDENT = 5;
+
+    static final int SUBJECTS_PER_STUDENT = 5;
+
+    private static final int SEED_CHUNK = 1000;
+
+    private static final String[] FIRST_NAMES = {"Ivan", "Anna", "Ilyas", "Maria", "Petr", "Olga", "Sergey", "Elena", "Timur",
+        "Aigerim", "Nikolay", "Daria", "Alexey", "Kamila", "Dmitry", "Sofia", "Ruslan", "Yulia", "Arman", "Natalia"};
+
+    private static final String[] LAST_NAMES = {"Ivanov", "Petrova", "Nasirov", "Smirnova", "Sidorov", "Kuznetsova", "Popov",
+        "Volkova", "Sokolov", "Lebedeva", "Kozlov", "Novikova", "Morozov", "Pavlova", "Zhukov", "Orlova", "Bekov", "Abenova"};
+
+    private static final String[] MIDDLE_NAMES = {"Ivanovich", "Sergeevna", "Urakbayevich", "Petrovna", "Alekseevich", "Olegovna"};
+
+    private static final String[] SUBJECT_NAMES = {"Mathematics", "Physics", "Chemistry", "Biology", "History", "Literature",
+        "Computer Science", "Economics", "Philosophy", "Geography"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Starts the application on a new empty in-memory database of the {@code embedded} profile.
+     *
+     * @param cacheType the {@code spring.cache.type}, {@code none} to measure the services without the by-id caches
+     * @return the running application
+     */
+    static ConfigurableApplicationContext startApplication(String cacheType) {
+        return new SpringApplicationBuilder(UniversityApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("embedded")
+                .run("--spring.cache.type=" + cacheType,
+                        "--university.roster-counts.reconcile.enabled=false",
+                        "--logging.level.root=warn");
+    }
+
+    /**
+     * Seeds the database of the application with the benchmark volumes.
+     *
+     * @param context the running application
+     * @return the ids of the seeded rows
+     */
+    static Seed seed(ConfigurableApplicationContext context) {
+        StudentService studentService = context.getBean(StudentService.class);
+        TeacherService teacherService = context.getBean(TeacherService.class);
+        SubjectService subjectService = context.getBean(SubjectService.class);
+
+        List<Integer> teacherIds = new ArrayList<>(TEACHERS);
+        for (TeacherDto teacher : teacherService.saveTeachers(teachers(TEACHERS))) {
+            teacherIds.add(teacher.getId());
+        }
+        List<Integer> subjectIds = new ArrayList<>(TEACHERS * SUBJECTS_PER_TEACHER);
+        for (int teacherId : teacherIds) {
+            for (SubjectDto subject : subjectService.saveSubjects(teacherId, subjects(subjectIds.size(), SUBJECTS_PER_TEACHER))) {
+                subjectIds.add(subject.getId());
+            }
+        }
+        List<Integer> studentIds = new ArrayList<>(STUDENTS);
+        List<StudentDto> students = students(STUDENTS);
+        for (int from = 0; from < students.size(); from += SEED_CHUNK) {
+            List<StudentDto> chunk = students.subList(from, Math.min(from + SEED_CHUNK, students.size()));
+            for (StudentDto student : studentService.saveStudents(chunk)) {
+                studentIds.add(student.getId());
+            }
+        }
+        assign(studentIds, teacherIds, TEACHERS_PER_STUDENT, teacherService::addStudentsToTeacher);
+        assign(studentIds, subjectIds, SUBJECTS_PER_STUDENT, subjectService::addStudentsToSubject);
+        return new Seed(studentIds, teacherIds, subjectIds);
+    }
+
+    /**
+     * Creates students with ids from 1, names repeating like real ones, and the seeded number of subjects.
+     *
+     * @param count the number of students
+     * @return the students
+     */
+    static List<StudentDto> students(int count) {
+        List<StudentDto> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(new StudentDto(i + 1, FIRST_NAMES[i % FIRST_NAMES.length], LAST_NAMES[i / FIRST_NAMES.length % LAST_NAMES.length],
+                    MIDDLE_NAMES[i % MIDDLE_NAMES.length], 17 + i % 10, SUBJECTS_PER_STUDENT));
+        }
+        return students;
+    }
+
+    /**
+     * Creates teachers with ids from 1, names repeating like real ones, and the seeded average number of students.
+     *
+     * @param count the number of teachers
+     * @return the teachers
+     */
+    static List<TeacherDto> teachers(int count) {
+        List<TeacherDto> teachers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            teachers.add(new TeacherDto(i + 1, FIRST_NAMES[(i + 7) % FIRST_NAMES.length], LAST_NAMES[i % LAST_NAMES.length],
+                    MIDDLE_NAMES[i % MIDDLE_NAMES.length], 30 + i % 35, STUDENTS * TEACHERS_PER_STUDENT / TEACHERS));
+        }
+        return teachers;
+    }
+
+    /**
+     * Creates subjects with ids following the given offset and the seeded average number of students.
+     *
+     * @param offset the number of subjects created before
+     * @param count  the number of subjects
+     * @return the subjects
+     */
+    static List<SubjectDto> subjects(int offset, int count) {
+        List<SubjectDto> subjects = new ArrayList<>(count);
+        int studentCount = STUDENTS * SUBJECTS_PER_STUDENT / (TEACHERS * SUBJECTS_PER_TEACHER);
+        for (int i = offset; i < offset + count; i++) {
+            subjects.add(new SubjectDto(i + 1, SUBJECT_NAMES[i % SUBJECT_NAMES.length] + " " + (i / SUBJECT_NAMES.length + 1), studentCount));
+        }
+        return subjects;
+    }
+
+    /**
+     * Returns the id of a teacher the student at the given position was not assigned by {@link #seed}.
+     *
+     * @param seed    the seeded ids
+     * @param student the position of the student in {@link Seed#studentIds}
+     * @return the id of the teacher
+     */
+    static int unassignedTeacher(Seed seed, int student) {
+        return seed.teacherIds.get((student * TEACHERS_PER_STUDENT + TEACHERS_PER_STUDENT) % seed.teacherIds.size());
+    }
+
+    /**
+     * Gives every student {@code perStudent} consecutive owners, so the owners get equal rosters.
+     */
+    private static void assign(List<Integer> studentIds, List<Integer> ownerIds, int perStudent, BiConsumer<Integer, List<Integer>> add) {
+        Map<Integer, List<Integer>> rosters = new HashMap<>();
+        for (int i = 0; i < studentIds.size(); i++) {
+            for (int k = 0; k < perStudent; k++) {
+                int owner = ownerIds.get((i * perStudent + k) % ownerIds.size());
+                rosters.computeIfAbsent(owner, o -> new ArrayList<>()).add(studentIds.get(i));
+            }
+        }
+        rosters.forEach(add);
+    }
+
+    /**
+     * Ids of the seeded rows, in the order they were created.
+     */
+    static final class Seed {
+
+        final List<Integer> studentIds;
+
+        final List<Integer> teacherIds;
+
+        final List<Integer> subjectIds;
+
+        Seed(List<Integer> studentIds, List<Integer> teacherIds, List<Integer> subjectIds) {
+            this.studentIds = studentIds;
+            this.teacherIds = teacherIds;
+            this.subjectIds = subjectIds;
+        }
+    }
+}
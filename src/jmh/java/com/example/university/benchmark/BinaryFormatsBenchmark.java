@@ -0,0 +1,86 @@
+package com.example.university.benchmark;
+
+import com.example.university.config.BinaryFormatsConfig;
+import com.example.university.dto.StudentDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the JSON, Smile and CBOR encodings of lists of students, as the message converters write them.
+ *
+ * <p>The mappers are those of the converters of {@link BinaryFormatsConfig}. The payload sizes of the encodings
+ * are compared by {@code BinaryFormatsConfigTest}, this benchmark measures only the time to write and read them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BinaryFormatsBenchmark {
+
+    private static final TypeReference<List<StudentDto>> STUDENT_LIST = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"50", "10000"})
+    private int size;
+
+    private ObjectMapper mapper;
+
+    private List<StudentDto> students;
+
+    private byte[] payload;
+
+    /**
+     * Creates the mapper of the format, the list and the payload the read benchmark parses.
+     *
+     * @throws IOException never, the DTOs are always serializable
+     */
+    @Setup
+    public void setUp() throws IOException {
+        mapper = mapper(format);
+        students = BenchmarkData.students(size);
+        payload = mapper.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public byte[] writeStudents() throws IOException {
+        return mapper.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public List<StudentDto> readStudents() throws IOException {
+        return mapper.readValue(payload, STUDENT_LIST);
+    }
+
+    private static ObjectMapper mapper(String format) {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json().modulesToInstall(ParameterNamesModule.class);
+        switch (format) {
+            case "smile":
+                return new BinaryFormatsConfig().smileHttpMessageConverter(builder).getObjectMapper();
+            case "cbor":
+                return new BinaryFormatsConfig().cborHttpMessageConverter(builder).getObjectMapper();
+            default:
+                return builder.build();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.university.benchmark;
+
+import com.example.university.dto.StudentDto;
+import com.example.university.dto.SubjectDto;
+import com.example.university.dto.TeacherDto;
+import com.example.university.entity.Student;
+import com.example.university.entity.Subject;
+import com.example.university.entity.Teacher;
+import com.example.university.mapper.StudentMapper;
+import com.example.university.mapper.StudentMapperImpl;
+import com.example.university.mapper.SubjectMapper;
+import com.example.university.mapper.SubjectMapperImpl;
+import com.example.university.mapper.TeacherMapper;
+import com.example.university.mapper.TeacherMapperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the conversions of the MapStruct mappers between entities and DTOs.
+ *
+ * <p>Every service call that returns an entity goes through one of them, so they are measured one object at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MapperBenchmark {
+
+    private final StudentMapper studentMapper = new StudentMapperImpl();
+
+    private final TeacherMapper teacherMapper = new TeacherMapperImpl();
+
+    private final SubjectMapper subjectMapper = new SubjectMapperImpl();
+
+    private StudentDto studentDto;
+
+    private TeacherDto teacherDto;
+
+    private SubjectDto subjectDto;
+
+    private Student student;
+
+    private Teacher teacher;
+
+    private Subject subject;
+
+    /**
+     * Creates the DTOs and their entities, without relationships, as the services convert them.
+     */
+    @Setup
+    public void setUp() {
+        studentDto = BenchmarkData.students(1).get(0);
+        teacherDto = BenchmarkData.teachers(1).get(0);
+        subjectDto = BenchmarkData.subjects(0, 1).get(0);
+        student = studentMapper.dtoToEntity(studentDto);
+        teacher = teacherMapper.dtoToEntity(teacherDto);
+        subject = subjectMapper.dtoToEntity(subjectDto);
+    }
+
+    @Benchmark
+    public StudentDto studentEntityToDto() {
+        return studentMapper.entityToDto(student);
+    }
+
+    @Benchmark
+    public Student studentDtoToEntity() {
+        return studentMapper.dtoToEntity(studentDto);
+    }
+
+    @Benchmark
+    public TeacherDto teacherEntityToDto() {
+        return teacherMapper.entityToDto(teacher);
+    }
+
+    @Benchmark
+    public Teacher teacherDtoToEntity() {
+        return teacherMapper.dtoToEntity(teacherDto);
+    }
+
+    @Benchmark
+    public SubjectDto subjectEntityToDto() {
+        return subjectMapper.entityToDto(subject);
+    }
+
+    @Benchmark
+    public Subject subjectDtoToEntity() {
+        return subjectMapper.dtoToEntity(subjectDto);
+    }
+}
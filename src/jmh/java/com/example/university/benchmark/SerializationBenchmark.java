@@ -0,0 +1,87 @@
+package com.example.university.benchmark;
+
+import com.example.university.dto.StudentDto;
+import com.example.university.dto.SubjectDto;
+import com.example.university.dto.TeacherDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the JSON serialization of lists of DTOs, as the controllers write them.
+ *
+ * <p>The mapper is built like the one of the application. The lists have the size of a page of the
+ * cursor pagination, of a roster and of a large export.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SerializationBenchmark {
+
+    private static final TypeReference<List<StudentDto>> STUDENT_LIST = new TypeReference<>() {
+    };
+
+    @Param({"50", "1000", "10000"})
+    private int size;
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(ParameterNamesModule.class).build();
+
+    private List<StudentDto> students;
+
+    private List<TeacherDto> teachers;
+
+    private List<SubjectDto> subjects;
+
+    private byte[] studentsJson;
+
+    /**
+     * Creates the lists and the JSON the read benchmark parses.
+     *
+     * @throws IOException never, the DTOs are always serializable
+     */
+    @Setup
+    public void setUp() throws IOException {
+        students = BenchmarkData.students(size);
+        teachers = BenchmarkData.teachers(size);
+        subjects = BenchmarkData.subjects(0, size);
+        studentsJson = mapper.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public byte[] writeStudents() throws IOException {
+        return mapper.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public byte[] writeTeachers() throws IOException {
+        return mapper.writeValueAsBytes(teachers);
+    }
+
+    @Benchmark
+    public byte[] writeSubjects() throws IOException {
+        return mapper.writeValueAsBytes(subjects);
+    }
+
+    @Benchmark
+    public List<StudentDto> readStudents() throws IOException {
+        return mapper.readValue(studentsJson, STUDENT_LIST);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.university.benchmark;
+
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
+import com.example.university.dto.StudentDto;
+import com.example.university.dto.TeacherDto;
+import com.example.university.dto.TeacherStats;
+import com.example.university.dto.Versioned;
+import com.example.university.service.StudentService;
+import com.example.university.service.TeacherService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the read and write paths of the services against the seeded embedded database.
+ *
+ * <p>The services are called through their Spring proxies, with the transactions, caches and name indexes
+ * of the application, so a call costs what it costs behind a controller. The {@code cache} parameter
+ * measures the by-id reads once with the Caffeine caches and once without them. The write benchmarks undo
+ * their change in the same invocation, so the volumes stay the same whatever the number of invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class ServiceBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final int LOOKUP_SIZE = 100;
+
+    @Param({"caffeine", "none"})
+    private String cache;
+
+    private ConfigurableApplicationContext context;
+
+    private BenchmarkData.Seed seed;
+
+    private StudentService studentService;
+
+    private TeacherService teacherService;
+
+    /**
+     * Starts the application and seeds its database, which takes a while for the default volumes.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.startApplication(cache);
+        seed = BenchmarkData.seed(context);
+        studentService = context.getBean(StudentService.class);
+        teacherService = context.getBean(TeacherService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Versioned<StudentDto> getStudentById() {
+        return studentService.getStudentById(randomStudent());
+    }
+
+    @Benchmark
+    public CursorPage<StudentDto> getFirstPageOfStudents() {
+        return studentService.getStudents(null, PAGE_SIZE);
+    }
+
+    /**
+     * Looks up a hundred random students, most of them outside the cache.
+     *
+     * @return the found students
+     */
+    @Benchmark
+    public BatchLookup<StudentDto> getStudentsByIds() {
+        List<Integer> ids = new ArrayList<>(LOOKUP_SIZE);
+        for (int i = 0; i < LOOKUP_SIZE; i++) {
+            ids.add(randomStudent());
+        }
+        return studentService.getStudentsByIds(ids);
+    }
+
+    @Benchmark
+    public List<StudentDto> searchStudents() {
+        return studentService.searchStudents("Iv", PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<TeacherDto> getAllTeachersOfStudent() {
+        return studentService.getAllTeachersOfStudent(randomStudent());
+    }
+
+    @Benchmark
+    public List<StudentDto> getAllStudentsOfTeacher() {
+        return teacherService.getAllStudentsOfTeacher(randomTeacher());
+    }
+
+    @Benchmark
+    public CursorPage<TeacherStats> getTeacherStatsByStudents() {
+        return teacherService.getTeacherStats("students", null, PAGE_SIZE);
+    }
+
+    /**
+     * Reads a random student and changes its age, the way a client updates a student it has read.
+     *
+     * @return the updated student
+     */
+    @Benchmark
+    public StudentDto updateStudent() {
+        int id = randomStudent();
+        StudentDto student = studentService.getStudentById(id).getValue();
+        StudentDto changed = StudentDto.builder()
+                .firstName(student.getFirstName())
+                .lastName(student.getLastName())
+                .middleName(student.getMiddleName())
+                .age(17 + ThreadLocalRandom.current().nextInt(10))
+                .build();
+        return studentService.updateStudent(id, changed, null);
+    }
+
+    /**
+     * Creates a student and deletes it again.
+     */
+    @Benchmark
+    public void saveAndDeleteStudent() {
+        StudentDto student = BenchmarkData.students(1).get(0);
+        student.setId(0);
+        student = studentService.saveStudent(student);
+        studentService.deleteStudent(student.getId());
+    }
+
+    /**
+     * Adds a teacher to a random student and removes it again, which updates both counters and versions twice.
+     */
+    @Benchmark
+    public void addAndDeleteTeacherOfStudent() {
+        int student = ThreadLocalRandom.current().nextInt(seed.studentIds.size());
+        int studentId = seed.studentIds.get(student);
+        int teacherId = BenchmarkData.unassignedTeacher(seed, student);
+        studentService.addTeacherToStudent(studentId, teacherId);
+        studentService.deleteTeacherFromStudent(studentId, teacherId);
+    }
+
+    private int randomStudent() {
+        return seed.studentIds.get(ThreadLocalRandom.current().nextInt(seed.studentIds.size()));
+    }
+
+    private int randomTeacher() {
+        return seed.teacherIds.get(ThreadLocalRandom.current().nextInt(seed.teacherIds.size()));
+    }
+}
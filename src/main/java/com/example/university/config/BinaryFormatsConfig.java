@@ -0,0 +1,41 @@
+package com.example.university.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Configuration class that adds the binary Smile and CBOR encodings to content negotiation.
+ *
+ * <p>A client that sends {@code Accept: application/x-jackson-smile} or {@code Accept: application/cbor}
+ * gets the DTOs in that encoding, and request bodies are read in the encoding named by their
+ * {@code Content-Type}. Smile also writes every repeated field name as a one-byte back reference,
+ * which makes long lists of DTOs much smaller than JSON.
+ *
+ * <p>Both mappers are built from the application's {@link Jackson2ObjectMapperBuilder}, so they use the
+ * same {@code spring.jackson} settings and modules as JSON. The converters take the place of the default
+ * ones after the JSON converter, so JSON stays the default when the client accepts anything.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+
+    /**
+     * Media type of Jackson Smile.
+     */
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
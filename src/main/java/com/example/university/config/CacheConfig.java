@@ -0,0 +1,49 @@
+package com.example.university.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Configuration class that enables the by-id caches of the services.
+ *
+ * <p>The caches are Caffeine caches created at startup from the {@code spring.cache} properties,
+ * which bound their size and time to live and turn on statistics. The statistics are published as
+ * the {@code cache.gets}, {@code cache.puts} and {@code cache.evictions} metrics of the actuator.
+ *
+ * <p>The cached values are the DTOs returned by the {@code get...ById} methods, each with the version it
+ * was read with, which is the ETag of the DTO. They don't contain relationships, only the sizes of the
+ * rosters, so besides the methods that change or delete the entity itself, the methods that change a
+ * roster evict the DTOs whose size or version they changed. A changed DTO is read again on its next
+ * request, when its new version is known.
+ *
+ * <p>The cache advice wraps the transaction advice, which keeps Spring's default lowest precedence.
+ * A {@code @CacheEvict} is therefore applied after the transaction has committed, so a read between the
+ * write and the commit can't leave the old row in the cache, and not at all when it rolls back. The methods
+ * whose affected ids are only known while they run evict them one by one when their transaction commits
+ * in the same way.
+ */
+@Configuration
+@EnableCaching(order = CacheConfig.CACHE_ADVICE_ORDER)
+public class CacheConfig {
+
+    /**
+     * Order of the cache advice, just before the transaction advice at {@link Ordered#LOWEST_PRECEDENCE}.
+     */
+    public static final int CACHE_ADVICE_ORDER = Ordered.LOWEST_PRECEDENCE - 1;
+
+    /**
+     * Name of the cache of the versioned {@link com.example.university.dto.StudentDto} by id.
+     */
+    public static final String STUDENTS = "students";
+
+    /**
+     * Name of the cache of the versioned {@link com.example.university.dto.TeacherDto} by id.
+     */
+    public static final String TEACHERS = "teachers";
+
+    /**
+     * Name of the cache of the versioned {@link com.example.university.dto.SubjectDto} by id.
+     */
+    public static final String SUBJECTS = "subjects";
+}
@@ -0,0 +1,33 @@
+package com.example.university.config;
+
+import com.example.university.export.DtoExporter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration class for the streamed exports.
+ *
+ * <p>The exports run as async requests. {@link DtoExporter} watches them, so that the export permit of a
+ * request whose body never runs is given back as well.
+ */
+@Configuration
+public class ExportConfig {
+
+    /**
+     * Registers the exporter with the async requests of Spring MVC, which tells it when each of them ends.
+     *
+     * @param exporter the exporter
+     * @return the configurer of Spring MVC
+     */
+    @Bean
+    public WebMvcConfigurer exportPermitInterceptor(DtoExporter exporter) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.registerCallableInterceptors(exporter);
+            }
+        };
+    }
+}
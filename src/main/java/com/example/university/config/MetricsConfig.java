@@ -0,0 +1,63 @@
+package com.example.university.config;
+
+import com.example.university.metrics.HibernateRequestMetrics;
+import com.example.university.metrics.ServiceMetricsAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import java.util.List;
+
+/**
+ * Configuration class for the latency and throughput metrics of the application.
+ *
+ * <p>Every layer is timed: the controllers by the {@code http.server.requests} timer of Spring MVC,
+ * the services by {@link ServiceMetricsAspect} and the repositories by the
+ * {@code spring.data.repository.invocations} timer of Spring Data. Each timer also counts the calls,
+ * and the {@code management.metrics.distribution} properties turn on their percentiles.
+ *
+ * <p>Below them, the {@code hikaricp.connections.*} gauges show how busy the connection pool is and how
+ * many threads wait for a connection, and {@link HibernateRequestMetrics} shows how many queries,
+ * entity loads and collection fetches each route causes.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public HibernateRequestMetrics hibernateRequestMetrics(MeterRegistry registry) {
+        return new HibernateRequestMetrics(registry);
+    }
+
+    /**
+     * Registers the per-request counters with Hibernate.
+     *
+     * @param metrics the per-request counters
+     * @return the customizer of the Hibernate properties
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateRequestMetricsCustomizer(HibernateRequestMetrics metrics) {
+        return properties -> {
+            properties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(metrics));
+            properties.put("hibernate.session.events.auto", HibernateRequestMetrics.StatementCounter.class.getName());
+        };
+    }
+
+    /**
+     * Registers the per-request counters with Spring MVC, which starts and records them around each request.
+     *
+     * @param metrics the per-request counters
+     * @return the configurer of Spring MVC
+     */
+    @Bean
+    public WebMvcConfigurer hibernateRequestMetricsInterceptor(HibernateRequestMetrics metrics) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(metrics);
+            }
+        };
+    }
+}
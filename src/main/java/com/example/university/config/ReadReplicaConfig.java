@@ -0,0 +1,122 @@
+package com.example.university.config;
+
+import com.example.university.datasource.ReadReplicaProperties;
+import com.example.university.datasource.ReplicaPinningInterceptor;
+import com.example.university.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration class that spreads the read-only transactions over read replicas of the database.
+ *
+ * <p>It is on when at least one replica is listed in {@code university.datasource.replicas}. The pool of
+ * {@code spring.datasource} then becomes the {@code primary} pool, which gets every write, and each replica
+ * gets a pool of its own, {@code replica-1} and so on, with the same settings. The data source of the
+ * application is a {@link ReplicaRoutingDataSource} over these pools. The services mark their reads
+ * {@code @Transactional(readOnly = true)}, so those go to the replicas. All the reads of a request go to
+ * the same replica, so that an ETag and the body it stands for are read from the same state.
+ *
+ * <p>Any two databases with the same schema can be tried out as primary and replica, for example two local
+ * PostgreSQL instances with the {@code replica} profile. Writes aren't copied to such a replica, so its
+ * reads only show what it was given.
+ */
+@Configuration
+@ConditionalOnProperty(name = "university.datasource.replicas[0].url")
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+public class ReadReplicaConfig {
+
+    /**
+     * Creates the pool of the primary the way Spring Boot creates the pool of the single database.
+     *
+     * @param properties the {@code spring.datasource} properties
+     * @return the pool, bound to the {@code spring.datasource.hikari} properties
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * Creates the pools of the replicas with the settings of the primary and starts their health checks.
+     *
+     * <p>Spring Boot only adds its connection pool metrics to the pools that are beans, so the replica
+     * pools report to the meter registry themselves, tagged with their pool names.
+     *
+     * @param primaryDataSource the pool of the primary
+     * @param properties        the replicas
+     * @param meterRegistry     the registry of the pool metrics, if metrics are on
+     * @return the data source that routes between the pools
+     */
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource, ReadReplicaProperties properties,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReadReplicaProperties.Replica replica : properties.getReplicas()) {
+            HikariConfig config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setJdbcUrl(replica.getUrl());
+            if (replica.getUsername() != null) {
+                config.setUsername(replica.getUsername());
+                config.setPassword(replica.getPassword());
+            }
+            config.setPoolName("replica-" + (replicas.size() + 1));
+            // a replica that is down stays unusable until a health check reaches it, instead of failing the startup
+            config.setInitializationFailTimeout(-1);
+            meterRegistry.ifAvailable(registry -> config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(new HikariDataSource(config));
+        }
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                properties.getLagQuery(), properties.getMaxLag());
+        dataSource.startHealthChecks(properties.getHealthCheckInterval());
+        return dataSource;
+    }
+
+    /**
+     * Creates the data source of the application, which takes its connections from the routing data
+     * source at the first statement of a transaction, once the transaction is known to be read-only.
+     *
+     * @param replicaRoutingDataSource the data source that routes between the pools
+     * @return the data source used by JPA, Liquibase and the health checks
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * Registers the {@link ReplicaPinningInterceptor} with Spring MVC, which pins each request to one replica.
+     *
+     * @param replicaRoutingDataSource the data source that routes between the pools
+     * @return the configurer of Spring MVC
+     */
+    @Bean
+    public WebMvcConfigurer replicaPinningInterceptor(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        ReplicaPinningInterceptor interceptor = new ReplicaPinningInterceptor(replicaRoutingDataSource);
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor);
+            }
+        };
+    }
+}
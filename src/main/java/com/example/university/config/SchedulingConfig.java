@@ -0,0 +1,17 @@
+package com.example.university.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuration class that runs the {@code @Scheduled} background jobs.
+ *
+ * <p>The jobs run one at a time on the single thread of the scheduler Spring Boot creates, sized by
+ * {@code spring.task.scheduling.pool.size}, so they never compete with each other for connections.
+ *
+ * @see com.example.university.service.RosterCountReconciler
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
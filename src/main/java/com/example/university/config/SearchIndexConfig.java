@@ -0,0 +1,60 @@
+package com.example.university.config;
+
+import com.example.university.dto.StudentDto;
+import com.example.university.dto.TeacherDto;
+import com.example.university.search.NamePrefixIndex;
+import com.example.university.service.StudentService;
+import com.example.university.service.TeacherService;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration class for the in-memory name search indexes of students and teachers.
+ *
+ * <p>The indexes are filled from the database once all singletons are created, before the web server
+ * starts accepting requests, and are then kept up to date by the services on every create, update and
+ * delete. Each index holds only the names and ids of its entities.
+ */
+@Configuration
+public class SearchIndexConfig {
+
+    @Bean
+    public NamePrefixIndex<StudentDto> studentNameIndex() {
+        return new NamePrefixIndex<>(StudentDto::getId, s -> Arrays.asList(s.getFirstName(), s.getLastName(), s.getMiddleName()));
+    }
+
+    @Bean
+    public NamePrefixIndex<TeacherDto> teacherNameIndex() {
+        return new NamePrefixIndex<>(TeacherDto::getId, t -> Arrays.asList(t.getFirstName(), t.getLastName(), t.getMiddleName()));
+    }
+
+    /**
+     * Fills the indexes from one consistent export of each table.
+     *
+     * <p>The rows are collected first and added outside the export transaction, so they are indexed
+     * directly instead of being deferred until the transaction commits.
+     *
+     * @param studentService   the service that exports the students
+     * @param teacherService   the service that exports the teachers
+     * @param studentNameIndex the index of the students
+     * @param teacherNameIndex the index of the teachers
+     * @return the initializer of the indexes
+     */
+    @Bean
+    public SmartInitializingSingleton nameIndexLoader(StudentService studentService, TeacherService teacherService,
+                                                      NamePrefixIndex<StudentDto> studentNameIndex,
+                                                      NamePrefixIndex<TeacherDto> teacherNameIndex) {
+        return () -> {
+            List<StudentDto> students = new ArrayList<>();
+            studentService.exportStudents(students::add);
+            studentNameIndex.putAll(students);
+            List<TeacherDto> teachers = new ArrayList<>();
+            teacherService.exportTeachers(teachers::add);
+            teacherNameIndex.putAll(teachers);
+        };
+    }
+}
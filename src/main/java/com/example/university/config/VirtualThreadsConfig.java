@@ -0,0 +1,93 @@
+package com.example.university.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Configuration class that runs request handling and async work on virtual threads.
+ *
+ * <p>The requests block on JDBC most of the time. On the default pool of {@code server.tomcat.threads.max}
+ * platform threads, requests queue for a thread while the busy threads wait for PostgreSQL. With
+ * {@code university.virtual-threads.enabled=true}, Tomcat runs every request on a new virtual thread.
+ * The {@code applicationTaskExecutor} does the same, and it also runs the streaming exports. The number
+ * of concurrent requests is then bounded by {@code server.tomcat.max-connections}. The number of concurrent
+ * queries is bounded by the Hikari pool, which is sized on its own with {@code spring.datasource.hikari.maximum-pool-size}.
+ *
+ * <p>Virtual threads need Java 21. The executor is created reflectively, so the application still
+ * builds for and runs on older Java versions. Turning the mode on there logs a warning and leaves
+ * the pooled platform threads of Tomcat and of the {@code applicationTaskExecutor} in place.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "university.virtual-threads.enabled", havingValue = "true")
+@Conditional(VirtualThreadsConfig.OnVirtualThreadsSupported.class)
+public class VirtualThreadsConfig {
+
+    private static final String NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = "newVirtualThreadPerTaskExecutor";
+
+    /**
+     * Creates the executor that starts a new virtual thread for every task.
+     *
+     * @return the executor, shut down with the application context
+     */
+    @Bean
+    public ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR).invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot create the virtual thread executor", e);
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /**
+     * Replaces the pooled {@code applicationTaskExecutor} that Spring MVC uses for async requests
+     * and {@code @Async} methods use by default.
+     *
+     * @param virtualThreadExecutor the virtual thread executor
+     * @return the executor adapted to the task executor interfaces
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    /**
+     * Matches when the Java runtime has virtual threads, and warns that the mode is ignored when it hasn't.
+     */
+    static class OnVirtualThreadsSupported extends SpringBootCondition {
+
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            int feature = Runtime.version().feature();
+            try {
+                Executors.class.getMethod(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR);
+                return ConditionOutcome.match("Java " + feature + " has virtual threads");
+            } catch (NoSuchMethodException e) {
+                log.warn("university.virtual-threads.enabled needs Java 21 or newer, running on platform threads on Java {}", feature);
+                return ConditionOutcome.noMatch("Java " + feature + " has no virtual threads");
+            }
+        }
+    }
+}
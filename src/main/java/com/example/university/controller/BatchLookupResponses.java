@@ -0,0 +1,33 @@
+package com.example.university.controller;
+
+import com.example.university.dto.BatchLookup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a {@link BatchLookup} into a response.
+ *
+ * <p>The body is a plain JSON array of the entities that were found, in request order, like the
+ * other collection endpoints. The ids that were not found are sent comma separated in the
+ * {@code X-Missing-Ids} header, which is absent when every id was found.
+ */
+final class BatchLookupResponses {
+
+    static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+
+    private BatchLookupResponses() {
+    }
+
+    static <T> ResponseEntity<List<T>> toResponse(BatchLookup<T> lookup) {
+        HttpHeaders headers = new HttpHeaders();
+        if (!lookup.getMissingIds().isEmpty()) {
+            headers.add(MISSING_IDS_HEADER, lookup.getMissingIds().stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(",")));
+        }
+        return new ResponseEntity<>(lookup.getItems(), headers, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.university.controller;
+
+import com.example.university.config.BinaryFormatsConfig;
+import com.example.university.dto.VersionStamp;
+import com.example.university.dto.Versioned;
+import com.example.university.exception.EntityVersionMismatchException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Strong ETags computed from entity versions.
+ *
+ * <p>A single entity is tagged with the version it was read with, which comes with the entity as a
+ * {@link Versioned}, mostly from the cache. A collection or a page is tagged with its {@link VersionStamp},
+ * which is read with one small query before the body, so a request whose {@code If-None-Match}
+ * matches is answered with {@code 304 Not Modified} without reading or serializing the body.
+ *
+ * <p>The Smile and CBOR encodings of a body are different representations, so their ETags get a
+ * {@code +smile} or {@code +cbor} suffix and the responses vary by {@code Accept}.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    static String of(VersionStamp stamp) {
+        return "\"" + stamp.getOwnerVersion() + "-" + stamp.getCount() + "-" + stamp.getIdSum() + "-" + stamp.getVersionSum() + "\"";
+    }
+
+    static <T> ResponseEntity<T> conditional(WebRequest request, Versioned<T> versioned) {
+        return conditional(request, of(versioned.getVersion()), () -> new ResponseEntity<>(versioned.getValue(), HttpStatus.OK));
+    }
+
+    static <T> ResponseEntity<T> conditional(WebRequest request, String etag, Supplier<ResponseEntity<T>> response) {
+        String variant = etag.substring(0, etag.length() - 1) + encodingSuffix(request.getHeader(HttpHeaders.ACCEPT)) + "\"";
+        if (request.checkNotModified(variant)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(variant).varyBy(HttpHeaders.ACCEPT).build();
+        }
+        ResponseEntity<T> full = response.get();
+        return ResponseEntity.status(full.getStatusCode()).headers(full.getHeaders()).eTag(variant).varyBy(HttpHeaders.ACCEPT)
+                .body(full.getBody());
+    }
+
+    /**
+     * Picks the encoding the message converters will write, in the same order of preference.
+     */
+    private static String encodingSuffix(String accept) {
+        if (accept == null) {
+            return "";
+        }
+        try {
+            List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+            MediaType.sortBySpecificityAndQuality(accepted);
+            for (MediaType mediaType : accepted) {
+                if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                    return "";
+                }
+                if (mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+                    return "+cbor";
+                }
+                if (mediaType.equalsTypeAndSubtype(BinaryFormatsConfig.APPLICATION_SMILE)) {
+                    return "+smile";
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            // the request is rejected when the response is written
+        }
+        return "";
+    }
+
+    /**
+     * Reads the version an {@code If-Match} header requires.
+     *
+     * <p>The encoding suffix is ignored, an update may be based on any representation of the entity.
+     *
+     * @param ifMatch the header value, may be {@code null}
+     * @return the required version, or {@code null} if there is no header or it is {@code *}
+     * @throws EntityVersionMismatchException if the header is not a single strong ETag of a version
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String etag = ifMatch.trim();
+        if (etag.length() > 2 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            try {
+                String version = etag.substring(1, etag.length() - 1);
+                int suffix = version.indexOf('+');
+                return Long.parseLong(suffix < 0 ? version : version.substring(0, suffix));
+            } catch (NumberFormatException e) {
+                // not an ETag of a version, so it can't match
+            }
+        }
+        throw new EntityVersionMismatchException("If-Match " + ifMatch + " doesn't match the current version");
+    }
+}
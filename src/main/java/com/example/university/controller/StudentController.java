@@ -1,8 +1,11 @@
 package com.example.university.controller;
 
+import com.example.university.dto.BatchLookup;
 import com.example.university.dto.StudentDto;
 import com.example.university.dto.SubjectDto;
 import com.example.university.dto.TeacherDto;
+import com.example.university.export.DtoExporter;
+import com.example.university.export.ExportFormat;
 import com.example.university.service.StudentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,20 +16,28 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Pattern;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for managing {@link com.example.university.entity.Student} entities.
@@ -39,32 +50,162 @@ import java.util.List;
  * with the name "Student".
  */
 @Tag(name = "Student")
+@Validated
 @RestController
 @RequestMapping("/api/students")
 public class StudentController {
 
+    // Checked by method validation, so an unknown field is rejected before the ETag is computed
+    private static final String FIELD = "(id|firstName|lastName|middleName|age|subjectCount)";
+
+    private static final String FIELDS = "|" + FIELD + "(," + FIELD + ")*";
+
+    private static final String FIELDS_MESSAGE = "Unknown field, expected some of id, firstName, lastName, middleName, age, subjectCount";
+
     @Autowired
     StudentService service;
 
-    @Operation(summary = "Get all students", description = "Returns a list of students")
-    @ApiResponse(responseCode = "200", description = "List of students",
-            content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = StudentDto.class))))
+    @Autowired
+    DtoExporter exporter;
+
+    @Operation(summary = "Get students",
+            description = "Returns a page of students ordered by id. The cursor of the next page is returned in the "
+                    + "X-Next-Cursor and Link headers; pass it back as the after parameter to get the next page.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of students",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = StudentDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Page not modified since the ETag in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Malformed cursor or limit out of range", content = @Content)
+    })
     @GetMapping
-    public ResponseEntity<List<StudentDto>> getAllStudents() {
-        List<StudentDto> list = service.getAllStudents();
-        return new ResponseEntity<>(list, HttpStatus.OK);
+    public ResponseEntity<List<StudentDto>> getAllStudents(
+            @Parameter(description = "Cursor of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "Maximum number of students in the page") @RequestParam(defaultValue = "100") int limit,
+            WebRequest request) {
+        String etag = ETags.of(service.getStudentsPageStamp(after, limit));
+        return ETags.conditional(request, etag, () -> CursorPageResponses.toResponse(service.getStudents(after, limit)));
+    }
+
+    @Operation(summary = "Get students with selected fields",
+            description = "Returns a page of students like the endpoint without the fields parameter, but each student only has "
+                    + "the requested fields. Only the columns of those fields are read from the database.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of students with the requested fields",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "304", description = "Page not modified since the ETag in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Malformed cursor, limit out of range or unknown field", content = @Content)
+    })
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllStudentsFields(
+            @Parameter(description = "Cursor of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "Maximum number of students in the page") @RequestParam(defaultValue = "100") int limit,
+            @Parameter(description = "Comma separated fields to return, the id is always included")
+            @RequestParam @Pattern(regexp = FIELDS, message = FIELDS_MESSAGE) String fields,
+            WebRequest request) {
+        String etag = ETags.of(service.getStudentsPageStamp(after, limit));
+        return ETags.conditional(request, etag, () -> CursorPageResponses.toResponse(service.getStudents(after, limit, fields)));
+    }
+
+    @Operation(summary = "Get students by ids",
+            description = "Returns the students with the given ids in the order the ids were requested, read with a single query. "
+                    + "Ids without a student are skipped and listed in the X-Missing-Ids header instead of failing the request.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Students found",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = StudentDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Malformed id or more than " + BatchLookup.MAX_IDS + " ids", content = @Content)
+    })
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<StudentDto>> getStudentsByIds(
+            @Parameter(description = "Comma separated ids of the students") @RequestParam List<Integer> ids) {
+        return BatchLookupResponses.toResponse(service.getStudentsByIds(ids));
+    }
+
+    @Operation(summary = "Get students by ids with selected fields",
+            description = "Returns the students with the given ids like the endpoint without the fields parameter, but each student "
+                    + "only has the requested fields. Only the columns of those fields are read from the database.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Students found with the requested fields",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Malformed id, unknown field or more than " + BatchLookup.MAX_IDS + " ids",
+                    content = @Content)
+    })
+    @GetMapping(params = {"ids", "fields"})
+    public ResponseEntity<List<Map<String, Object>>> getStudentsByIdsFields(
+            @Parameter(description = "Comma separated ids of the students") @RequestParam List<Integer> ids,
+            @Parameter(description = "Comma separated fields to return, the id is always included")
+            @RequestParam @Pattern(regexp = FIELDS, message = FIELDS_MESSAGE) String fields) {
+        return BatchLookupResponses.toResponse(service.getStudentsByIds(ids, fields));
+    }
+
+    @Operation(summary = "Export all students",
+            description = "Streams every student in id order as newline-delimited JSON or CSV, read from one consistent snapshot")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Students exported",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            @ApiResponse(responseCode = "400", description = "Unsupported format", content = @Content)
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStudents(
+            @Parameter(description = "Export format: ndjson or csv") @RequestParam(defaultValue = "ndjson") String format) {
+        return exporter.toResponse(ExportFormat.fromParameter(format), "students", StudentDto.class, service::exportStudents);
+    }
+
+    @Operation(summary = "Search students by name",
+            description = "Returns the students whose first, last or middle name starts with the prefix, ignoring case, "
+                    + "ordered by the matching name. The students are found in an in-memory index of their names and read with one query.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Matching students",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = StudentDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Blank prefix or limit out of range", content = @Content)
+    })
+    @GetMapping("/search")
+    public ResponseEntity<List<StudentDto>> searchStudents(
+            @Parameter(description = "Beginning of a first, last or middle name") @RequestParam String prefix,
+            @Parameter(description = "Maximum number of students to return, at most 100") @RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(service.searchStudents(prefix, limit), HttpStatus.OK);
     }
 
     @Operation(summary = "Get student by id", description = "Returns a student by id. If there is no student with such id, returns 404.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Student found",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = StudentDto.class))),
+            @ApiResponse(responseCode = "304", description = "Student not modified since the ETag in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Student not found", content = @Content)
     })
     @GetMapping("/{id}")
-    public ResponseEntity<StudentDto> getStudentById(@Parameter(description = "Id of the student") @PathVariable int id) {
-        StudentDto studentDto = service.getStudentById(id);
-        return new ResponseEntity<>(studentDto, HttpStatus.OK);
+    public ResponseEntity<StudentDto> getStudentById(@Parameter(description = "Id of the student") @PathVariable int id,
+                                                     WebRequest request) {
+        return ETags.conditional(request, service.getStudentById(id));
+    }
+
+    @Operation(summary = "Get student by id with selected fields",
+            description = "Returns a student by id with only the requested fields. If there is no student with such id, returns 404.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Student found", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "304", description = "Student not modified since the ETag in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Unknown field", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Student not found", content = @Content)
+    })
+    @GetMapping(value = "/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getStudentByIdFields(@Parameter(description = "Id of the student") @PathVariable int id,
+            @Parameter(description = "Comma separated fields to return, the id is always included")
+            @RequestParam @Pattern(regexp = FIELDS, message = FIELDS_MESSAGE) String fields,
+            WebRequest request) {
+        return ETags.conditional(request, service.getStudentById(id, fields));
+    }
+
+    @Operation(summary = "Create students in bulk",
+            description = "Creates all students from the list in one transaction using batched inserts. "
+                    + "Returns the created students with their ids in the same order.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Students created",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = StudentDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Validation failed", content = @Content)
+    })
+    @PostMapping("/bulk")
+    public ResponseEntity<List<StudentDto>> saveStudents(@RequestBody List<@Valid StudentDto> studentDtos) {
+        List<StudentDto> dtos = service.saveStudents(studentDtos);
+        return new ResponseEntity<>(dtos, HttpStatus.CREATED);
     }
 
     @Operation(summary = "Create new student", description = "Creates a new student")
@@ -84,12 +225,36 @@ public class StudentController {
             @ApiResponse(responseCode = "200", description = "Student updated",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = StudentDto.class))),
             @ApiResponse(responseCode = "400", description = "Validation failed", content = @Content),
-            @ApiResponse(responseCode = "404", description = "Student not found", content = @Content)
+            @ApiResponse(responseCode = "404", description = "Student not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Student modified concurrently", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Student changed since the ETag in If-Match", content = @Content)
     })
     @PutMapping("/{id}")
     public ResponseEntity<StudentDto> updateStudent(@Parameter(description = "Id of the student") @PathVariable int id,
-                                                    @RequestBody StudentDto studentDto) {
-        StudentDto dto = service.updateStudent(id, studentDto);
+                                                    @RequestBody StudentDto studentDto,
+                                                    @Parameter(description = "ETag of the student the update is based on")
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        StudentDto dto = service.updateStudent(id, studentDto, ETags.expectedVersion(ifMatch));
+        return new ResponseEntity<>(dto, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Partially update student by id",
+            description = "Changes only the fields in the body, some of firstName, lastName, middleName and age, with a single update statement. "
+                    + "The id and the counters are read-only and ignored. If there is no student with such id, returns 404.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Student updated",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = StudentDto.class))),
+            @ApiResponse(responseCode = "400", description = "Unknown field, no fields or validation failed", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Student not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Student changed since the ETag in If-Match", content = @Content)
+    })
+    @PatchMapping("/{id}")
+    public ResponseEntity<StudentDto> patchStudent(@Parameter(description = "Id of the student") @PathVariable int id,
+                                                   @Parameter(description = "New values of the fields to change")
+                                                   @RequestBody Map<String, Object> changes,
+                                                   @Parameter(description = "ETag of the student the update is based on")
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        StudentDto dto = service.patchStudent(id, changes, ETags.expectedVersion(ifMatch));
         return new ResponseEntity<>(dto, HttpStatus.OK);
     }
 
@@ -104,6 +269,21 @@ public class StudentController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    @Operation(summary = "Delete students by ids",
+            description = "Deletes the students with the given ids with a few statements, together with their enrollments and "
+                    + "teacher assignments. Ids without a student are skipped. Returns the number of deleted students.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Students deleted",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Integer.class))),
+            @ApiResponse(responseCode = "400", description = "Malformed id", content = @Content)
+    })
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Integer> deleteStudentsByIds(
+            @Parameter(description = "Comma separated ids of the students") @RequestParam List<Integer> ids) {
+        int deleted = service.deleteStudents(ids);
+        return new ResponseEntity<>(deleted, HttpStatus.OK);
+    }
+
     @Operation(summary = "Add teacher to student", description = "Adds a teacher to a student")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Teacher added",
@@ -122,12 +302,14 @@ public class StudentController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "List of teachers",
                     content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = TeacherDto.class)))),
+            @ApiResponse(responseCode = "304", description = "List of teachers not modified since the ETag in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Student not found", content = @Content)
     })
     @GetMapping("/{id}/teachers")
-    public ResponseEntity<List<TeacherDto>> getAllTeachersOfStudent(@Parameter(description = "Id of the student") @PathVariable int id) {
-        List<TeacherDto> teachersDto = service.getAllTeachersOfStudent(id);
-        return new ResponseEntity<>(teachersDto, HttpStatus.OK);
+    public ResponseEntity<List<TeacherDto>> getAllTeachersOfStudent(@Parameter(description = "Id of the student") @PathVariable int id,
+                                                                    WebRequest request) {
+        String etag = ETags.of(service.getTeachersOfStudentStamp(id));
+        return ETags.conditional(request, etag, () -> new ResponseEntity<>(service.getAllTeachersOfStudent(id), HttpStatus.OK));
     }
 
     @Operation(summary = "Delete teacher from student", description = "Deletes a teacher from a student")
@@ -160,12 +342,14 @@ public class StudentController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "List of subjects",
                     content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = SubjectDto.class)))),
+            @ApiResponse(responseCode = "304", description = "List of subjects not modified since the ETag in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Student not found", content = @Content)
     })
     @GetMapping("/{id}/subjects")
-    public ResponseEntity<List<SubjectDto>> getAllSubjectsOfStudent(@Parameter(description = "Id of the student") @PathVariable int id) {
-        List<SubjectDto> subjectsDto = service.getAllSubjectsOfStudent(id);
-        return new ResponseEntity<>(subjectsDto, HttpStatus.OK);
+    public ResponseEntity<List<SubjectDto>> getAllSubjectsOfStudent(@Parameter(description = "Id of the student") @PathVariable int id,
+                                                                    WebRequest request) {
+        String etag = ETags.of(service.getSubjectsOfStudentStamp(id));
+        return ETags.conditional(request, etag, () -> new ResponseEntity<>(service.getAllSubjectsOfStudent(id), HttpStatus.OK));
     }
 
     @Operation(summary = "Delete subject from student", description = "Deletes a subject from a student")
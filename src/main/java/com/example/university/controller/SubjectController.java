@@ -1,6 +1,10 @@
 package com.example.university.controller;
 
+import com.example.university.dto.BatchLookup;
 import com.example.university.dto.SubjectDto;
+import com.example.university.dto.SubjectStats;
+import com.example.university.export.DtoExporter;
+import com.example.university.export.ExportFormat;
 import com.example.university.service.SubjectService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,18 +15,26 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import javax.validation.Valid;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for managing {@link com.example.university.entity.Subject} entities.
@@ -35,6 +47,7 @@ import java.util.List;
  * with the name "Subject".
  */
 @Tag(name = "Subject")
+@Validated
 @RestController
 @RequestMapping("/api/subjects")
 public class SubjectController {
@@ -42,25 +55,98 @@ public class SubjectController {
     @Autowired
     SubjectService service;
 
-    @Operation(summary = "Get all subjects", description = "Returns a list of subjects")
-    @ApiResponse(responseCode = "200", description = "List of subjects",
-            content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = SubjectDto.class))))
+    @Autowired
+    DtoExporter exporter;
+
+    @Operation(summary = "Get subjects",
+            description = "Returns a page of subjects ordered by id. The cursor of the next page is returned in the "
+                    + "X-Next-Cursor and Link headers; pass it back as the after parameter to get the next page.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of subjects",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = SubjectDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Page not modified since the ETag in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Malformed cursor or limit out of range", content = @Content)
+    })
     @GetMapping
-    public ResponseEntity<List<SubjectDto>> getAllSubject() {
-        List<SubjectDto> list = service.getAllSubjects();
-        return new ResponseEntity<>(list, HttpStatus.OK);
+    public ResponseEntity<List<SubjectDto>> getAllSubject(
+            @Parameter(description = "Cursor of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "Maximum number of subjects in the page") @RequestParam(defaultValue = "100") int limit,
+            WebRequest request) {
+        String etag = ETags.of(service.getSubjectsPageStamp(after, limit));
+        return ETags.conditional(request, etag, () -> CursorPageResponses.toResponse(service.getSubjects(after, limit)));
+    }
+
+    @Operation(summary = "Get subjects by ids",
+            description = "Returns the subjects with the given ids in the order the ids were requested, read with a single query. "
+                    + "Ids without a subject are skipped and listed in the X-Missing-Ids header instead of failing the request.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Subjects found",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = SubjectDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Malformed id or more than " + BatchLookup.MAX_IDS + " ids", content = @Content)
+    })
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<SubjectDto>> getSubjectsByIds(
+            @Parameter(description = "Comma separated ids of the subjects") @RequestParam List<Integer> ids) {
+        return BatchLookupResponses.toResponse(service.getSubjectsByIds(ids));
+    }
+
+    @Operation(summary = "Get subject stats",
+            description = "Returns a page of the number of enrolled students of every subject, counted by the database without loading them. "
+                    + "The page is ordered by id or by a count descending; the cursor of the next page is returned in the "
+                    + "X-Next-Cursor and Link headers.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of subject stats",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = SubjectStats.class)))),
+            @ApiResponse(responseCode = "400", description = "Unknown sort, malformed cursor or limit out of range", content = @Content)
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<List<SubjectStats>> getSubjectStats(
+            @Parameter(description = "Order of the page: id or students") @RequestParam(defaultValue = "id") String sort,
+            @Parameter(description = "Cursor of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "Maximum number of subjects in the page") @RequestParam(defaultValue = "100") int limit) {
+        return CursorPageResponses.toResponse(service.getSubjectStats(sort, after, limit));
+    }
+
+    @Operation(summary = "Export all subjects",
+            description = "Streams every subject in id order as newline-delimited JSON or CSV, read from one consistent snapshot")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Subjects exported",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            @ApiResponse(responseCode = "400", description = "Unsupported format", content = @Content)
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportSubjects(
+            @Parameter(description = "Export format: ndjson or csv") @RequestParam(defaultValue = "ndjson") String format) {
+        return exporter.toResponse(ExportFormat.fromParameter(format), "subjects", SubjectDto.class, service::exportSubjects);
     }
 
     @Operation(summary = "Get subject by id", description = "Returns a subject by id. If there is no subject with such id, returns 404.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Subject found",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = SubjectDto.class))),
+            @ApiResponse(responseCode = "304", description = "Subject not modified since the ETag in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Subject not found", content = @Content)
     })
     @GetMapping("/{id}")
-    public ResponseEntity<SubjectDto> getSubjectById(@Parameter(description = "Id of the subject") @PathVariable int id) {
-        SubjectDto subjectDto = service.getSubjectById(id);
-        return new ResponseEntity<>(subjectDto, HttpStatus.OK);
+    public ResponseEntity<SubjectDto> getSubjectById(@Parameter(description = "Id of the subject") @PathVariable int id,
+                                                     WebRequest request) {
+        return ETags.conditional(request, service.getSubjectById(id));
+    }
+
+    @Operation(summary = "Create subjects in bulk",
+            description = "Creates all subjects from the list for one teacher in one transaction using batched inserts. "
+                    + "Returns the created subjects with their ids in the same order. If there is no teacher with such id, returns 404.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Subjects created",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = SubjectDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Validation failed", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Teacher not found", content = @Content)
+    })
+    @PostMapping("/bulk")
+    public ResponseEntity<List<SubjectDto>> saveSubjects(@Parameter(description = "Id of the teacher") @RequestParam int teacherId,
+                                                         @RequestBody List<@Valid SubjectDto> subjectDtos) {
+        List<SubjectDto> dtos = service.saveSubjects(teacherId, subjectDtos);
+        return new ResponseEntity<>(dtos, HttpStatus.CREATED);
     }
 
     @Operation(summary = "Create new subject", description = "Creates a new subject")
@@ -86,18 +172,73 @@ public class SubjectController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    @Operation(summary = "Delete subjects by ids",
+            description = "Deletes the subjects with the given ids with a few statements, together with their enrollments. "
+                    + "Ids without a subject are skipped. Returns the number of deleted subjects.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Subjects deleted",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Integer.class))),
+            @ApiResponse(responseCode = "400", description = "Malformed id", content = @Content)
+    })
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Integer> deleteSubjectsByIds(
+            @Parameter(description = "Comma separated ids of the subjects") @RequestParam List<Integer> ids) {
+        int deleted = service.deleteSubjects(ids);
+        return new ResponseEntity<>(deleted, HttpStatus.OK);
+    }
+
     @Operation(summary = "Update subject by id", description = "Updates a subject by id. If there is no subject with such id, returns 404.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Subject updated",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = SubjectDto.class))),
             @ApiResponse(responseCode = "400", description = "Validation failed", content = @Content),
-            @ApiResponse(responseCode = "404", description = "Subject not found", content = @Content)
+            @ApiResponse(responseCode = "404", description = "Subject not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Subject modified concurrently", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Subject changed since the ETag in If-Match", content = @Content)
     })
     @PutMapping("/{id}")
     public ResponseEntity<SubjectDto> updateSubject(@Parameter(description = "Id of the subject") @PathVariable int id,
-                                                    @RequestBody SubjectDto subjectDto) {
-        SubjectDto dto = service.updateSubject(id, subjectDto);
+                                                    @RequestBody SubjectDto subjectDto,
+                                                    @Parameter(description = "ETag of the subject the update is based on")
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        SubjectDto dto = service.updateSubject(id, subjectDto, ETags.expectedVersion(ifMatch));
+        return new ResponseEntity<>(dto, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Partially update subject by id",
+            description = "Changes only the fields in the body, some of name, with a single update statement. "
+                    + "The id and the counters are read-only and ignored. If there is no subject with such id, returns 404.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Subject updated",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = SubjectDto.class))),
+            @ApiResponse(responseCode = "400", description = "Unknown field, no fields or validation failed", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Subject not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Subject changed since the ETag in If-Match", content = @Content)
+    })
+    @PatchMapping("/{id}")
+    public ResponseEntity<SubjectDto> patchSubject(@Parameter(description = "Id of the subject") @PathVariable int id,
+                                                   @Parameter(description = "New values of the fields to change")
+                                                   @RequestBody Map<String, Object> changes,
+                                                   @Parameter(description = "ETag of the subject the update is based on")
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        SubjectDto dto = service.patchSubject(id, changes, ETags.expectedVersion(ifMatch));
         return new ResponseEntity<>(dto, HttpStatus.OK);
     }
 
+    @Operation(summary = "Enroll students in subject",
+            description = "Enrolls all students from the list in a subject with a few statements. Students that are already "
+                    + "enrolled are skipped. Returns the number of newly enrolled students. If the subject or any of the "
+                    + "students doesn't exist, returns 404 and enrolls nobody.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Students enrolled",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Integer.class))),
+            @ApiResponse(responseCode = "404", description = "Subject or students not found", content = @Content)
+    })
+    @PostMapping("/{id}/students")
+    public ResponseEntity<Integer> addStudentsToSubject(@Parameter(description = "Id of the subject") @PathVariable int id,
+                                                        @Parameter(description = "Ids of the students") @RequestBody List<Integer> studentIds) {
+        int added = service.addStudentsToSubject(id, studentIds);
+        return new ResponseEntity<>(added, HttpStatus.OK);
+    }
+
 }
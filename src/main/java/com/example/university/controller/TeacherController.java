@@ -1,8 +1,12 @@
 package com.example.university.controller;
 
+import com.example.university.dto.BatchLookup;
 import com.example.university.dto.StudentDto;
 import com.example.university.dto.SubjectDto;
 import com.example.university.dto.TeacherDto;
+import com.example.university.dto.TeacherStats;
+import com.example.university.export.DtoExporter;
+import com.example.university.export.ExportFormat;
 import com.example.university.service.TeacherService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,20 +17,28 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Pattern;
 import java.util.List;
+import java.util.Map;
 
 /**
  * REST controller for managing {@link com.example.university.entity.Teacher} entities.
@@ -39,32 +51,179 @@ import java.util.List;
  * with the name "Teacher".
  */
 @Tag(name = "Teacher")
+@Validated
 @RestController
 @RequestMapping("api/teachers")
 public class TeacherController {
 
+    // Checked by method validation, so an unknown field is rejected before the ETag is computed
+    private static final String FIELD = "(id|firstName|lastName|middleName|age|studentCount)";
+
+    private static final String FIELDS = "|" + FIELD + "(," + FIELD + ")*";
+
+    private static final String FIELDS_MESSAGE = "Unknown field, expected some of id, firstName, lastName, middleName, age, studentCount";
+
     @Autowired
     TeacherService service;
 
-    @Operation(summary = "Get all teachers", description = "Returns a list of teachers")
-    @ApiResponse(responseCode = "200", description = "List of teachers",
-            content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = TeacherDto.class))))
+    @Autowired
+    DtoExporter exporter;
+
+    @Operation(summary = "Get teachers",
+            description = "Returns a page of teachers ordered by id. The cursor of the next page is returned in the "
+                    + "X-Next-Cursor and Link headers; pass it back as the after parameter to get the next page.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of teachers",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = TeacherDto.class)))),
+            @ApiResponse(responseCode = "304", description = "Page not modified since the ETag in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Malformed cursor or limit out of range", content = @Content)
+    })
     @GetMapping
-    public ResponseEntity<List<TeacherDto>> getAllTeachers() {
-        List<TeacherDto> list = service.getAllTeachers();
-        return new ResponseEntity<>(list, HttpStatus.OK);
+    public ResponseEntity<List<TeacherDto>> getAllTeachers(
+            @Parameter(description = "Cursor of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "Maximum number of teachers in the page") @RequestParam(defaultValue = "100") int limit,
+            WebRequest request) {
+        String etag = ETags.of(service.getTeachersPageStamp(after, limit));
+        return ETags.conditional(request, etag, () -> CursorPageResponses.toResponse(service.getTeachers(after, limit)));
+    }
+
+    @Operation(summary = "Get teachers with selected fields",
+            description = "Returns a page of teachers like the endpoint without the fields parameter, but each teacher only has "
+                    + "the requested fields. Only the columns of those fields are read from the database.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of teachers with the requested fields",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "304", description = "Page not modified since the ETag in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Malformed cursor, limit out of range or unknown field", content = @Content)
+    })
+    @GetMapping(params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getAllTeachersFields(
+            @Parameter(description = "Cursor of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "Maximum number of teachers in the page") @RequestParam(defaultValue = "100") int limit,
+            @Parameter(description = "Comma separated fields to return, the id is always included")
+            @RequestParam @Pattern(regexp = FIELDS, message = FIELDS_MESSAGE) String fields,
+            WebRequest request) {
+        String etag = ETags.of(service.getTeachersPageStamp(after, limit));
+        return ETags.conditional(request, etag, () -> CursorPageResponses.toResponse(service.getTeachers(after, limit, fields)));
+    }
+
+    @Operation(summary = "Get teachers by ids",
+            description = "Returns the teachers with the given ids in the order the ids were requested, read with a single query. "
+                    + "Ids without a teacher are skipped and listed in the X-Missing-Ids header instead of failing the request.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Teachers found",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = TeacherDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Malformed id or more than " + BatchLookup.MAX_IDS + " ids", content = @Content)
+    })
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<TeacherDto>> getTeachersByIds(
+            @Parameter(description = "Comma separated ids of the teachers") @RequestParam List<Integer> ids) {
+        return BatchLookupResponses.toResponse(service.getTeachersByIds(ids));
+    }
+
+    @Operation(summary = "Get teachers by ids with selected fields",
+            description = "Returns the teachers with the given ids like the endpoint without the fields parameter, but each teacher "
+                    + "only has the requested fields. Only the columns of those fields are read from the database.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Teachers found with the requested fields",
+                    content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "400", description = "Malformed id, unknown field or more than " + BatchLookup.MAX_IDS + " ids",
+                    content = @Content)
+    })
+    @GetMapping(params = {"ids", "fields"})
+    public ResponseEntity<List<Map<String, Object>>> getTeachersByIdsFields(
+            @Parameter(description = "Comma separated ids of the teachers") @RequestParam List<Integer> ids,
+            @Parameter(description = "Comma separated fields to return, the id is always included")
+            @RequestParam @Pattern(regexp = FIELDS, message = FIELDS_MESSAGE) String fields) {
+        return BatchLookupResponses.toResponse(service.getTeachersByIds(ids, fields));
+    }
+
+    @Operation(summary = "Get teacher stats",
+            description = "Returns a page of the number of students and subjects of every teacher, counted by the database without loading them. "
+                    + "The page is ordered by id or by a count descending; the cursor of the next page is returned in the "
+                    + "X-Next-Cursor and Link headers.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Page of teacher stats",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = TeacherStats.class)))),
+            @ApiResponse(responseCode = "400", description = "Unknown sort, malformed cursor or limit out of range", content = @Content)
+    })
+    @GetMapping("/stats")
+    public ResponseEntity<List<TeacherStats>> getTeacherStats(
+            @Parameter(description = "Order of the page: id, students or subjects") @RequestParam(defaultValue = "id") String sort,
+            @Parameter(description = "Cursor of the previous page") @RequestParam(required = false) String after,
+            @Parameter(description = "Maximum number of teachers in the page") @RequestParam(defaultValue = "100") int limit) {
+        return CursorPageResponses.toResponse(service.getTeacherStats(sort, after, limit));
+    }
+
+    @Operation(summary = "Export all teachers",
+            description = "Streams every teacher in id order as newline-delimited JSON or CSV, read from one consistent snapshot")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Teachers exported",
+                    content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+            @ApiResponse(responseCode = "400", description = "Unsupported format", content = @Content)
+    })
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTeachers(
+            @Parameter(description = "Export format: ndjson or csv") @RequestParam(defaultValue = "ndjson") String format) {
+        return exporter.toResponse(ExportFormat.fromParameter(format), "teachers", TeacherDto.class, service::exportTeachers);
+    }
+
+    @Operation(summary = "Search teachers by name",
+            description = "Returns the teachers whose first, last or middle name starts with the prefix, ignoring case, "
+                    + "ordered by the matching name. The teachers are found in an in-memory index of their names and read with one query.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Matching teachers",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = TeacherDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Blank prefix or limit out of range", content = @Content)
+    })
+    @GetMapping("/search")
+    public ResponseEntity<List<TeacherDto>> searchTeachers(
+            @Parameter(description = "Beginning of a first, last or middle name") @RequestParam String prefix,
+            @Parameter(description = "Maximum number of teachers to return, at most 100") @RequestParam(defaultValue = "10") int limit) {
+        return new ResponseEntity<>(service.searchTeachers(prefix, limit), HttpStatus.OK);
     }
 
     @Operation(summary = "Get teacher by id", description = "Returns a teacher by id. If there is no teacher with such id, returns 404.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Teacher found",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = TeacherDto.class))),
+            @ApiResponse(responseCode = "304", description = "Teacher not modified since the ETag in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Teacher not found", content = @Content)
     })
     @GetMapping("/{id}")
-    public ResponseEntity<TeacherDto> getTeacherByIdOrName(@Parameter(description = "Id of the teacher") @PathVariable int id) {
-        TeacherDto teacherDto = service.getTeacherById(id);
-        return new ResponseEntity<>(teacherDto, HttpStatus.OK);
+    public ResponseEntity<TeacherDto> getTeacherByIdOrName(@Parameter(description = "Id of the teacher") @PathVariable int id,
+                                                           WebRequest request) {
+        return ETags.conditional(request, service.getTeacherById(id));
+    }
+
+    @Operation(summary = "Get teacher by id with selected fields",
+            description = "Returns a teacher by id with only the requested fields. If there is no teacher with such id, returns 404.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Teacher found", content = @Content(mediaType = "application/json")),
+            @ApiResponse(responseCode = "304", description = "Teacher not modified since the ETag in If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Unknown field", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Teacher not found", content = @Content)
+    })
+    @GetMapping(value = "/{id}", params = "fields")
+    public ResponseEntity<Map<String, Object>> getTeacherByIdFields(@Parameter(description = "Id of the teacher") @PathVariable int id,
+            @Parameter(description = "Comma separated fields to return, the id is always included")
+            @RequestParam @Pattern(regexp = FIELDS, message = FIELDS_MESSAGE) String fields,
+            WebRequest request) {
+        return ETags.conditional(request, service.getTeacherById(id, fields));
+    }
+
+    @Operation(summary = "Create teachers in bulk",
+            description = "Creates all teachers from the list in one transaction using batched inserts. "
+                    + "Returns the created teachers with their ids in the same order.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Teachers created",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = TeacherDto.class)))),
+            @ApiResponse(responseCode = "400", description = "Validation failed", content = @Content)
+    })
+    @PostMapping("/bulk")
+    public ResponseEntity<List<TeacherDto>> saveTeachers(@RequestBody List<@Valid TeacherDto> teacherDtos) {
+        List<TeacherDto> dtos = service.saveTeachers(teacherDtos);
+        return new ResponseEntity<>(dtos, HttpStatus.CREATED);
     }
 
     @Operation(summary = "Create new teacher", description = "Creates a new teacher")
@@ -84,12 +243,36 @@ public class TeacherController {
             @ApiResponse(responseCode = "200", description = "Teacher updated",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = TeacherDto.class))),
             @ApiResponse(responseCode = "400", description = "Validation failed", content = @Content),
-            @ApiResponse(responseCode = "404", description = "Teacher not found", content = @Content)
+            @ApiResponse(responseCode = "404", description = "Teacher not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Teacher modified concurrently", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Teacher changed since the ETag in If-Match", content = @Content)
     })
     @PutMapping("/{id}")
     public ResponseEntity<TeacherDto> updateTeacher(@Parameter(description = "Id of the teacher") @PathVariable int id,
-                                                    @RequestBody TeacherDto teacherDto) {
-        TeacherDto dto = service.updateTeacher(id, teacherDto);
+                                                    @RequestBody TeacherDto teacherDto,
+                                                    @Parameter(description = "ETag of the teacher the update is based on")
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        TeacherDto dto = service.updateTeacher(id, teacherDto, ETags.expectedVersion(ifMatch));
+        return new ResponseEntity<>(dto, HttpStatus.OK);
+    }
+
+    @Operation(summary = "Partially update teacher by id",
+            description = "Changes only the fields in the body, some of firstName, lastName, middleName and age, with a single update statement. "
+                    + "The id and the counters are read-only and ignored. If there is no teacher with such id, returns 404.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Teacher updated",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = TeacherDto.class))),
+            @ApiResponse(responseCode = "400", description = "Unknown field, no fields or validation failed", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Teacher not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Teacher changed since the ETag in If-Match", content = @Content)
+    })
+    @PatchMapping("/{id}")
+    public ResponseEntity<TeacherDto> patchTeacher(@Parameter(description = "Id of the teacher") @PathVariable int id,
+                                                   @Parameter(description = "New values of the fields to change")
+                                                   @RequestBody Map<String, Object> changes,
+                                                   @Parameter(description = "ETag of the teacher the update is based on")
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        TeacherDto dto = service.patchTeacher(id, changes, ETags.expectedVersion(ifMatch));
         return new ResponseEntity<>(dto, HttpStatus.OK);
     }
 
@@ -104,6 +287,21 @@ public class TeacherController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    @Operation(summary = "Delete teachers by ids",
+            description = "Deletes the teachers with the given ids with a few statements, together with their subjects and "
+                    + "student assignments. Ids without a teacher are skipped. Returns the number of deleted teachers.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Teachers deleted",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Integer.class))),
+            @ApiResponse(responseCode = "400", description = "Malformed id", content = @Content)
+    })
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Integer> deleteTeachersByIds(
+            @Parameter(description = "Comma separated ids of the teachers") @RequestParam List<Integer> ids) {
+        int deleted = service.deleteTeachers(ids);
+        return new ResponseEntity<>(deleted, HttpStatus.OK);
+    }
+
     @Operation(summary = "Add subject to teacher", description = "Adds a subject to a teacher. If there is no teacher with such id, returns 404.")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Subject added", content = @Content),
@@ -122,12 +320,14 @@ public class TeacherController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "List of subjects",
                     content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = SubjectDto.class)))),
+            @ApiResponse(responseCode = "304", description = "List of subjects not modified since the ETag in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Teacher not found", content = @Content)
     })
     @GetMapping("/{id}/subjects")
-    public ResponseEntity<List<SubjectDto>> getAllSubjectsOfTeacher(@Parameter(description = "Id of the teacher") @PathVariable int id) {
-        List<SubjectDto> teachersDto = service.getAllSubjectsOfTeacher(id);
-        return new ResponseEntity<>(teachersDto, HttpStatus.OK);
+    public ResponseEntity<List<SubjectDto>> getAllSubjectsOfTeacher(@Parameter(description = "Id of the teacher") @PathVariable int id,
+                                                                    WebRequest request) {
+        String etag = ETags.of(service.getSubjectsOfTeacherStamp(id));
+        return ETags.conditional(request, etag, () -> new ResponseEntity<>(service.getAllSubjectsOfTeacher(id), HttpStatus.OK));
     }
 
     @Operation(summary = "Delete subject from teacher",
@@ -148,12 +348,14 @@ public class TeacherController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "List of students",
                     content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = StudentDto.class)))),
+            @ApiResponse(responseCode = "304", description = "List of students not modified since the ETag in If-None-Match", content = @Content),
             @ApiResponse(responseCode = "404", description = "Teacher not found", content = @Content)
     })
     @GetMapping("/{id}/students")
-    public ResponseEntity<List<StudentDto>> getAllStudentsOfTeacher(@Parameter(description = "Id of the teacher") @PathVariable int id) {
-        List<StudentDto> studentsDto = service.getAllStudentsOfTeacher(id);
-        return new ResponseEntity<>(studentsDto, HttpStatus.OK);
+    public ResponseEntity<List<StudentDto>> getAllStudentsOfTeacher(@Parameter(description = "Id of the teacher") @PathVariable int id,
+                                                                    WebRequest request) {
+        String etag = ETags.of(service.getStudentsOfTeacherStamp(id));
+        return ETags.conditional(request, etag, () -> new ResponseEntity<>(service.getAllStudentsOfTeacher(id), HttpStatus.OK));
     }
 
     @Operation(summary = "Add student to teacher", description = "Adds a student to a teacher. If there is no teacher with such id, returns 404.")
@@ -182,4 +384,20 @@ public class TeacherController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    @Operation(summary = "Add students to teacher",
+            description = "Adds all students from the list to a teacher with a few statements. Students that are already "
+                    + "added are skipped. Returns the number of newly added students. If the teacher or any of the "
+                    + "students doesn't exist, returns 404 and adds nobody.")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Students added",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Integer.class))),
+            @ApiResponse(responseCode = "404", description = "Teacher or students not found", content = @Content)
+    })
+    @PostMapping("/{id}/students")
+    public ResponseEntity<Integer> addStudentsToTeacher(@Parameter(description = "Id of the teacher") @PathVariable int id,
+                                                        @Parameter(description = "Ids of the students") @RequestBody List<Integer> studentIds) {
+        int added = service.addStudentsToTeacher(id, studentIds);
+        return new ResponseEntity<>(added, HttpStatus.OK);
+    }
+
 }
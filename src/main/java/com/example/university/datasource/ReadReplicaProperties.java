@@ -0,0 +1,48 @@
+package com.example.university.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas of the database, bound from {@code university.datasource}.
+ *
+ * <p>The replicas get the pool settings of {@code spring.datasource.hikari} and the credentials of
+ * {@code spring.datasource} unless they have their own.
+ */
+@Data
+@ConfigurationProperties("university.datasource")
+public class ReadReplicaProperties {
+
+    /**
+     * Lag query of PostgreSQL. A standby that has replayed all the WAL it received, or a server that isn't
+     * a standby, has no lag. Otherwise the lag is the age of the last replayed transaction, {@code null}
+     * while it hasn't replayed any.
+     */
+    public static final String POSTGRESQL_LAG_QUERY = "select case when not pg_is_in_recovery() "
+            + "or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 "
+            + "else extract(epoch from now() - pg_last_xact_replay_timestamp()) end";
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    private Duration maxLag = Duration.ofSeconds(10);
+
+    private String lagQuery = POSTGRESQL_LAG_QUERY;
+
+    /**
+     * Connection settings of one replica.
+     */
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
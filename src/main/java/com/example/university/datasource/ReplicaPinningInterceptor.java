@@ -0,0 +1,38 @@
+package com.example.university.datasource;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Pins the read-only transactions of a request to one replica of a {@link ReplicaRoutingDataSource}.
+ *
+ * <p>A conditional {@code GET} reads the versions behind its ETag and then the body in two transactions,
+ * which must see the same state: otherwise a lagging replica could give an old body under a new ETag,
+ * which the client would keep. The pin is released when the request completes, or when it continues
+ * on another thread, where the work isn't pinned.
+ */
+public class ReplicaPinningInterceptor implements AsyncHandlerInterceptor {
+
+    private final ReplicaRoutingDataSource dataSource;
+
+    public ReplicaPinningInterceptor(ReplicaRoutingDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        dataSource.pinReplica();
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        dataSource.unpinReplica();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        dataSource.unpinReplica();
+    }
+}
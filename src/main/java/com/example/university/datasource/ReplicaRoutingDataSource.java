@@ -0,0 +1,256 @@
+package com.example.university.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Data source that sends read-only transactions to read replicas and everything else to the primary.
+ *
+ * <p>A connection asked for inside a {@code @Transactional(readOnly = true)} transaction comes from the next
+ * usable replica in round-robin order. Connections asked for by read-write transactions and outside of
+ * transactions come from the primary. The transaction managers ask for the connection before they mark the
+ * transaction read-only, so this data source has to be wrapped in a {@link LazyConnectionDataSourceProxy},
+ * which asks for it at the first statement.
+ *
+ * <p>A replica is usable while its last health check succeeded and the lag it reported wasn't above the
+ * maximum lag. The checks run the lag query on every replica, one after another on a thread of their own,
+ * so they aren't delayed by the scheduled jobs. The replicas start unusable until their first check. A
+ * replica that fails to give a connection is unusable until its next successful check, and the connection
+ * comes from the next replica. When no replica is usable, read-only transactions use the primary.
+ *
+ * <p>Replicas lag by different amounts, so two read-only transactions of one request could see different
+ * states, like the version of an entity behind an ETag and an older entity for the body. Between
+ * {@link #pinReplica()} and {@link #unpinReplica()} the read-only transactions of a thread all use the data
+ * source of the first one. If the pinned replica becomes unusable, they use the primary from then on, which
+ * is never behind what they have read.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final String lagQuery;
+
+    private final Duration maxLag;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final ThreadLocal<Pin> pins = new ThreadLocal<>();
+
+    private final ScheduledExecutorService healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a data source over the primary and its replicas, with all the replicas unusable until
+     * {@link #startHealthChecks(Duration)}.
+     *
+     * @param primary  the data source of the primary
+     * @param replicas the data sources of the replicas
+     * @param lagQuery query that returns the lag of a replica in seconds as a number
+     * @param maxLag   maximum lag of a usable replica
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, String lagQuery, Duration maxLag) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).collect(Collectors.toList());
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * Checks the replicas now and then every interval, counted from the end of the previous check.
+     *
+     * @param interval time between the checks
+     */
+    public void startHealthChecks(Duration interval) {
+        healthChecks.scheduleWithFixedDelay(this::checkReplicas, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs the lag query on every replica and marks it usable if the lag isn't above the maximum.
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            String problem;
+            try {
+                Duration lag = lagOf(replica.dataSource);
+                problem = lag == null ? "its lag is unknown"
+                        : lag.compareTo(maxLag) > 0 ? "it lags " + lag.toMillis() + " ms behind the primary" : null;
+            } catch (SQLException | RuntimeException e) {
+                problem = "its health check failed: " + e.getMessage();
+            }
+            replica.update(problem);
+        }
+    }
+
+    /**
+     * Returns the number of replicas that read-only transactions can use now.
+     *
+     * @return the number of usable replicas
+     */
+    public int usableReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.usable).count();
+    }
+
+    /**
+     * Pins the read-only transactions of the current thread to the data source of the next one, until
+     * {@link #unpinReplica()}.
+     */
+    public void pinReplica() {
+        pins.set(new Pin());
+    }
+
+    /**
+     * Lets the read-only transactions of the current thread spread over the replicas again.
+     */
+    public void unpinReplica() {
+        pins.remove();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    /**
+     * Stops the health checks and closes the pools of the replicas. The primary is closed by its owner.
+     */
+    @Override
+    public void close() throws Exception {
+        healthChecks.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable) {
+                ((AutoCloseable) replica.dataSource).close();
+            }
+        }
+    }
+
+    private Connection route(ConnectionSource source) throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return source.connect(primary);
+        }
+        Pin pin = pins.get();
+        if (pin != null && pin.routed) {
+            return pin.replica == null ? source.connect(primary) : connectPinned(source, pin);
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (replica.usable) {
+                try {
+                    Connection connection = source.connect(replica.dataSource);
+                    if (pin != null) {
+                        pin.route(replica);
+                    }
+                    return connection;
+                } catch (SQLException e) {
+                    replica.update("it gave no connection: " + e.getMessage());
+                }
+            }
+        }
+        if (pin != null) {
+            pin.route(null);
+        }
+        return source.connect(primary);
+    }
+
+    private Connection connectPinned(ConnectionSource source, Pin pin) throws SQLException {
+        if (pin.replica.usable) {
+            try {
+                return source.connect(pin.replica.dataSource);
+            } catch (SQLException e) {
+                pin.replica.update("it gave no connection: " + e.getMessage());
+            }
+        }
+        pin.route(null);
+        return source.connect(primary);
+    }
+
+    private Duration lagOf(DataSource replica) throws SQLException {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout((int) Math.max(1, maxLag.toSeconds()));
+            try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                double seconds = resultSet.getDouble(1);
+                return resultSet.wasNull() ? null : Duration.ofNanos((long) (seconds * 1e9));
+            }
+        }
+    }
+
+    private interface ConnectionSource {
+
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    /**
+     * Data source that the read-only transactions of a thread are pinned to, chosen by the first one.
+     */
+    private static final class Pin {
+
+        private boolean routed;
+
+        /**
+         * The pinned replica, {@code null} for the primary.
+         */
+        private Replica replica;
+
+        private void route(Replica replica) {
+            this.routed = true;
+            this.replica = replica;
+        }
+    }
+
+    /**
+     * Replica with the result of its last check, logged when it changes.
+     */
+    private static final class Replica {
+
+        private final DataSource dataSource;
+
+        private volatile boolean usable;
+
+        private boolean checked;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * Records the result of a check, {@code null} if the replica is usable or else why it isn't.
+         */
+        private synchronized void update(String problem) {
+            if (problem == null && !usable) {
+                log.info("Read replica {} is usable", dataSource);
+            } else if (problem != null && (usable || !checked)) {
+                log.warn("Read replica {} is unusable, {}", dataSource, problem);
+            }
+            usable = problem == null;
+            checked = true;
+        }
+    }
+}
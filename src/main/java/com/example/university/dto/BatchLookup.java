@@ -0,0 +1,84 @@
+package com.example.university.dto;
+
+import com.example.university.exception.InvalidRequestParameterException;
+import lombok.Getter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Result of fetching many entities by id in one call.
+ *
+ * <p>The {@code items} are in the order the ids were requested, each id at most once. Ids that
+ * don't belong to an entity are reported in {@code missingIds}, in request order, instead of
+ * failing the whole lookup.
+ *
+ * @param <T> the type of the elements
+ */
+@Getter
+public class BatchLookup<T> {
+
+    /**
+     * Largest number of ids a client may ask for in one lookup, so the lookup stays a single
+     * {@code in} query with a bounded number of bind parameters.
+     */
+    public static final int MAX_IDS = 1000;
+
+    private final List<T> items;
+
+    private final List<Integer> missingIds;
+
+    private BatchLookup(List<T> items, List<Integer> missingIds) {
+        this.items = items;
+        this.missingIds = missingIds;
+    }
+
+    /**
+     * Deduplicates the requested ids, keeping the order of their first occurrence.
+     *
+     * @param ids the requested ids
+     * @return the distinct ids in request order
+     * @throws InvalidRequestParameterException if more than {@link #MAX_IDS} distinct ids are requested
+     */
+    public static Set<Integer> distinctIds(Collection<Integer> ids) {
+        Set<Integer> distinct = new LinkedHashSet<>();
+        ids.stream().filter(Objects::nonNull).forEach(distinct::add);
+        if (distinct.size() > MAX_IDS) {
+            throw new InvalidRequestParameterException("At most " + MAX_IDS + " ids can be requested at once");
+        }
+        return distinct;
+    }
+
+    /**
+     * Puts the rows found for the requested ids back into request order.
+     *
+     * @param ids  the distinct requested ids, in request order
+     * @param rows the rows found for those ids, in any order
+     * @param idOf extracts the id of a row
+     * @param <T>  the type of the elements
+     * @return the lookup result
+     */
+    public static <T> BatchLookup<T> of(Set<Integer> ids, List<T> rows, ToIntFunction<T> idOf) {
+        Map<Integer, T> byId = new HashMap<>();
+        for (T row : rows) {
+            byId.put(idOf.applyAsInt(row), row);
+        }
+        List<T> items = new ArrayList<>(rows.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : ids) {
+            T row = byId.get(id);
+            if (row != null) {
+                items.add(row);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new BatchLookup<>(items, missingIds);
+    }
+}
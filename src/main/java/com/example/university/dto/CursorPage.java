@@ -0,0 +1,167 @@
+package com.example.university.dto;
+
+import com.example.university.exception.InvalidRequestParameterException;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * One page of a keyset (cursor) paginated collection.
+ *
+ * <p>Pages are ordered by id. The {@code nextCursor} is an opaque token that encodes the id of the
+ * last element of the page; passing it back as {@code after} returns the elements that follow it.
+ * It is {@code null} when there are no more elements.
+ *
+ * @param <T> the type of the page elements
+ */
+@Getter
+public class CursorPage<T> {
+
+    /**
+     * Page size used when the client does not ask for one.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * Largest page size a client may ask for.
+     */
+    public static final int MAX_LIMIT = 1000;
+
+    private final List<T> items;
+
+    private final String nextCursor;
+
+    private CursorPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Builds a page from rows fetched with a limit of {@code limit + 1}.
+     *
+     * <p>The extra row is only used to find out whether another page exists and is not returned.
+     *
+     * @param rows  rows ordered by id, at most {@code limit + 1} of them
+     * @param limit the requested page size
+     * @param idOf  extracts the id of a row
+     * @param <T>   the type of the page elements
+     * @return the page
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, ToIntFunction<T> idOf) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(items, encodeCursor(idOf.applyAsInt(items.get(limit - 1))));
+    }
+
+    /**
+     * Builds a page ordered by a descending key and then by id from rows fetched with a limit of {@code limit + 1}.
+     *
+     * <p>The cursor encodes both the key and the id of the last element, see {@link #decodeKeyedCursor(String)}.
+     *
+     * @param rows  rows ordered by key descending and id ascending, at most {@code limit + 1} of them
+     * @param limit the requested page size
+     * @param keyOf extracts the key of a row
+     * @param idOf  extracts the id of a row
+     * @param <T>   the type of the page elements
+     * @return the page
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, ToLongFunction<T> keyOf, ToIntFunction<T> idOf) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        T last = items.get(limit - 1);
+        return new CursorPage<>(items, encode(keyOf.applyAsLong(last) + "," + idOf.applyAsInt(last)));
+    }
+
+    /**
+     * Checks that the requested page size is within {@code 1..MAX_LIMIT}.
+     *
+     * @param limit the requested page size
+     * @throws InvalidRequestParameterException if the limit is out of range
+     */
+    public static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidRequestParameterException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+
+    /**
+     * Encodes the id of the last element of a page into an opaque cursor.
+     *
+     * @param id the id of the last element
+     * @return the cursor
+     */
+    public static String encodeCursor(int id) {
+        return encode(Integer.toString(id));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encodeCursor(int)}.
+     *
+     * @param cursor the cursor, or {@code null} for the first page
+     * @return the id after which the page starts, {@code 0} for the first page
+     * @throws InvalidRequestParameterException if the cursor is malformed
+     */
+    public static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(decode(cursor));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestParameterException("Malformed cursor " + cursor);
+        }
+    }
+
+    /**
+     * Decodes a cursor of a page built with {@link #of(List, int, ToLongFunction, ToIntFunction)}.
+     *
+     * @param cursor the cursor, or {@code null} for the first page
+     * @return the key and id after which the page starts, {@code Long.MAX_VALUE} and {@code 0} for the first page
+     * @throws InvalidRequestParameterException if the cursor is malformed
+     */
+    public static Position decodeKeyedCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return new Position(Long.MAX_VALUE, 0);
+        }
+        try {
+            String[] parts = decode(cursor).split(",", -1);
+            if (parts.length == 2) {
+                return new Position(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+            }
+        } catch (IllegalArgumentException e) {
+            // reported below
+        }
+        throw new InvalidRequestParameterException("Malformed cursor " + cursor);
+    }
+
+    private static String encode(String position) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(position.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String decode(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The key and id of the last element of a page ordered by a descending key and then by id.
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Position {
+
+        private final long key;
+
+        private final int id;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.university.dto;
 
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -18,6 +20,7 @@ import javax.validation.constraints.NotNull;
 @Setter
 @EqualsAndHashCode
 @Builder
+@AllArgsConstructor
 public class StudentDto {
 
     private int id;
@@ -34,4 +37,10 @@ public class StudentDto {
     @Min(value = 1, message = "Age must be greater than 0")
     private int age;
 
+    /**
+     * Number of subjects the student is enrolled in, read from a counter column. Ignored in requests.
+     */
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY)
+    private int subjectCount;
+
 }
@@ -1,5 +1,7 @@
 package com.example.university.dto;
 
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -19,10 +21,17 @@ import javax.validation.constraints.NotNull;
 @Setter
 @EqualsAndHashCode
 @Builder
+@AllArgsConstructor
 public class SubjectDto {
     private int id;
 
     @NotNull(message = "Name cannot be null")
     private String name;
 
+    /**
+     * Number of students enrolled in the subject, read from a counter column. Ignored in requests.
+     */
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY)
+    private int studentCount;
+
 }
@@ -0,0 +1,23 @@
+package com.example.university.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Number of students enrolled in a subject, counted by the database.
+ *
+ * <p>The count is aggregated from the join table without loading any student.
+ */
+@JsonPropertyOrder({"id", "name", "teacherId", "studentCount"})
+public interface SubjectStats {
+
+    int getId();
+
+    String getName();
+
+    /**
+     * The id of the teacher of the subject, {@code null} if the subject has no teacher.
+     */
+    Integer getTeacherId();
+
+    long getStudentCount();
+}
@@ -1,5 +1,7 @@
 package com.example.university.dto;
 
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -20,6 +22,7 @@ import javax.validation.constraints.NotNull;
 @Setter
 @EqualsAndHashCode
 @Builder
+@AllArgsConstructor
 public class TeacherDto {
 
     private int id;
@@ -35,4 +38,10 @@ public class TeacherDto {
 
     @Min(value = 1, message = "Age must be greater than 0")
     private int age;
+
+    /**
+     * Number of students of the teacher, read from a counter column. Ignored in requests.
+     */
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY)
+    private int studentCount;
 }
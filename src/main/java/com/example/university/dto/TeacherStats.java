@@ -0,0 +1,22 @@
+package com.example.university.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * Number of students and subjects of a teacher, counted by the database.
+ *
+ * <p>The counts are aggregated from the join tables without loading any student or subject.
+ */
+@JsonPropertyOrder({"id", "firstName", "lastName", "studentCount", "subjectCount"})
+public interface TeacherStats {
+
+    int getId();
+
+    String getFirstName();
+
+    String getLastName();
+
+    long getStudentCount();
+
+    long getSubjectCount();
+}
@@ -0,0 +1,22 @@
+package com.example.university.dto;
+
+/**
+ * Aggregate of the versions behind a response, read instead of the response itself.
+ *
+ * <p>The versions of the entities only grow, the ids come from sequences and every change of a
+ * relationship increments the versions of both sides, so any change of a collection changes at least
+ * one of the four numbers. That makes the stamp a strong validator: equal stamps mean an equal body.
+ */
+public interface VersionStamp {
+
+    /**
+     * The version of the entity owning the collection, {@code 0} for a page of a list.
+     */
+    long getOwnerVersion();
+
+    long getCount();
+
+    long getIdSum();
+
+    long getVersionSum();
+}
@@ -0,0 +1,23 @@
+package com.example.university.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A DTO together with the version of the entity it was read from.
+ *
+ * <p>The by-id caches hold these pairs, so the ETag of a response is the version of the very DTO in
+ * its body, and a request for a cached entity needs no query at all, not even for the version.
+ *
+ * @param <T> the type of the DTO
+ */
+@Getter
+@EqualsAndHashCode
+@AllArgsConstructor
+public class Versioned<T> {
+
+    private final T value;
+
+    private final long version;
+}
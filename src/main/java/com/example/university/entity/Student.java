@@ -4,10 +4,11 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.Hibernate;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -15,7 +16,9 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.util.List;
 /**
  * Represents a student in the system.
@@ -23,7 +26,8 @@ import java.util.List;
  * <p>This class includes basic student information and their associations with teachers
  * and subjects.
  *
- * <p>The {@code id} is a unique identifier generated automatically. The {@code teachers}
+ * <p>The {@code id} is a unique identifier taken from the {@code students_seq} sequence, which Hibernate
+ * reserves in blocks of 50 so inserts can be batched. The {@code teachers}
  * field represents a many-to-many relationship with {@link Teacher}, and the
  * {@code subjects} field represents a many-to-many relationship with {@link Subject}.
  *
@@ -41,10 +45,10 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@EqualsAndHashCode
 public class Student {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "students_seq")
+    @SequenceGenerator(name = "students_seq", sequenceName = "students_seq", allocationSize = 50)
     private int id;
 
     private String firstName;
@@ -54,6 +58,24 @@ public class Student {
     private String middleName;
 
     private int age;
+
+    /**
+     * Version of this student, incremented by every update and by every change of its associations.
+     *
+     * <p>Used for optimistic locking and to compute the ETags of the student and of its collections.
+     */
+    @Version
+    private long version;
+
+    /**
+     * Number of subjects this student is enrolled in, kept equal to the number of its rows in {@code student_subject}.
+     *
+     * <p>The services change it together with the join table, in the same transaction, so it is read
+     * as a column instead of being counted. Hibernate never writes it.
+     */
+    @Column(name = "subject_count", insertable = false, updatable = false)
+    private int subjectCount;
+
     /**
      * List of teachers associated with this student.
      *
@@ -90,4 +112,35 @@ public class Student {
     @JsonManagedReference
     private List<Subject> subjects;
 
+    /**
+     * Compares students by id.
+     *
+     * <p>Two students are equal when they are of the same entity class and have the same id. A student
+     * that is not persisted yet has id {@code 0} and is only equal to itself. The collections are
+     * never looked at, so comparing students doesn't initialize lazy associations.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if both are the same persisted student
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        Student other = (Student) o;
+        return getId() != 0 && getId() == other.getId();
+    }
+
+    /**
+     * Returns the same hash code for every student, so it doesn't change when the id is assigned on persist.
+     *
+     * @return the hash code of the entity class
+     */
+    @Override
+    public int hashCode() {
+        return Student.class.hashCode();
+    }
 }
@@ -6,7 +6,9 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.Hibernate;
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -14,7 +16,9 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.util.List;
 
 /**
@@ -23,7 +27,8 @@ import java.util.List;
  * <p>This class includes basic subject information and their associations with teachers
  * and students.
  *
- * <p>The {@code id} is a unique identifier generated automatically. The {@code teacher}
+ * <p>The {@code id} is a unique identifier taken from the {@code subjects_seq} sequence, which Hibernate
+ * reserves in blocks of 50 so inserts can be batched. The {@code teacher}
  * field represents a many-to-one relationship with {@link Teacher}, and the
  * {@code students} field represents a many-to-many relationship with {@link Student}.
  *
@@ -42,11 +47,29 @@ import java.util.List;
 @Table(name = "subjects")
 public class Subject {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "subjects_seq")
+    @SequenceGenerator(name = "subjects_seq", sequenceName = "subjects_seq", allocationSize = 50)
     private int id;
 
     private String name;
 
+    /**
+     * Version of this subject, incremented by every update and by every change of its associations.
+     *
+     * <p>Used for optimistic locking and to compute the ETags of the subject and of its collections.
+     */
+    @Version
+    private long version;
+
+    /**
+     * Number of students enrolled in this subject, kept equal to the number of its rows in {@code student_subject}.
+     *
+     * <p>The services change it together with the join table, in the same transaction, so it is read
+     * as a column instead of being counted. Hibernate never writes it.
+     */
+    @Column(name = "student_count", insertable = false, updatable = false)
+    private int studentCount;
+
     /**
      * The teacher associated with this entity.
      *
@@ -78,4 +101,36 @@ public class Subject {
     @ManyToMany(mappedBy = "subjects")
     @JsonBackReference
     private List<Student> students;
+
+    /**
+     * Compares subjects by id.
+     *
+     * <p>Two subjects are equal when they are of the same entity class and have the same id. A subject
+     * that is not persisted yet has id {@code 0} and is only equal to itself. The collections are
+     * never looked at, so comparing subjects doesn't initialize lazy associations.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if both are the same persisted subject
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        Subject other = (Subject) o;
+        return getId() != 0 && getId() == other.getId();
+    }
+
+    /**
+     * Returns the same hash code for every subject, so it doesn't change when the id is assigned on persist.
+     *
+     * @return the hash code of the entity class
+     */
+    @Override
+    public int hashCode() {
+        return Subject.class.hashCode();
+    }
 }
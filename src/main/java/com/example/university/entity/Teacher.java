@@ -6,7 +6,9 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.Hibernate;
 import javax.persistence.CascadeType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
@@ -15,7 +17,9 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.util.List;
 
 /**
@@ -24,7 +28,8 @@ import java.util.List;
  * <p>This class includes basic teacher information and their associations with students
  * and subjects.
  *
- * <p>The {@code id} is a unique identifier generated automatically. The {@code students}
+ * <p>The {@code id} is a unique identifier taken from the {@code teachers_seq} sequence, which Hibernate
+ * reserves in blocks of 50 so inserts can be batched. The {@code students}
  * field represents a many-to-many relationship with {@link Student}, and the
  * {@code subjects} field represents a many-to-many relationship with {@link Subject}.
  *
@@ -45,7 +50,8 @@ import java.util.List;
 public class Teacher {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "teachers_seq")
+    @SequenceGenerator(name = "teachers_seq", sequenceName = "teachers_seq", allocationSize = 50)
     private int id;
 
     private String firstName;
@@ -56,6 +62,23 @@ public class Teacher {
 
     private int age;
 
+    /**
+     * Version of this teacher, incremented by every update and by every change of its associations.
+     *
+     * <p>Used for optimistic locking and to compute the ETags of the teacher and of its collections.
+     */
+    @Version
+    private long version;
+
+    /**
+     * Number of students of this teacher, kept equal to the number of its rows in {@code teacher_student}.
+     *
+     * <p>The services change it together with the join table, in the same transaction, so it is read
+     * as a column instead of being counted. Hibernate never writes it.
+     */
+    @Column(name = "student_count", insertable = false, updatable = false)
+    private int studentCount;
+
     /**
      * List of subjects associated with this teacher.
      *
@@ -90,5 +113,35 @@ public class Teacher {
     @JsonManagedReference
     private List<Student> students;
 
+    /**
+     * Compares teachers by id.
+     *
+     * <p>Two teachers are equal when they are of the same entity class and have the same id. A teacher
+     * that is not persisted yet has id {@code 0} and is only equal to itself. The collections are
+     * never looked at, so comparing teachers doesn't initialize lazy associations.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if both are the same persisted teacher
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || Hibernate.getClass(this) != Hibernate.getClass(o)) {
+            return false;
+        }
+        Teacher other = (Teacher) o;
+        return getId() != 0 && getId() == other.getId();
+    }
 
+    /**
+     * Returns the same hash code for every teacher, so it doesn't change when the id is assigned on persist.
+     *
+     * @return the hash code of the entity class
+     */
+    @Override
+    public int hashCode() {
+        return Teacher.class.hashCode();
+    }
 }
@@ -0,0 +1,15 @@
+package com.example.university.exception;
+
+/**
+ * Custom exception thrown when a conditional update is made against an outdated version of an entity.
+ *
+ * <p>This exception is a subclass of {@link RuntimeException} and is used to indicate that the
+ * {@code If-Match} precondition of a request doesn't match the current version of a student,
+ * teacher, or subject.
+ */
+public class EntityVersionMismatchException extends RuntimeException {
+
+    public EntityVersionMismatchException(String message) {
+        super(message);
+    }
+}
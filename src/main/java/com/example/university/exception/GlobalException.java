@@ -1,10 +1,12 @@
 package com.example.university.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import javax.validation.ConstraintViolationException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,6 +29,27 @@ public class GlobalException {
     ResponseEntity<String> handleEntityAlreadyAddedException(EntityAlreadyAddedException e) {
         return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
     }
+
+    @ExceptionHandler(EntityVersionMismatchException.class)
+    ResponseEntity<String> handleEntityVersionMismatchException(EntityVersionMismatchException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    ResponseEntity<String> handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+        return new ResponseEntity<>("The entity was modified concurrently, reload it and try again", HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(TooManyExportsException.class)
+    ResponseEntity<String> handleTooManyExportsException(TooManyExportsException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @ExceptionHandler(InvalidRequestParameterException.class)
+    ResponseEntity<String> handleInvalidRequestParameterException(InvalidRequestParameterException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Handles {@link MethodArgumentNotValidException} exceptions.
      *
@@ -48,4 +71,39 @@ public class GlobalException {
         return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles {@link InvalidFieldsException} exceptions.
+     *
+     * <p>This method is triggered when the fields of a partial update are invalid. The response has the
+     * same shape as the one of {@link #handleValidationExceptions(MethodArgumentNotValidException)}.
+     *
+     * @param ex the exception that contains the messages of the invalid fields
+     * @return a {@link ResponseEntity} containing a map of field names and their messages,
+     *         along with the {@code BAD_REQUEST} HTTP status
+     */
+    @ExceptionHandler(InvalidFieldsException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidFieldsException(InvalidFieldsException ex) {
+        return new ResponseEntity<>(ex.getErrors(), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles {@link ConstraintViolationException} exceptions.
+     *
+     * <p>This method is triggered when validation fails on the elements of a list argument, such as
+     * the body of the bulk create endpoints. The key of each error is the property path of the invalid
+     * field, which includes the index of the element, e.g. {@code saveStudents.studentDtos[3].age}.
+     *
+     * @param ex the exception that contains details about the constraint violations
+     * @return a {@link ResponseEntity} containing a map of property paths and their messages,
+     *         along with the {@code BAD_REQUEST} HTTP status
+     */
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Map<String, String>> handleConstraintViolationException(ConstraintViolationException ex) {
+        Map<String, String> errors = new HashMap<>();
+        ex.getConstraintViolations().forEach(violation ->
+                errors.put(violation.getPropertyPath().toString(), violation.getMessage())
+        );
+        return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+    }
+
 }
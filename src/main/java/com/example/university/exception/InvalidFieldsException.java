@@ -0,0 +1,21 @@
+package com.example.university.exception;
+
+import lombok.Getter;
+import java.util.Map;
+
+/**
+ * Custom exception thrown when fields of a request body have invalid values.
+ *
+ * <p>This exception is a subclass of {@link RuntimeException} and carries a message for every invalid
+ * field, keyed by the field name, so it is answered like the validation errors of a whole body.
+ */
+@Getter
+public class InvalidFieldsException extends RuntimeException {
+
+    private final Map<String, String> errors;
+
+    public InvalidFieldsException(Map<String, String> errors) {
+        super("Invalid fields " + errors.keySet());
+        this.errors = errors;
+    }
+}
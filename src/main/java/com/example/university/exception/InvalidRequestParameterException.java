@@ -0,0 +1,14 @@
+package com.example.university.exception;
+
+/**
+ * Custom exception thrown when a request parameter has an unusable value.
+ *
+ * <p>This exception is a subclass of {@link RuntimeException} and is used to indicate that
+ * a client supplied a malformed or out-of-range parameter, such as a pagination cursor or limit.
+ */
+public class InvalidRequestParameterException extends RuntimeException {
+
+    public InvalidRequestParameterException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.university.exception;
+
+/**
+ * Custom exception thrown when an export is requested while the maximum number of exports is running.
+ *
+ * <p>This exception is a subclass of {@link RuntimeException} and is used to indicate that the
+ * client should try again later, because every running export holds a database connection.
+ */
+public class TooManyExportsException extends RuntimeException {
+
+    public TooManyExportsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.university.export;
+
+import com.example.university.exception.TooManyExportsException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Writes a stream of DTOs to an output stream in one of the {@link ExportFormat}s.
+ *
+ * <p>Rows are serialized one by one as the source hands them over, so nothing but the current row
+ * is held in memory and the first bytes reach the client while the rest is still being read.
+ *
+ * <p>An export holds a database connection and its transaction for as long as the client takes to
+ * read it, so at most {@code university.export.max-concurrent} exports run at once and the rest of the
+ * API keeps the other connections of the pool. A request over the limit fails right away with
+ * {@link TooManyExportsException}. The async request timeout bounds how long a slow client can hold one.
+ *
+ * <p>The permit of an export is given back when its body is written or fails, and, as a
+ * {@link CallableProcessingInterceptor} of the async requests, when its request completes, times out or
+ * fails, so that a body that never runs doesn't keep it. Whichever comes first gives it back.
+ */
+@Component
+public class DtoExporter implements CallableProcessingInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = DtoExporter.class.getName() + ".permit";
+
+    private final ObjectMapper objectMapper;
+
+    private final CsvMapper csvMapper = CsvMapper.builder()
+            .disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .build();
+
+    private final Semaphore exports;
+
+    public DtoExporter(ObjectMapper objectMapper, @Value("${university.export.max-concurrent:2}") int maxConcurrentExports) {
+        this.objectMapper = objectMapper;
+        this.exports = new Semaphore(maxConcurrentExports);
+    }
+
+    /**
+     * Builds a response that streams every row produced by the source as an attachment.
+     *
+     * <p>The source is only invoked once the response body is written, on the asynchronous
+     * request thread, so it must open its own transaction. The export takes one of the export permits
+     * now and gives it back when the body is written or fails, or when the current request ends.
+     *
+     * @param format   the output format
+     * @param fileName the attachment name without extension
+     * @param type     the DTO type
+     * @param source   pushes the rows to the consumer it is given
+     * @param <T>      the DTO type
+     * @return the streaming response
+     * @throws TooManyExportsException if the maximum number of exports is running
+     */
+    public <T> ResponseEntity<StreamingResponseBody> toResponse(ExportFormat format, String fileName, Class<T> type,
+                                                              Consumer<Consumer<T>> source) {
+        if (!exports.tryAcquire()) {
+            throw new TooManyExportsException("Too many exports are running, try again later");
+        }
+        Permit permit = new Permit();
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.setAttribute(PERMIT_ATTRIBUTE, permit, RequestAttributes.SCOPE_REQUEST);
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                export(format, type, out, source);
+            } finally {
+                permit.release();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "." + format.getFileExtension() + "\"")
+                .body(body);
+    }
+
+    /**
+     * Gives back the permit of the export of the request, if the body didn't already.
+     *
+     * <p>Spring MVC calls this when the async request completes, also after a timeout, an error or a
+     * rejected task, whether the body ran or not.
+     *
+     * @param request the request of the export
+     * @param task    the task that writes the body
+     */
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+        Object permit = request.getAttribute(PERMIT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (permit instanceof Permit) {
+            ((Permit) permit).release();
+        }
+    }
+
+    /**
+     * Exports every row produced by the source.
+     *
+     * @param format the output format
+     * @param type   the DTO type, used to derive the CSV columns
+     * @param out    the stream to write to
+     * @param source pushes the rows to the consumer it is given
+     * @param <T>    the DTO type
+     * @throws IOException if writing to the stream fails
+     */
+    public <T> void export(ExportFormat format, Class<T> type, OutputStream out, Consumer<Consumer<T>> source) throws IOException {
+        try (SequenceWriter writer = open(format, type, out)) {
+            source.accept(row -> {
+                try {
+                    writer.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private SequenceWriter open(ExportFormat format, Class<?> type, OutputStream out) throws IOException {
+        if (format == ExportFormat.CSV) {
+            return csvMapper.writer(csvMapper.schemaFor(type).withHeader()).writeValues(out);
+        }
+        return objectMapper.writerFor(type).withRootValueSeparator("\n").writeValues(out);
+    }
+
+    /**
+     * An export permit that is given back at most once, by the body or by the end of the request.
+     */
+    private class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                exports.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.university.export;
+
+import com.example.university.exception.InvalidRequestParameterException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.MediaType;
+
+/**
+ * Formats supported by the export endpoints.
+ *
+ * <p>{@code NDJSON} writes one JSON object per line, {@code CSV} writes a header line followed by
+ * one line per row.
+ */
+@Getter
+@AllArgsConstructor
+public enum ExportFormat {
+
+    NDJSON(new MediaType("application", "x-ndjson"), "ndjson"),
+
+    CSV(new MediaType("text", "csv"), "csv");
+
+    private final MediaType mediaType;
+
+    private final String fileExtension;
+
+    /**
+     * Resolves the value of the {@code format} request parameter.
+     *
+     * @param format the parameter value, case-insensitive
+     * @return the matching format
+     * @throws InvalidRequestParameterException if the format is not supported
+     */
+    public static ExportFormat fromParameter(String format) {
+        for (ExportFormat exportFormat : values()) {
+            if (exportFormat.name().equalsIgnoreCase(format)) {
+                return exportFormat;
+            }
+        }
+        throw new InvalidRequestParameterException("Unsupported export format " + format);
+    }
+}
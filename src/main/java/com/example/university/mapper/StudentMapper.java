@@ -3,6 +3,7 @@ package com.example.university.mapper;
 import com.example.university.dto.StudentDto;
 import com.example.university.entity.Student;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 /**
  * Mapper interface for converting between {@link Student} entities and {@link StudentDto} DTOs.
@@ -20,8 +21,10 @@ public interface StudentMapper {
      * Converts a {@link StudentDto} to a {@link Student} entity.
      *
      * @param studentDto the DTO to be converted
-     * @return the corresponding {@link Student} entity
+     * @return the corresponding {@link Student} entity, without the read-only counter of the DTO or a version
      */
+    @Mapping(target = "subjectCount", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Student dtoToEntity(StudentDto studentDto);
 
     /**
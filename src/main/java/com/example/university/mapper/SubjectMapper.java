@@ -3,6 +3,7 @@ package com.example.university.mapper;
 import com.example.university.dto.SubjectDto;
 import com.example.university.entity.Subject;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
 
 /**
@@ -21,8 +22,10 @@ public interface SubjectMapper {
      * Converts a {@link SubjectDto} to a {@link Subject} entity.
      *
      * @param dto the DTO to be converted
-     * @return the corresponding {@link Subject} entity
+     * @return the corresponding {@link Subject} entity, without the read-only counter of the DTO or a version
      */
+    @Mapping(target = "studentCount", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Subject dtoToEntity(SubjectDto dto);
 
     /**
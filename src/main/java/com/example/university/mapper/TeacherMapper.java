@@ -3,6 +3,7 @@ package com.example.university.mapper;
 import com.example.university.dto.TeacherDto;
 import com.example.university.entity.Teacher;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingConstants;
 
 /**
@@ -21,8 +22,10 @@ public interface TeacherMapper {
      * Converts a {@link TeacherDto} to a {@link Teacher} entity.
      *
      * @param dto the DTO to be converted
-     * @return the corresponding {@link Teacher} entity
+     * @return the corresponding {@link Teacher} entity, without the read-only counter of the DTO or a version
      */
+    @Mapping(target = "studentCount", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Teacher dtoToEntity(TeacherDto dto);
 
     /**
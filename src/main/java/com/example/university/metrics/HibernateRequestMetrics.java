@@ -0,0 +1,155 @@
+package com.example.university.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Counts what Hibernate does while a request is handled and records the counts per route.
+ *
+ * <p>The timers of the layers tell which route is slow, but not whether it is slow because it runs too
+ * many queries. This class keeps per-thread counts of the JDBC statements executed, the
+ * entities loaded and the lazy collections fetched, from the start of a request until it completes, and
+ * records them in the {@value #STATEMENTS}, {@value #ENTITY_LOADS} and {@value #COLLECTION_FETCHES}
+ * distribution summaries, tagged with the HTTP method and the route pattern like {@code http.server.requests}.
+ * A route whose maximum jumps or whose mean grows with the size of the data has an N+1 problem.
+ *
+ * <p>It is a Hibernate {@link Integrator} that registers itself for the load and collection events, and
+ * the statements are counted by {@link StatementCounter}, which Hibernate creates for every session.
+ * Work done on other threads, like streaming an export, is not counted for the request.
+ */
+public class HibernateRequestMetrics implements AsyncHandlerInterceptor, Integrator, PostLoadEventListener,
+        InitializeCollectionEventListener {
+
+    /**
+     * Name of the summary of JDBC statements executed per request.
+     */
+    public static final String STATEMENTS = "hibernate.request.statements";
+
+    /**
+     * Name of the summary of entities loaded per request.
+     */
+    public static final String ENTITY_LOADS = "hibernate.request.entity.loads";
+
+    /**
+     * Name of the summary of collections fetched per request.
+     */
+    public static final String COLLECTION_FETCHES = "hibernate.request.collection.fetches";
+
+    private static final ThreadLocal<Counts> COUNTS = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+
+    public HibernateRequestMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        COUNTS.set(new Counts());
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        COUNTS.remove();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Counts counts = COUNTS.get();
+        COUNTS.remove();
+        if (counts == null) {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        summary(STATEMENTS, "JDBC statements executed per request", request.getMethod(), uri).record(counts.statements);
+        summary(ENTITY_LOADS, "Entities loaded per request", request.getMethod(), uri).record(counts.entityLoads);
+        summary(COLLECTION_FETCHES, "Lazy collections fetched per request", request.getMethod(), uri).record(counts.collectionFetches);
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_LOAD, this);
+        listeners.appendListeners(EventType.INIT_COLLECTION, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    @Override
+    public void onPostLoad(PostLoadEvent event) {
+        Counts counts = COUNTS.get();
+        if (counts != null) {
+            counts.entityLoads++;
+        }
+    }
+
+    @Override
+    public void onInitializeCollection(InitializeCollectionEvent event) {
+        Counts counts = COUNTS.get();
+        if (counts != null) {
+            counts.collectionFetches++;
+        }
+    }
+
+    private DistributionSummary summary(String name, String description, String method, String uri) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .tag("method", method)
+                .tag("uri", uri)
+                .register(registry);
+    }
+
+    /**
+     * Counts the statements executed by a session for the request of the current thread.
+     *
+     * <p>Created by Hibernate for every session from the {@code hibernate.session.events.auto} property.
+     * A JDBC batch counts as one statement, because it is one round-trip.
+     */
+    public static class StatementCounter extends BaseSessionEventListener {
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            count();
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            count();
+        }
+
+        private static void count() {
+            Counts counts = COUNTS.get();
+            if (counts != null) {
+                counts.statements++;
+            }
+        }
+    }
+
+    private static final class Counts {
+
+        private long statements;
+
+        private long entityLoads;
+
+        private long collectionFetches;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.university.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Aspect that times every public method of the {@code @Service} classes.
+ *
+ * <p>Each call is recorded in the {@value #METRIC} timer, tagged with the class, the method and the
+ * simple name of the exception it threw, or {@code none}. The timer counts the calls as well, so it
+ * gives both the latency and the throughput of every operation.
+ *
+ * <p>It runs outside the transaction and cache advice, so cache hits and the commit are timed too.
+ * Overloads of a method share their timer.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceMetricsAspect {
+
+    /**
+     * Name of the timer of the service methods.
+     */
+    public static final String METRIC = "university.service";
+
+    private final MeterRegistry registry;
+
+    public ServiceMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Times a call of a service method.
+     *
+     * @param call the call
+     * @return the result of the call
+     * @throws Throwable whatever the method throws
+     */
+    @Around("within(com.example.university.service..*) && @within(org.springframework.stereotype.Service) && execution(public * *(..))")
+    public Object time(ProceedingJoinPoint call) throws Throwable {
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return call.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC)
+                    .description("Time of the service method calls")
+                    .tag("class", call.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", call.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(registry));
+        }
+    }
+}
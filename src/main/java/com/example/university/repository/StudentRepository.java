@@ -1,14 +1,357 @@
 package com.example.university.repository;
 
+import com.example.university.dto.StudentDto;
+import com.example.university.dto.VersionStamp;
 import com.example.university.entity.Student;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for {@link Student} entities.
  *
  * <p>This interface extends {@link JpaRepository}, providing CRUD operations and query methods
  * for {@link Student} entities with {@code Integer} as the primary key type.
+ *
+ * <p>The read queries select the {@link StudentDto} columns straight into a constructor expression,
+ * so no managed entities, dirty-checking snapshots or proxies are created for them.
  */
 public interface StudentRepository extends JpaRepository<Student, Integer> {
 
+    /**
+     * Finds a student by id as a {@link StudentDto}.
+     *
+     * @param id the id of the student
+     * @return the student, or empty if there is no student with such id
+     */
+    @Query("select new com.example.university.dto.StudentDto(s.id, s.firstName, s.lastName, s.middleName, s.age, s.subjectCount) "
+            + "from Student s where s.id = :id")
+    Optional<StudentDto> findDtoById(@Param("id") int id);
+
+    /**
+     * Finds the students with the given ids as {@link StudentDto}s with a single {@code in} query.
+     *
+     * @param ids the ids of the students
+     * @return the students found, in no particular order; ids without a student are skipped
+     */
+    @Query("select new com.example.university.dto.StudentDto(s.id, s.firstName, s.lastName, s.middleName, s.age, s.subjectCount) "
+            + "from Student s where s.id in :ids")
+    List<StudentDto> findDtosByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Finds students with an id greater than the given one, in id order.
+     *
+     * <p>Used for keyset pagination: the primary key index serves both the range condition and the
+     * ordering, so every page costs the same regardless of how deep it is.
+     *
+     * @param id       the id after which the page starts
+     * @param pageable the page size; only the first page of the result is read
+     * @return the students following the given id
+     */
+    @Query("select new com.example.university.dto.StudentDto(s.id, s.firstName, s.lastName, s.middleName, s.age, s.subjectCount) "
+            + "from Student s where s.id > :id order by s.id")
+    List<StudentDto> findDtosAfter(@Param("id") int id, Pageable pageable);
+
+    /**
+     * Streams all students in id order.
+     *
+     * <p>The JDBC driver fetches the rows in chunks of {@code 1000} instead of buffering the whole
+     * result, so the caller must consume the stream inside a transaction and close it afterwards.
+     *
+     * @return a stream of all students
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.example.university.dto.StudentDto(s.id, s.firstName, s.lastName, s.middleName, s.age, s.subjectCount) "
+            + "from Student s order by s.id")
+    Stream<StudentDto> streamAllDtos();
+
+    /**
+     * Finds the students of a teacher with a single query.
+     *
+     * <p>The students are left joined to the teacher, so the result is empty only when there is
+     * no such teacher. A teacher without students yields a single placeholder row with id {@code 0}.
+     *
+     * @param teacherId the id of the teacher
+     * @return the students of the teacher, or an empty list if the teacher doesn't exist
+     */
+    @Query("select new com.example.university.dto.StudentDto(coalesce(s.id, 0), s.firstName, s.lastName, s.middleName, "
+            + "coalesce(s.age, 0), coalesce(s.subjectCount, 0)) "
+            + "from Teacher t left join t.students s where t.id = :teacherId order by s.id")
+    List<StudentDto> findStudentsOfTeacher(@Param("teacherId") int teacherId);
+
+    /**
+     * Finds which of the given ids belong to existing students.
+     *
+     * @param ids the ids to check
+     * @return the ids of the existing students
+     */
+    @Query("select s.id from Student s where s.id in :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Finds the students enrolled in any of the given subjects.
+     *
+     * @param subjectIds the ids of the subjects, not empty
+     * @return the ids of the students, each once
+     */
+    @Query(nativeQuery = true, value = "select distinct ss.student_id from student_subject ss where ss.subject_id in (:subjectIds)")
+    List<Integer> findIdsEnrolledInAny(@Param("subjectIds") Collection<Integer> subjectIds);
+
+    /**
+     * Finds which of the given students are already enrolled in a subject.
+     *
+     * @param subjectId  the id of the subject
+     * @param studentIds the ids of the students
+     * @return the ids of the students that are enrolled
+     */
+    @Query(nativeQuery = true, value = "select ss.student_id from student_subject ss "
+            + "where ss.subject_id = :subjectId and ss.student_id in (:studentIds)")
+    List<Integer> findIdsEnrolledIn(@Param("subjectId") int subjectId, @Param("studentIds") Collection<Integer> studentIds);
+
+    /**
+     * Finds which of the given students are already assigned to a teacher.
+     *
+     * @param teacherId  the id of the teacher
+     * @param studentIds the ids of the students
+     * @return the ids of the students that are assigned
+     */
+    @Query(nativeQuery = true, value = "select ts.student_id from teacher_student ts "
+            + "where ts.teacher_id = :teacherId and ts.student_id in (:studentIds)")
+    List<Integer> findIdsAssignedTo(@Param("teacherId") int teacherId, @Param("studentIds") Collection<Integer> studentIds);
+
+    /**
+     * Enrolls the given students in a subject with a single insert.
+     *
+     * <p>Pairs that are already present are skipped by the primary key of {@code student_subject},
+     * and ids that don't belong to a student are skipped by the join with {@code students}.
+     *
+     * @param subjectId  the id of the subject
+     * @param studentIds the ids of the students
+     * @return the number of students that were enrolled by this call
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into student_subject (student_id, subject_id) "
+            + "select s.id, :subjectId from students s where s.id in (:studentIds) on conflict do nothing")
+    int addSubjectToStudents(@Param("subjectId") int subjectId, @Param("studentIds") Collection<Integer> studentIds);
+
+    /**
+     * Assigns the given students to a teacher with a single insert.
+     *
+     * <p>Pairs that are already present are skipped by the primary key of {@code teacher_student}.
+     *
+     * @param teacherId  the id of the teacher
+     * @param studentIds the ids of the students
+     * @return the number of students that were assigned by this call
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into teacher_student (teacher_id, student_id) "
+            + "select :teacherId, s.id from students s where s.id in (:studentIds) on conflict do nothing")
+    int addTeacherToStudents(@Param("teacherId") int teacherId, @Param("studentIds") Collection<Integer> studentIds);
+
+    /**
+     * Enrolls a student in a subject by inserting the join row directly.
+     *
+     * <p>Neither collection is loaded, so the cost doesn't depend on how many subjects the student
+     * or students the subject has. The row is inserted only when both the student and the subject
+     * exist and the pair is not present yet, which also makes concurrent duplicate requests safe.
+     *
+     * @param studentId the id of the student
+     * @param subjectId the id of the subject
+     * @return {@code 1} if the student was enrolled, {@code 0} otherwise
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into student_subject (student_id, subject_id) "
+            + "select s.id, sub.id from students s, subjects sub where s.id = :studentId and sub.id = :subjectId "
+            + "on conflict do nothing")
+    int addSubject(@Param("studentId") int studentId, @Param("subjectId") int subjectId);
+
+    /**
+     * Removes a student from a subject by deleting the join row directly.
+     *
+     * @param studentId the id of the student
+     * @param subjectId the id of the subject
+     * @return {@code 1} if the student was removed, {@code 0} if the pair was not present
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from student_subject where student_id = :studentId and subject_id = :subjectId")
+    int removeSubject(@Param("studentId") int studentId, @Param("subjectId") int subjectId);
+
+    /**
+     * Assigns a student to a teacher by inserting the join row directly.
+     *
+     * @param studentId the id of the student
+     * @param teacherId the id of the teacher
+     * @return {@code 1} if the student was assigned, {@code 0} otherwise
+     * @see #addSubject(int, int)
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into teacher_student (teacher_id, student_id) "
+            + "select t.id, s.id from teachers t, students s where t.id = :teacherId and s.id = :studentId "
+            + "on conflict do nothing")
+    int addTeacher(@Param("studentId") int studentId, @Param("teacherId") int teacherId);
+
+    /**
+     * Removes a student from a teacher by deleting the join row directly.
+     *
+     * @param studentId the id of the student
+     * @param teacherId the id of the teacher
+     * @return {@code 1} if the student was removed, {@code 0} if the pair was not present
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from teacher_student where teacher_id = :teacherId and student_id = :studentId")
+    int removeTeacher(@Param("studentId") int studentId, @Param("teacherId") int teacherId);
+
+    /**
+     * Finds the version of a student without loading the student.
+     *
+     * @param id the id of the student
+     * @return the version, or empty if there is no student with such id
+     */
+    @Query("select s.version from Student s where s.id = :id")
+    Optional<Long> findVersionById(@Param("id") int id);
+
+    /**
+     * Aggregates the ids and versions of the page that {@link #findDtosAfter(int, Pageable)} would return.
+     *
+     * <p>The aggregate is computed by the database over the primary key index, so a page that hasn't
+     * changed can be validated without transferring it.
+     *
+     * @param id    the id after which the page starts
+     * @param limit the number of rows the page query reads
+     * @return the version stamp of the page
+     */
+    @Query(nativeQuery = true, value = "select 0 as \"ownerVersion\", count(*) as \"count\", coalesce(sum(p.id), 0) as \"idSum\", "
+            + "coalesce(sum(p.version), 0) as \"versionSum\" "
+            + "from (select id, version from students where id > :id order by id limit :limit) p")
+    VersionStamp findPageStamp(@Param("id") int id, @Param("limit") int limit);
+
+    /**
+     * Aggregates the version of a teacher and the ids and versions of their students.
+     *
+     * @param teacherId the id of the teacher
+     * @return the version stamp of the students of the teacher, or empty if the teacher doesn't exist
+     * @see #findStudentsOfTeacher(int)
+     */
+    @Query("select t.version as ownerVersion, count(s.id) as count, coalesce(sum(s.id), 0) as idSum, "
+            + "coalesce(sum(s.version), 0) as versionSum "
+            + "from Teacher t left join t.students s where t.id = :teacherId group by t.id, t.version")
+    Optional<VersionStamp> findStudentsOfTeacherStamp(@Param("teacherId") int teacherId);
+
+    /**
+     * Increments the versions of the given students after their relationships were changed by a
+     * direct write to a join table, which Hibernate doesn't know about.
+     *
+     * @param ids the ids of the students
+     * @return the number of students updated
+     */
+    @Modifying
+    @Query("update Student s set s.version = s.version + 1 where s.id in :ids")
+    int incrementVersions(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Adds to the number of subjects of a student and increments its version, after a direct write
+     * to {@code student_subject}.
+     *
+     * <p>The counter is changed relative to its current value under the row lock of the update, so
+     * concurrent enrollments of the same student don't overwrite each other.
+     *
+     * @param id    the id of the student
+     * @param delta {@code 1} after an enrollment, {@code -1} after a removal
+     * @return the number of students updated
+     */
+    @Modifying
+    @Query("update Student s set s.subjectCount = s.subjectCount + :delta, s.version = s.version + 1 where s.id = :id")
+    int addToSubjectCount(@Param("id") int id, @Param("delta") int delta);
+
+    /**
+     * Counts the subjects of the given students again from {@code student_subject} and increments
+     * their versions.
+     *
+     * <p>Used for the students newly enrolled by a bulk enrollment and to repair counters that drifted.
+     *
+     * @param ids the ids of the students
+     * @return the number of students updated
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update students s set subject_count = "
+            + "(select count(*) from student_subject ss where ss.student_id = s.id), version = s.version + 1 "
+            + "where s.id in (:ids)")
+    int recountSubjects(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Subtracts the given subjects from the numbers of subjects of the students enrolled in them and
+     * increments the versions of those students.
+     *
+     * <p>Must be called before the subjects are deleted, while their rows in {@code student_subject}
+     * still tell who was enrolled.
+     *
+     * @param subjectIds the ids of the subjects, not empty
+     * @return the number of students updated
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update students s set subject_count = s.subject_count - "
+            + "(select count(*) from student_subject ss where ss.student_id = s.id and ss.subject_id in (:subjectIds)), "
+            + "version = s.version + 1 "
+            + "where s.id in (select student_id from student_subject where subject_id in (:subjectIds))")
+    int subtractSubjects(@Param("subjectIds") Collection<Integer> subjectIds);
+
+    /**
+     * Subtracts a subject of a teacher from the numbers of subjects of the students enrolled in it
+     * and increments the versions of those students.
+     *
+     * <p>Nothing is updated unless the subject is taught by the teacher. Must be called before the
+     * subject is deleted, while its rows in {@code student_subject} still exist.
+     *
+     * @param subjectId the id of the subject
+     * @param teacherId the id of the teacher
+     * @return the number of students updated
+     * @see #subtractSubjects(Collection)
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update students s set subject_count = s.subject_count - 1, version = s.version + 1 "
+            + "where s.id in (select ss.student_id from student_subject ss join subjects sub on sub.id = ss.subject_id "
+            + "where sub.id = :subjectId and sub.teacher_id = :teacherId)")
+    int subtractSubjectOfTeacher(@Param("subjectId") int subjectId, @Param("teacherId") int teacherId);
+
+    /**
+     * Deletes the given students with a single statement.
+     *
+     * <p>Their rows in {@code teacher_student} and {@code student_subject} are deleted by the
+     * {@code on delete cascade} of the join tables, so no student is loaded.
+     *
+     * @param ids the ids of the students, not empty
+     * @return the number of students deleted
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from students where id in (:ids)")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Finds the ids of the students following the given id, in id order, from the primary key index.
+     *
+     * @param id       the id after which the ids start
+     * @param pageable the number of ids; only the first page of the result is read
+     * @return the ids following the given one
+     */
+    @Query("select s.id from Student s where s.id > :id order by s.id")
+    List<Integer> findIdsAfter(@Param("id") int id, Pageable pageable);
+
+    /**
+     * Finds which of the given students have a number of subjects that differs from their rows in
+     * {@code student_subject}.
+     *
+     * @param ids the ids of the students to check
+     * @return the ids of the students whose counter drifted
+     */
+    @Query(nativeQuery = true, value = "select s.id from students s where s.id in (:ids) "
+            + "and s.subject_count <> (select count(*) from student_subject ss where ss.student_id = s.id)")
+    List<Integer> findSubjectCountDrift(@Param("ids") Collection<Integer> ids);
 }
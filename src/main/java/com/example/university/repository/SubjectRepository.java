@@ -1,14 +1,271 @@
 package com.example.university.repository;
 
+import com.example.university.dto.SubjectDto;
+import com.example.university.dto.SubjectStats;
+import com.example.university.dto.VersionStamp;
 import com.example.university.entity.Subject;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for {@link Subject} entities.
  *
  * <p>This interface extends {@link JpaRepository}, providing CRUD operations and query methods
- * for {@link Subject} entities with {@code Integer} as the primary key type.
+ * for {@link Subject} entities with {@code Integer} as the primary key type. The read queries
+ * project straight into {@link SubjectDto}.
  */
 public interface SubjectRepository extends JpaRepository<Subject, Integer> {
 
+    /**
+     * Finds a subject by id as a {@link SubjectDto}.
+     *
+     * @param id the id of the subject
+     * @return the subject, or empty if there is no subject with such id
+     */
+    @Query("select new com.example.university.dto.SubjectDto(s.id, s.name, s.studentCount) from Subject s where s.id = :id")
+    Optional<SubjectDto> findDtoById(@Param("id") int id);
+
+    /**
+     * Finds the subjects with the given ids as {@link SubjectDto}s with a single {@code in} query.
+     *
+     * @param ids the ids of the subjects
+     * @return the subjects found, in no particular order; ids without a subject are skipped
+     */
+    @Query("select new com.example.university.dto.SubjectDto(s.id, s.name, s.studentCount) "
+            + "from Subject s where s.id in :ids")
+    List<SubjectDto> findDtosByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Finds subjects with an id greater than the given one, in id order.
+     *
+     * @param id       the id after which the page starts
+     * @param pageable the page size; only the first page of the result is read
+     * @return the subjects following the given id
+     * @see StudentRepository#findDtosAfter(int, Pageable)
+     */
+    @Query("select new com.example.university.dto.SubjectDto(s.id, s.name, s.studentCount) from Subject s where s.id > :id order by s.id")
+    List<SubjectDto> findDtosAfter(@Param("id") int id, Pageable pageable);
+
+    /**
+     * Streams all subjects in id order, fetching {@code 1000} rows at a time.
+     *
+     * @return a stream of all subjects
+     * @see StudentRepository#streamAllDtos()
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.example.university.dto.SubjectDto(s.id, s.name, s.studentCount) from Subject s order by s.id")
+    Stream<SubjectDto> streamAllDtos();
+
+    /**
+     * Finds the subjects of a student with a single query.
+     *
+     * <p>The result is empty only when there is no such student; a student without subjects
+     * yields a single placeholder row with id {@code 0}.
+     *
+     * @param studentId the id of the student
+     * @return the subjects of the student, or an empty list if the student doesn't exist
+     * @see StudentRepository#findStudentsOfTeacher(int)
+     */
+    @Query("select new com.example.university.dto.SubjectDto(coalesce(sub.id, 0), sub.name, coalesce(sub.studentCount, 0)) "
+            + "from Student s left join s.subjects sub where s.id = :studentId order by sub.id")
+    List<SubjectDto> findSubjectsOfStudent(@Param("studentId") int studentId);
+
+    /**
+     * Finds the subjects taught by a teacher with a single query.
+     *
+     * <p>The result is empty only when there is no such teacher; a teacher without subjects
+     * yields a single placeholder row with id {@code 0}.
+     *
+     * @param teacherId the id of the teacher
+     * @return the subjects of the teacher, or an empty list if the teacher doesn't exist
+     */
+    @Query("select new com.example.university.dto.SubjectDto(coalesce(sub.id, 0), sub.name, coalesce(sub.studentCount, 0)) "
+            + "from Teacher t left join t.subjects sub where t.id = :teacherId order by sub.id")
+    List<SubjectDto> findSubjectsOfTeacher(@Param("teacherId") int teacherId);
+
+    /**
+     * Finds the subjects of any of the given students.
+     *
+     * @param studentIds the ids of the students, not empty
+     * @return the ids of the subjects, each once
+     */
+    @Query(nativeQuery = true, value = "select distinct ss.subject_id from student_subject ss where ss.student_id in (:studentIds)")
+    List<Integer> findIdsOfStudents(@Param("studentIds") Collection<Integer> studentIds);
+
+    /**
+     * Finds the subjects taught by any of the given teachers.
+     *
+     * @param teacherIds the ids of the teachers, not empty
+     * @return the ids of the subjects
+     */
+    @Query(nativeQuery = true, value = "select sub.id from subjects sub where sub.teacher_id in (:teacherIds)")
+    List<Integer> findIdsOfTeachers(@Param("teacherIds") Collection<Integer> teacherIds);
+
+    /**
+     * Finds the version of a subject without loading the subject.
+     *
+     * @param id the id of the subject
+     * @return the version, or empty if there is no subject with such id
+     */
+    @Query("select s.version from Subject s where s.id = :id")
+    Optional<Long> findVersionById(@Param("id") int id);
+
+    /**
+     * Aggregates the ids and versions of the page that {@link #findDtosAfter(int, Pageable)} would return.
+     *
+     * @param id    the id after which the page starts
+     * @param limit the number of rows the page query reads
+     * @return the version stamp of the page
+     * @see StudentRepository#findPageStamp(int, int)
+     */
+    @Query(nativeQuery = true, value = "select 0 as \"ownerVersion\", count(*) as \"count\", coalesce(sum(p.id), 0) as \"idSum\", "
+            + "coalesce(sum(p.version), 0) as \"versionSum\" "
+            + "from (select id, version from subjects where id > :id order by id limit :limit) p")
+    VersionStamp findPageStamp(@Param("id") int id, @Param("limit") int limit);
+
+    /**
+     * Aggregates the version of a student and the ids and versions of their subjects.
+     *
+     * @param studentId the id of the student
+     * @return the version stamp of the subjects of the student, or empty if the student doesn't exist
+     * @see #findSubjectsOfStudent(int)
+     */
+    @Query("select s.version as ownerVersion, count(sub.id) as count, coalesce(sum(sub.id), 0) as idSum, "
+            + "coalesce(sum(sub.version), 0) as versionSum "
+            + "from Student s left join s.subjects sub where s.id = :studentId group by s.id, s.version")
+    Optional<VersionStamp> findSubjectsOfStudentStamp(@Param("studentId") int studentId);
+
+    /**
+     * Aggregates the version of a teacher and the ids and versions of the subjects they teach.
+     *
+     * <p>New subjects always get a greater id than the removed ones, so the id sum changes even
+     * when a subject is replaced by another one.
+     *
+     * @param teacherId the id of the teacher
+     * @return the version stamp of the subjects of the teacher, or empty if the teacher doesn't exist
+     * @see #findSubjectsOfTeacher(int)
+     */
+    @Query("select t.version as ownerVersion, count(sub.id) as count, coalesce(sum(sub.id), 0) as idSum, "
+            + "coalesce(sum(sub.version), 0) as versionSum "
+            + "from Teacher t left join t.subjects sub where t.id = :teacherId group by t.id, t.version")
+    Optional<VersionStamp> findSubjectsOfTeacherStamp(@Param("teacherId") int teacherId);
+
+    /**
+     * Adds to the number of students of a subject and increments its version, after its students
+     * were changed by a direct write to the join table.
+     *
+     * @param id    the id of the subject
+     * @param delta the number of students enrolled, negative for removed ones
+     * @return the number of subjects updated
+     * @see StudentRepository#addToSubjectCount(int, int)
+     */
+    @Modifying
+    @Query("update Subject s set s.studentCount = s.studentCount + :delta, s.version = s.version + 1 where s.id = :id")
+    int addToStudentCount(@Param("id") int id, @Param("delta") int delta);
+
+    /**
+     * Subtracts deleted students from the numbers of students of the subjects they belonged to and
+     * increments the versions of those subjects.
+     *
+     * <p>Must be called before the students are deleted, while their rows in {@code student_subject} still exist.
+     *
+     * @param studentIds the ids of the students, not empty
+     * @return the number of subjects updated
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update subjects sub set student_count = sub.student_count - "
+            + "(select count(*) from student_subject j where j.subject_id = sub.id and j.student_id in (:studentIds)), "
+            + "version = sub.version + 1 "
+            + "where sub.id in (select subject_id from student_subject where student_id in (:studentIds))")
+    int subtractStudents(@Param("studentIds") Collection<Integer> studentIds);
+
+    /**
+     * Deletes the given subjects with a single statement.
+     *
+     * <p>Their rows in {@code student_subject} are deleted by the {@code on delete cascade} of the
+     * join table, so no subject is loaded.
+     *
+     * @param ids the ids of the subjects, not empty
+     * @return the number of subjects deleted
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from subjects where id in (:ids)")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Deletes a subject if it is taught by the given teacher.
+     *
+     * <p>Its rows in {@code student_subject} are deleted by the {@code on delete cascade} of the
+     * join table, so neither the teacher nor the subject is loaded.
+     *
+     * @param id        the id of the subject
+     * @param teacherId the id of the teacher
+     * @return the number of subjects deleted, {@code 0} if the subject is not taught by the teacher
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from subjects where id = :id and teacher_id = :teacherId")
+    int deleteOfTeacher(@Param("id") int id, @Param("teacherId") int teacherId);
+
+    /**
+     * Counts the students of the given subjects again from {@code student_subject} and increments their versions.
+     *
+     * @param ids the ids of the subjects
+     * @return the number of subjects updated
+     * @see StudentRepository#recountSubjects(Collection)
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update subjects sub set student_count = "
+            + "(select count(*) from student_subject j where j.subject_id = sub.id), version = sub.version + 1 "
+            + "where sub.id in (:ids)")
+    int recountStudents(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Finds the ids of the subjects following the given id, in id order, from the primary key index.
+     *
+     * @param id       the id after which the ids start
+     * @param pageable the number of ids; only the first page of the result is read
+     * @return the ids following the given one
+     */
+    @Query("select sub.id from Subject sub where sub.id > :id order by sub.id")
+    List<Integer> findIdsAfter(@Param("id") int id, Pageable pageable);
+
+    /**
+     * Finds which of the given subjects have a number of students that differs from their rows in
+     * {@code student_subject}.
+     *
+     * @param ids the ids of the subjects to check
+     * @return the ids of the subjects whose counter drifted
+     */
+    @Query(nativeQuery = true, value = "select sub.id from subjects sub where sub.id in (:ids) "
+            + "and sub.student_count <> (select count(*) from student_subject j where j.subject_id = sub.id)")
+    List<Integer> findStudentCountDrift(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Counts the students enrolled in every subject and returns one page of the counts.
+     *
+     * <p>The numbers are read from the counter column, so neither the join table nor any student is
+     * read. The page is ordered by the count descending and then by id when {@code sort}
+     * is {@code students}, or only by id when it is {@code id}.
+     *
+     * @param sort  {@code id} or {@code students}
+     * @param key   the count of the last subject of the previous page, {@code Long.MAX_VALUE} for the first page
+     * @param id    the id of the last subject of the previous page, {@code 0} for the first page
+     * @param limit the number of rows to read
+     * @return the counts of the subjects following the given key and id
+     */
+    @Query(nativeQuery = true, value = "select id as \"id\", name as \"name\", teacher_id as \"teacherId\", student_count as \"studentCount\" "
+            + "from (select id, name, teacher_id, student_count, "
+            + "case :sort when 'students' then student_count else 0 end as sort_key from subjects) stats "
+            + "where sort_key < :key or (sort_key = :key and id > :id) "
+            + "order by sort_key desc, id limit :limit")
+    List<SubjectStats> findStats(@Param("sort") String sort, @Param("key") long key, @Param("id") int id, @Param("limit") int limit);
 }
@@ -1,14 +1,229 @@
 package com.example.university.repository;
 
+import com.example.university.dto.TeacherDto;
+import com.example.university.dto.TeacherStats;
+import com.example.university.dto.VersionStamp;
 import com.example.university.entity.Teacher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for {@link Teacher} entities.
  *
  * <p>This interface extends {@link JpaRepository}, providing CRUD operations and query methods
- * for {@link Teacher} entities with {@code Integer} as the primary key type.
+ * for {@link Teacher} entities with {@code Integer} as the primary key type. The read queries
+ * project straight into {@link TeacherDto}.
  */
 public interface TeacherRepository extends JpaRepository<Teacher, Integer> {
 
+    /**
+     * Finds a teacher by id as a {@link TeacherDto}.
+     *
+     * @param id the id of the teacher
+     * @return the teacher, or empty if there is no teacher with such id
+     */
+    @Query("select new com.example.university.dto.TeacherDto(t.id, t.firstName, t.lastName, t.middleName, t.age, t.studentCount) "
+            + "from Teacher t where t.id = :id")
+    Optional<TeacherDto> findDtoById(@Param("id") int id);
+
+    /**
+     * Finds the teachers with the given ids as {@link TeacherDto}s with a single {@code in} query.
+     *
+     * @param ids the ids of the teachers
+     * @return the teachers found, in no particular order; ids without a teacher are skipped
+     */
+    @Query("select new com.example.university.dto.TeacherDto(t.id, t.firstName, t.lastName, t.middleName, t.age, t.studentCount) "
+            + "from Teacher t where t.id in :ids")
+    List<TeacherDto> findDtosByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Finds teachers with an id greater than the given one, in id order.
+     *
+     * @param id       the id after which the page starts
+     * @param pageable the page size; only the first page of the result is read
+     * @return the teachers following the given id
+     * @see StudentRepository#findDtosAfter(int, Pageable)
+     */
+    @Query("select new com.example.university.dto.TeacherDto(t.id, t.firstName, t.lastName, t.middleName, t.age, t.studentCount) "
+            + "from Teacher t where t.id > :id order by t.id")
+    List<TeacherDto> findDtosAfter(@Param("id") int id, Pageable pageable);
+
+    /**
+     * Streams all teachers in id order, fetching {@code 1000} rows at a time.
+     *
+     * @return a stream of all teachers
+     * @see StudentRepository#streamAllDtos()
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.example.university.dto.TeacherDto(t.id, t.firstName, t.lastName, t.middleName, t.age, t.studentCount) "
+            + "from Teacher t order by t.id")
+    Stream<TeacherDto> streamAllDtos();
+
+    /**
+     * Finds the teachers of a student with a single query.
+     *
+     * <p>The result is empty only when there is no such student; a student without teachers
+     * yields a single placeholder row with id {@code 0}.
+     *
+     * @param studentId the id of the student
+     * @return the teachers of the student, or an empty list if the student doesn't exist
+     * @see StudentRepository#findStudentsOfTeacher(int)
+     */
+    @Query("select new com.example.university.dto.TeacherDto(coalesce(t.id, 0), t.firstName, t.lastName, t.middleName, "
+            + "coalesce(t.age, 0), coalesce(t.studentCount, 0)) "
+            + "from Student s left join s.teachers t where s.id = :studentId order by t.id")
+    List<TeacherDto> findTeachersOfStudent(@Param("studentId") int studentId);
+
+    /**
+     * Finds the teachers of any of the given students.
+     *
+     * @param studentIds the ids of the students, not empty
+     * @return the ids of the teachers, each once
+     */
+    @Query(nativeQuery = true, value = "select distinct ts.teacher_id from teacher_student ts where ts.student_id in (:studentIds)")
+    List<Integer> findIdsOfStudents(@Param("studentIds") Collection<Integer> studentIds);
+
+    /**
+     * Finds the version of a teacher without loading the teacher.
+     *
+     * @param id the id of the teacher
+     * @return the version, or empty if there is no teacher with such id
+     */
+    @Query("select t.version from Teacher t where t.id = :id")
+    Optional<Long> findVersionById(@Param("id") int id);
+
+    /**
+     * Aggregates the ids and versions of the page that {@link #findDtosAfter(int, Pageable)} would return.
+     *
+     * @param id    the id after which the page starts
+     * @param limit the number of rows the page query reads
+     * @return the version stamp of the page
+     * @see StudentRepository#findPageStamp(int, int)
+     */
+    @Query(nativeQuery = true, value = "select 0 as \"ownerVersion\", count(*) as \"count\", coalesce(sum(p.id), 0) as \"idSum\", "
+            + "coalesce(sum(p.version), 0) as \"versionSum\" "
+            + "from (select id, version from teachers where id > :id order by id limit :limit) p")
+    VersionStamp findPageStamp(@Param("id") int id, @Param("limit") int limit);
+
+    /**
+     * Aggregates the version of a student and the ids and versions of their teachers.
+     *
+     * @param studentId the id of the student
+     * @return the version stamp of the teachers of the student, or empty if the student doesn't exist
+     * @see #findTeachersOfStudent(int)
+     */
+    @Query("select s.version as ownerVersion, count(t.id) as count, coalesce(sum(t.id), 0) as idSum, "
+            + "coalesce(sum(t.version), 0) as versionSum "
+            + "from Student s left join s.teachers t where s.id = :studentId group by s.id, s.version")
+    Optional<VersionStamp> findTeachersOfStudentStamp(@Param("studentId") int studentId);
+
+    /**
+     * Adds to the number of students of a teacher and increments their version, after their students
+     * were changed by a direct write to the join table.
+     *
+     * @param id    the id of the teacher
+     * @param delta the number of students added, negative for removed ones
+     * @return the number of teachers updated
+     * @see StudentRepository#addToSubjectCount(int, int)
+     */
+    @Modifying
+    @Query("update Teacher t set t.studentCount = t.studentCount + :delta, t.version = t.version + 1 where t.id = :id")
+    int addToStudentCount(@Param("id") int id, @Param("delta") int delta);
+
+    /**
+     * Subtracts deleted students from the numbers of students of the teachers they belonged to and
+     * increments the versions of those teachers.
+     *
+     * <p>Must be called before the students are deleted, while their rows in {@code teacher_student} still exist.
+     *
+     * @param studentIds the ids of the students, not empty
+     * @return the number of teachers updated
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update teachers t set student_count = t.student_count - "
+            + "(select count(*) from teacher_student j where j.teacher_id = t.id and j.student_id in (:studentIds)), "
+            + "version = t.version + 1 "
+            + "where t.id in (select teacher_id from teacher_student where student_id in (:studentIds))")
+    int subtractStudents(@Param("studentIds") Collection<Integer> studentIds);
+
+    /**
+     * Deletes the given teachers with a single statement.
+     *
+     * <p>The database deletes their subjects, and the rows of the teachers and of those subjects in the
+     * join tables, by the {@code on delete cascade} of the foreign keys, so nothing is loaded.
+     *
+     * @param ids the ids of the teachers, not empty
+     * @return the number of teachers deleted
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from teachers where id in (:ids)")
+    int deleteByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Counts the students of the given teachers again from {@code teacher_student} and increments their versions.
+     *
+     * @param ids the ids of the teachers
+     * @return the number of teachers updated
+     * @see StudentRepository#recountSubjects(Collection)
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update teachers t set student_count = "
+            + "(select count(*) from teacher_student j where j.teacher_id = t.id), version = t.version + 1 "
+            + "where t.id in (:ids)")
+    int recountStudents(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Finds the ids of the teachers following the given id, in id order, from the primary key index.
+     *
+     * @param id       the id after which the ids start
+     * @param pageable the number of ids; only the first page of the result is read
+     * @return the ids following the given one
+     */
+    @Query("select t.id from Teacher t where t.id > :id order by t.id")
+    List<Integer> findIdsAfter(@Param("id") int id, Pageable pageable);
+
+    /**
+     * Finds which of the given teachers have a number of students that differs from their rows in
+     * {@code teacher_student}.
+     *
+     * @param ids the ids of the teachers to check
+     * @return the ids of the teachers whose counter drifted
+     */
+    @Query(nativeQuery = true, value = "select t.id from teachers t where t.id in (:ids) "
+            + "and t.student_count <> (select count(*) from teacher_student j where j.teacher_id = t.id)")
+    List<Integer> findStudentCountDrift(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Counts the students and subjects of every teacher and returns one page of the counts.
+     *
+     * <p>The numbers of students are read from the counter column. The subjects are grouped in
+     * {@code subjects} before they are joined to the teachers, so no subject is read.
+     * The page is ordered by the count named by {@code sort} descending and then by id, or only by
+     * id when {@code sort} is {@code id}.
+     *
+     * @param sort  {@code id}, {@code students} or {@code subjects}
+     * @param key   the count of the last teacher of the previous page, {@code Long.MAX_VALUE} for the first page
+     * @param id    the id of the last teacher of the previous page, {@code 0} for the first page
+     * @param limit the number of rows to read
+     * @return the counts of the teachers following the given key and id
+     */
+    @Query(nativeQuery = true, value = "select id as \"id\", first_name as \"firstName\", last_name as \"lastName\", "
+            + "student_count as \"studentCount\", subject_count as \"subjectCount\" "
+            + "from (select t.id, t.first_name, t.last_name, t.student_count, coalesce(s.c, 0) as subject_count, "
+            + "case :sort when 'students' then t.student_count when 'subjects' then coalesce(s.c, 0) else 0 end as sort_key "
+            + "from teachers t "
+            + "left join (select teacher_id, count(*) as c from subjects where teacher_id is not null group by teacher_id) s "
+            + "on s.teacher_id = t.id) stats "
+            + "where sort_key < :key or (sort_key = :key and id > :id) "
+            + "order by sort_key desc, id limit :limit")
+    List<TeacherStats> findStats(@Param("sort") String sort, @Param("key") long key, @Param("id") int id, @Param("limit") int limit);
 }
@@ -0,0 +1,288 @@
+package com.example.university.search;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * In-memory index that finds the ids of entities by the prefix of any of their names.
+ *
+ * <p>Every name of an entity is stored once as a key made of the lower-cased name, a separator and
+ * the id packed into two chars. The keys live sorted in one {@code char} array, with an {@code int}
+ * array of where each of them ends, so an entity costs the chars of its names and a few ints. Nothing
+ * else of the entity is kept; the callers read the entities of the ids found from the database.
+ *
+ * <p>The sorted arrays are never changed in place. A write marks the old keys of its ids as stale and
+ * adds the new ones to a small sorted set of pending keys, and once there are more than
+ * {@value #MAX_PENDING} pending keys and stale ids they are merged into new arrays. A search walks
+ * the arrays and the pending keys from the prefix onwards until no key starts with it, so it touches
+ * only the matches it returns, and it reads one immutable snapshot, so it never locks.
+ *
+ * <p>Writes made inside a transaction are applied when the transaction commits, so the index never
+ * shows a change that was rolled back. Writes outside a transaction are applied immediately.
+ *
+ * @param <T> the type of the indexed DTOs
+ */
+public class NamePrefixIndex<T> {
+
+    private static final char SEPARATOR = '\u0000';
+
+    private static final int MAX_PENDING = 1024;
+
+    private final ToIntFunction<T> idOf;
+
+    private final Function<T, List<String>> namesOf;
+
+    private volatile Snapshot snapshot = new Snapshot(new char[0], new int[0], Set.of(), new TreeSet<>(), Map.of());
+
+    /**
+     * Creates an empty index.
+     *
+     * @param idOf    extracts the id of a DTO
+     * @param namesOf extracts the names of a DTO to index, {@code null} names are skipped
+     */
+    public NamePrefixIndex(ToIntFunction<T> idOf, Function<T, List<String>> namesOf) {
+        this.idOf = idOf;
+        this.namesOf = namesOf;
+    }
+
+    /**
+     * Adds the names of a DTO to the index or replaces the ones with the same id.
+     *
+     * @param dto the DTO
+     */
+    public void put(T dto) {
+        afterCommit(() -> apply(List.of(dto), List.of()));
+    }
+
+    /**
+     * Adds the names of many DTOs to the index.
+     *
+     * @param dtos the DTOs
+     */
+    public void putAll(Collection<T> dtos) {
+        afterCommit(() -> apply(dtos, List.of()));
+    }
+
+    /**
+     * Removes the names of the entity with the given id from the index.
+     *
+     * @param id the id of the entity
+     */
+    public void remove(int id) {
+        afterCommit(() -> apply(List.of(), List.of(id)));
+    }
+
+    /**
+     * Finds the ids of the entities that have a name starting with the given prefix, ignoring case.
+     *
+     * <p>The ids are ordered by the matching name and then by id; an entity with several matching names
+     * is returned once, at the position of its first match.
+     *
+     * @param prefix the prefix of a name
+     * @param limit  the maximum number of ids to return
+     * @return the matching ids, in order
+     */
+    public Set<Integer> search(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        Snapshot current = snapshot;
+        Set<Integer> ids = new LinkedHashSet<>();
+        int sorted = current.firstAtLeast(normalized);
+        Iterator<String> pending = current.pending.tailSet(normalized).iterator();
+        String next = pending.hasNext() ? pending.next() : null;
+        while (ids.size() < limit) {
+            boolean sortedMatches = sorted < current.ends.length && current.startsWith(sorted, normalized);
+            boolean pendingMatches = next != null && next.startsWith(normalized);
+            if (pendingMatches && (!sortedMatches || current.compare(sorted, next) > 0)) {
+                ids.add(idOf(next));
+                next = pending.hasNext() ? pending.next() : null;
+            } else if (sortedMatches) {
+                int id = current.idAt(sorted++);
+                if (!current.stale.contains(id)) {
+                    ids.add(id);
+                }
+            } else {
+                break;
+            }
+        }
+        return ids;
+    }
+
+    private synchronized void apply(Collection<T> dtos, Collection<Integer> removedIds) {
+        Snapshot current = snapshot;
+        Set<Integer> stale = new HashSet<>(current.stale);
+        NavigableSet<String> pending = new TreeSet<>(current.pending);
+        Map<Integer, List<String>> pendingById = new HashMap<>(current.pendingById);
+        for (Integer id : removedIds) {
+            stale.add(id);
+            pending.removeAll(pendingById.getOrDefault(id, List.of()));
+            pendingById.remove(id);
+        }
+        for (T dto : dtos) {
+            int id = idOf.applyAsInt(dto);
+            stale.add(id);
+            pending.removeAll(pendingById.getOrDefault(id, List.of()));
+            List<String> keys = new ArrayList<>();
+            for (String name : namesOf.apply(dto)) {
+                if (name != null) {
+                    keys.add(key(normalize(name), id));
+                }
+            }
+            pending.addAll(keys);
+            pendingById.put(id, keys);
+        }
+        Snapshot updated = new Snapshot(current.chars, current.ends, stale, pending, pendingById);
+        snapshot = pending.size() + stale.size() > MAX_PENDING ? updated.merged() : updated;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(String name, int id) {
+        return name + SEPARATOR + (char) (id >>> 16) + (char) id;
+    }
+
+    private static int idOf(String key) {
+        int length = key.length();
+        return key.charAt(length - 2) << 16 | key.charAt(length - 1);
+    }
+
+    private static void afterCommit(Runnable write) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            write.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                write.run();
+            }
+        });
+    }
+
+    /**
+     * One immutable state of the index: the sorted keys in their arrays, the ids whose keys in the arrays
+     * are stale, and the keys written since the arrays were built.
+     */
+    private static final class Snapshot {
+
+        private final char[] chars;
+
+        private final int[] ends;
+
+        private final Set<Integer> stale;
+
+        private final NavigableSet<String> pending;
+
+        private final Map<Integer, List<String>> pendingById;
+
+        Snapshot(char[] chars, int[] ends, Set<Integer> stale, NavigableSet<String> pending, Map<Integer, List<String>> pendingById) {
+            this.chars = chars;
+            this.ends = ends;
+            this.stale = stale;
+            this.pending = pending;
+            this.pendingById = pendingById;
+        }
+
+        /**
+         * Builds new arrays of the keys that are not stale and the pending keys, merged in order.
+         */
+        Snapshot merged() {
+            int length = chars.length;
+            for (String key : pending) {
+                length += key.length();
+            }
+            char[] mergedChars = new char[length];
+            int[] mergedEnds = new int[ends.length + pending.size()];
+            int position = 0;
+            int count = 0;
+            int sorted = 0;
+            Iterator<String> keys = pending.iterator();
+            String next = keys.hasNext() ? keys.next() : null;
+            while (sorted < ends.length || next != null) {
+                if (next != null && (sorted == ends.length || compare(sorted, next) > 0)) {
+                    next.getChars(0, next.length(), mergedChars, position);
+                    position += next.length();
+                    mergedEnds[count++] = position;
+                    next = keys.hasNext() ? keys.next() : null;
+                } else {
+                    if (!stale.contains(idAt(sorted))) {
+                        int start = startOf(sorted);
+                        System.arraycopy(chars, start, mergedChars, position, ends[sorted] - start);
+                        position += ends[sorted] - start;
+                        mergedEnds[count++] = position;
+                    }
+                    sorted++;
+                }
+            }
+            return new Snapshot(Arrays.copyOf(mergedChars, position), Arrays.copyOf(mergedEnds, count),
+                    Set.of(), new TreeSet<>(), Map.of());
+        }
+
+        /**
+         * Finds the index of the first key in the arrays that is not less than the given string.
+         */
+        int firstAtLeast(String value) {
+            int low = 0;
+            int high = ends.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(middle, value) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        int compare(int index, String value) {
+            int start = startOf(index);
+            int length = Math.min(ends[index] - start, value.length());
+            for (int i = 0; i < length; i++) {
+                char c = chars[start + i];
+                if (c != value.charAt(i)) {
+                    return c - value.charAt(i);
+                }
+            }
+            return ends[index] - start - value.length();
+        }
+
+        boolean startsWith(int index, String prefix) {
+            int start = startOf(index);
+            if (ends[index] - start < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (chars[start + i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int idAt(int index) {
+            int end = ends[index];
+            return chars[end - 2] << 16 | chars[end - 1];
+        }
+
+        private int startOf(int index) {
+            return index == 0 ? 0 : ends[index - 1];
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.university.service;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Persists many new entities in JDBC batches.
+ *
+ * <p>The entities get their ids from pooled sequences, so Hibernate doesn't need a round-trip per
+ * row to learn the generated key and can group the inserts into batches of
+ * {@code hibernate.jdbc.batch_size}. The persistence context is flushed and cleared after every
+ * batch so its size stays constant however many rows are inserted.
+ */
+final class BatchInserts {
+
+    /**
+     * Number of entities persisted between two flushes, the same as {@code hibernate.jdbc.batch_size}.
+     */
+    static final int BATCH_SIZE = 50;
+
+    private BatchInserts() {
+    }
+
+    static <D, E> List<D> persistAll(EntityManager entityManager, List<D> dtos, Function<D, E> toEntity, Function<E, D> toDto) {
+        List<D> saved = new ArrayList<>(dtos.size());
+        for (D dto : dtos) {
+            E entity = toEntity.apply(dto);
+            entityManager.persist(entity);
+            saved.add(toDto.apply(entity));
+            if (saved.size() % BATCH_SIZE == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return saved;
+    }
+}
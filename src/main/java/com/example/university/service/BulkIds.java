@@ -0,0 +1,58 @@
+package com.example.university.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Helpers for the bulk relationship endpoints, which receive a list of ids in the request body, and
+ * the bulk delete endpoints, which receive it in the query string.
+ *
+ * <p>The ids are deduplicated, sorted and split into chunks of {@link #CHUNK_SIZE}, so every
+ * statement has a bounded number of bind parameters and concurrent bulk requests lock the join
+ * table rows in the same order.
+ */
+final class BulkIds {
+
+    static final int CHUNK_SIZE = 1000;
+
+    private BulkIds() {
+    }
+
+    static List<List<Integer>> distinctChunks(Collection<Integer> ids) {
+        List<Integer> sorted = new ArrayList<>(ids.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new)));
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < sorted.size(); from += CHUNK_SIZE) {
+            chunks.add(sorted.subList(from, Math.min(from + CHUNK_SIZE, sorted.size())));
+        }
+        return chunks;
+    }
+
+    static List<Integer> missing(List<List<Integer>> chunks, Function<Collection<Integer>, List<Integer>> findExisting) {
+        List<Integer> missing = new ArrayList<>();
+        for (List<Integer> chunk : chunks) {
+            List<Integer> found = findExisting.apply(chunk);
+            if (found.size() != chunk.size()) {
+                TreeSet<Integer> absent = new TreeSet<>(chunk);
+                absent.removeAll(found);
+                missing.addAll(absent);
+            }
+        }
+        return missing;
+    }
+
+    static List<Integer> except(List<Integer> chunk, Collection<Integer> present) {
+        Set<Integer> skipped = new HashSet<>(present);
+        return chunk.stream()
+                .filter(id -> !skipped.contains(id))
+                .collect(Collectors.toList());
+    }
+}
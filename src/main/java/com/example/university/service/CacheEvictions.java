@@ -0,0 +1,44 @@
+package com.example.university.service;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Evicts the DTOs whose roster sizes a method changed, when their ids are only known while it runs.
+ *
+ * <p>The ids are evicted one by one once the transaction has committed, like a {@code @CacheEvict} of the
+ * same method, so a read between the write and the commit can't put the old DTO back into the cache.
+ * Outside a transaction they are evicted immediately.
+ */
+final class CacheEvictions {
+
+    private CacheEvictions() {
+    }
+
+    static void evictAfterCommit(CacheManager cacheManager, String cacheName, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Integer> evicted = List.copyOf(ids);
+        Runnable evict = () -> {
+            Cache cache = cacheManager.getCache(cacheName);
+            if (cache != null) {
+                evicted.forEach(cache::evict);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict.run();
+            }
+        });
+    }
+}
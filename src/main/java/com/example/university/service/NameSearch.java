@@ -0,0 +1,23 @@
+package com.example.university.service;
+
+import com.example.university.exception.InvalidRequestParameterException;
+
+/**
+ * Checks the parameters of the name search endpoints before the name index is queried.
+ */
+final class NameSearch {
+
+    static final int MAX_LIMIT = 100;
+
+    private NameSearch() {
+    }
+
+    static void check(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            throw new InvalidRequestParameterException("Prefix cannot be blank");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidRequestParameterException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+}
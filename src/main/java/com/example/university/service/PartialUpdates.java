@@ -0,0 +1,89 @@
+package com.example.university.service;
+
+import com.example.university.exception.InvalidFieldsException;
+import com.example.university.exception.InvalidRequestParameterException;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Partial updates of the {@code PATCH} endpoints, which receive only the fields a client wants to change.
+ *
+ * <p>The fields are checked against the writable fields of the entity's DTO and validated with the
+ * constraints of that DTO, one value at a time, by the validator of the application. They are then written by one criteria update that sets
+ * only those columns and increments the version, so nothing is read before the update. With an expected
+ * version the update also matches the version, and a row count of {@code 0} means that the entity is
+ * missing or was modified. The id and the counters are read-only and are ignored like in the other
+ * requests, so a client can send back what it got.
+ *
+ * <p>Every writable field is stored in a {@code NOT NULL} column, so an explicit {@code null} is rejected
+ * before the update, also for the fields whose DTO type is primitive and therefore has no {@code @NotNull}.
+ * The invalid fields are reported together, each with its message, like the errors of a validated body.
+ */
+final class PartialUpdates {
+
+    private static final String ID = "id";
+
+    private static final String VERSION = "version";
+
+    private PartialUpdates() {
+    }
+
+    static <D> Map<String, Object> parseChanges(Validator validator, Map<String, Object> changes, Class<D> dto,
+                                                Map<String, Class<?>> writable, List<String> readOnly) {
+        Map<String, Object> parsed = new LinkedHashMap<>();
+        Map<String, String> errors = new TreeMap<>();
+        changes.forEach((field, value) -> {
+            if (readOnly.contains(field)) {
+                return;
+            }
+            Class<?> type = writable.get(field);
+            if (type == null) {
+                throw new InvalidRequestParameterException("Unknown field " + field + ", expected some of " + new TreeSet<>(writable.keySet()));
+            }
+            if (value != null && !type.isInstance(value)) {
+                throw new InvalidRequestParameterException("Field " + field + " has a value of the wrong type, expected " + type.getSimpleName());
+            }
+            Set<ConstraintViolation<D>> violations = validator.validateValue(dto, field, value);
+            violations.forEach(violation -> errors.put(field, violation.getMessage()));
+            if (value == null && violations.isEmpty()) {
+                // a primitive field of the DTO can't declare @NotNull, but its column is NOT NULL as well
+                errors.put(field, Character.toUpperCase(field.charAt(0)) + field.substring(1) + " cannot be null");
+            }
+            parsed.put(field, value);
+        });
+        if (!errors.isEmpty()) {
+            throw new InvalidFieldsException(errors);
+        }
+        if (parsed.isEmpty()) {
+            throw new InvalidRequestParameterException("Nothing to update, expected some of " + new TreeSet<>(writable.keySet()));
+        }
+        return parsed;
+    }
+
+    static <E> int update(EntityManager entityManager, Class<E> entity, int id, Map<String, Object> changes, Long expectedVersion) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<E> update = cb.createCriteriaUpdate(entity);
+        Root<E> root = update.from(entity);
+        changes.forEach((field, value) -> update.set(root.get(field), value));
+        update.set(root.<Long>get(VERSION), cb.sum(root.<Long>get(VERSION), 1L));
+        List<Predicate> where = new ArrayList<>();
+        where.add(cb.equal(root.get(ID), id));
+        if (expectedVersion != null) {
+            where.add(cb.equal(root.get(VERSION), expectedVersion));
+        }
+        update.where(where.toArray(new Predicate[0]));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.university.service;
+
+import com.example.university.exception.NoEntityFoundException;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Helpers for the rows returned by the relationship queries of the repositories.
+ *
+ * <p>Those queries left join the related entities to their owner, so a missing owner yields no
+ * rows at all and an owner without related entities yields a single placeholder row with id
+ * {@code 0}. This lets one statement answer both the lookup and the existence check.
+ */
+final class RelationRows {
+
+    private RelationRows() {
+    }
+
+    static <T> List<T> relatedOrThrow(List<T> rows, ToIntFunction<T> idOf, Supplier<NoEntityFoundException> ownerNotFound) {
+        if (rows.isEmpty()) {
+            throw ownerNotFound.get();
+        }
+        return rows.stream()
+                .filter(row -> idOf.applyAsInt(row) != 0)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.university.service;
+
+import com.example.university.config.CacheConfig;
+import com.example.university.repository.StudentRepository;
+import com.example.university.repository.SubjectRepository;
+import com.example.university.repository.TeacherRepository;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Background job that repairs the roster counters which no longer match the join tables.
+ *
+ * <p>The services change the counters together with the join tables, in the same transaction, so they
+ * only drift when the tables are written outside the application or when counting a bulk enrollment
+ * again races with a concurrent change of the same student. The job walks every table in id order,
+ * {@link #BATCH_SIZE} ids at a time. For each batch it finds the rows whose counter differs from the
+ * join table and counts them again, in one short transaction, so it never holds locks for long.
+ * The repaired DTOs are evicted from the caches.
+ *
+ * <p>It runs every {@code university.roster-counts.reconcile.interval}, counted from the end of the
+ * previous run, and is turned off with {@code university.roster-counts.reconcile.enabled=false}.
+ */
+@Component
+@AllArgsConstructor
+@ConditionalOnProperty(name = "university.roster-counts.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class RosterCountReconciler {
+
+    /**
+     * Number of ids checked by one query and repaired in one transaction.
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    private StudentRepository studentRepo;
+
+    private TeacherRepository teacherRepo;
+
+    private SubjectRepository subjectRepo;
+
+    private TransactionTemplate transactionTemplate;
+
+    private CacheManager cacheManager;
+
+    /**
+     * Repairs the counters of all students, teachers and subjects.
+     *
+     * @return the number of repaired rows
+     */
+    @Scheduled(initialDelayString = "${university.roster-counts.reconcile.initial-delay:PT10M}",
+            fixedDelayString = "${university.roster-counts.reconcile.interval:PT1H}")
+    public int reconcile() {
+        return repair(studentRepo::findIdsAfter, studentRepo::findSubjectCountDrift, studentRepo::recountSubjects, CacheConfig.STUDENTS)
+                + repair(teacherRepo::findIdsAfter, teacherRepo::findStudentCountDrift, teacherRepo::recountStudents, CacheConfig.TEACHERS)
+                + repair(subjectRepo::findIdsAfter, subjectRepo::findStudentCountDrift, subjectRepo::recountStudents, CacheConfig.SUBJECTS);
+    }
+
+    private int repair(BiFunction<Integer, Pageable, List<Integer>> findIdsAfter, Function<List<Integer>, List<Integer>> findDrift,
+                       Consumer<List<Integer>> recount, String cacheName) {
+        Pageable batch = PageRequest.of(0, BATCH_SIZE);
+        int repaired = 0;
+        List<Integer> ids = findIdsAfter.apply(0, batch);
+        while (!ids.isEmpty()) {
+            List<Integer> checked = ids;
+            List<Integer> drifted = transactionTemplate.execute(status -> {
+                List<Integer> found = findDrift.apply(checked);
+                if (!found.isEmpty()) {
+                    recount.accept(found);
+                }
+                return found;
+            });
+            if (drifted != null && !drifted.isEmpty()) {
+                Cache cache = cacheManager.getCache(cacheName);
+                if (cache != null) {
+                    drifted.forEach(cache::evict);
+                }
+                repaired += drifted.size();
+            }
+            ids = findIdsAfter.apply(ids.get(ids.size() - 1), batch);
+        }
+        return repaired;
+    }
+}
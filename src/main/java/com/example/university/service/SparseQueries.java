@@ -0,0 +1,111 @@
+package com.example.university.service;
+
+import com.example.university.dto.Versioned;
+import com.example.university.exception.InvalidRequestParameterException;
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TupleElement;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Read queries that select only the fields a client asked for with the {@code fields} parameter.
+ *
+ * <p>The fields are validated against the fields of the entity's DTO and turned into a criteria
+ * tuple query, so the SQL selects only those columns. Every row becomes a map from field name to
+ * value in the requested order, which Jackson serializes as an object with just those fields.
+ * The {@code id} is always selected first because the cursors and batch lookups need it.
+ *
+ * <p>A single entity is read together with its version, which becomes the ETag of the response.
+ */
+final class SparseQueries {
+
+    private static final String ID = "id";
+
+    private static final String VERSION = "version";
+
+    private SparseQueries() {
+    }
+
+    static List<String> parseFields(String fields, List<String> allowed) {
+        Set<String> parsed = new LinkedHashSet<>();
+        parsed.add(ID);
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!allowed.contains(name)) {
+                throw new InvalidRequestParameterException("Unknown field " + name + ", expected some of " + allowed);
+            }
+            parsed.add(name);
+        }
+        return List.copyOf(parsed);
+    }
+
+    static int idOf(Map<String, Object> row) {
+        return (Integer) row.get(ID);
+    }
+
+    static List<Map<String, Object>> findAfter(EntityManager entityManager, Class<?> entity, List<String> fields, int id, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<?> root = query.from(entity);
+        query.multiselect(selections(root, fields))
+                .where(cb.greaterThan(root.<Integer>get(ID), id))
+                .orderBy(cb.asc(root.get(ID)));
+        return toRows(entityManager.createQuery(query).setMaxResults(limit).getResultList());
+    }
+
+    static List<Map<String, Object>> findByIds(EntityManager entityManager, Class<?> entity, List<String> fields, Collection<Integer> ids) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<?> root = query.from(entity);
+        query.multiselect(selections(root, fields))
+                .where(root.get(ID).in(ids));
+        return toRows(entityManager.createQuery(query).getResultList());
+    }
+
+    static Optional<Versioned<Map<String, Object>>> findVersionedById(EntityManager entityManager, Class<?> entity, List<String> fields,
+                                                                      int id) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<?> root = query.from(entity);
+        List<Selection<?>> selections = new ArrayList<>(selections(root, fields));
+        selections.add(root.get(VERSION).alias(VERSION));
+        query.multiselect(selections)
+                .where(cb.equal(root.get(ID), id));
+        return toRows(entityManager.createQuery(query).getResultList()).stream()
+                .findFirst()
+                .map(row -> new Versioned<>(row, (Long) row.remove(VERSION)));
+    }
+
+    private static List<Selection<?>> selections(Root<?> root, List<String> fields) {
+        return fields.stream()
+                .<Selection<?>>map(field -> root.get(field).alias(field))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Map<String, Object>> toRows(List<Tuple> tuples) {
+        return tuples.stream()
+                .map(tuple -> {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (TupleElement<?> element : tuple.getElements()) {
+                        row.put(element.getAlias(), tuple.get(element));
+                    }
+                    return row;
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -1,9 +1,15 @@
 package com.example.university.service;
 
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.StudentDto;
 import com.example.university.dto.SubjectDto;
 import com.example.university.dto.TeacherDto;
+import com.example.university.dto.VersionStamp;
+import com.example.university.dto.Versioned;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Service interface for managing {@link com.example.university.entity.Student} entities.
@@ -14,22 +20,46 @@ import java.util.List;
  */
 public interface StudentService {
 
-    List<StudentDto> getAllStudents();
+    CursorPage<StudentDto> getStudents(String after, int limit);
 
-    StudentDto getStudentById(int id);
+    CursorPage<Map<String, Object>> getStudents(String after, int limit, String fields);
+
+    void exportStudents(Consumer<StudentDto> sink);
+
+    Versioned<StudentDto> getStudentById(int id);
+
+    Versioned<Map<String, Object>> getStudentById(int id, String fields);
+
+    List<StudentDto> searchStudents(String prefix, int limit);
+
+    BatchLookup<StudentDto> getStudentsByIds(List<Integer> ids);
+
+    BatchLookup<Map<String, Object>> getStudentsByIds(List<Integer> ids, String fields);
+
+    VersionStamp getStudentsPageStamp(String after, int limit);
 
     StudentDto saveStudent(StudentDto stDto);
 
+    List<StudentDto> saveStudents(List<StudentDto> studentDtos);
+
     void deleteStudent(int id);
 
-    StudentDto updateStudent(int id, StudentDto studentDto);
+    int deleteStudents(List<Integer> ids);
+
+    StudentDto updateStudent(int id, StudentDto studentDto, Long expectedVersion);
+
+    StudentDto patchStudent(int id, Map<String, Object> changes, Long expectedVersion);
 
     List<TeacherDto> getAllTeachersOfStudent(int studentId);
 
+    VersionStamp getTeachersOfStudentStamp(int studentId);
+
     void addTeacherToStudent(int studentId, int teacherId);
 
     List<SubjectDto> getAllSubjectsOfStudent(int studentId);
 
+    VersionStamp getSubjectsOfStudentStamp(int studentId);
+
     void addSubjectToStudent(int studentId, int subjectId);
 
     void deleteSubjectFromStudent(int studentId, int subjectId);
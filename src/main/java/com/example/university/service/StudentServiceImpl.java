@@ -1,23 +1,40 @@
 package com.example.university.service;
 
+import com.example.university.config.CacheConfig;
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.StudentDto;
 import com.example.university.dto.SubjectDto;
 import com.example.university.dto.TeacherDto;
+import com.example.university.dto.VersionStamp;
+import com.example.university.dto.Versioned;
 import com.example.university.entity.Student;
-import com.example.university.entity.Subject;
-import com.example.university.entity.Teacher;
 import com.example.university.exception.EntityAlreadyAddedException;
+import com.example.university.exception.EntityVersionMismatchException;
+import com.example.university.exception.InvalidFieldsException;
+import com.example.university.exception.InvalidRequestParameterException;
 import com.example.university.exception.NoEntityFoundException;
 import com.example.university.mapper.StudentMapper;
-import com.example.university.mapper.SubjectMapper;
-import com.example.university.mapper.TeacherMapper;
 import com.example.university.repository.StudentRepository;
 import com.example.university.repository.SubjectRepository;
 import com.example.university.repository.TeacherRepository;
+import com.example.university.search.NamePrefixIndex;
 import lombok.AllArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import javax.persistence.EntityManager;
+import javax.validation.Validator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 /**
@@ -31,6 +48,13 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class StudentServiceImpl implements StudentService {
 
+    private static final List<String> FIELDS = List.of("id", "firstName", "lastName", "middleName", "age", "subjectCount");
+
+    private static final Map<String, Class<?>> WRITABLE_FIELDS = Map.of(
+            "firstName", String.class, "lastName", String.class, "middleName", String.class, "age", Integer.class);
+
+    private static final List<String> READ_ONLY_FIELDS = List.of("id", "subjectCount");
+
     private StudentRepository studentRepo;
 
     private TeacherRepository teacherRepo;
@@ -39,36 +63,178 @@ public class StudentServiceImpl implements StudentService {
 
     private StudentMapper studentMapper;
 
-    private TeacherMapper teacherMapper;
+    private EntityManager entityManager;
+
+    private Validator validator;
+
+    private CacheManager cacheManager;
 
-    private SubjectMapper subjectMapper;
+    private NamePrefixIndex<StudentDto> nameIndex;
 
     /**
      * Gets student by id
      *
+     * <p>The student is cached together with the version it was read with, so its ETag always belongs to
+     * the cached DTO. Like the other reads it may come from a replica that is behind the primary, and then
+     * it is cached with its older version, which an update with {@code If-Match} detects on the primary.
+     *
      * @param id of student
-     * @return studentDto
+     * @return studentDto and its version
      * @throws NoEntityFoundException if student with such id doesn't exist
      */
     @Override
-    public StudentDto getStudentById(int id) {
-        Student student = studentRepo.findById(id)
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.STUDENTS, key = "#id")
+    public Versioned<StudentDto> getStudentById(int id) {
+        return studentRepo.findById(id)
+                .map(student -> new Versioned<>(studentMapper.entityToDto(student), student.getVersion()))
                 .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + id));
-        return studentMapper.entityToDto(student);
+    }
+
+    /**
+     * Gets student by id with only the requested fields
+     *
+     * @param id     of student
+     * @param fields comma separated fields of studentDto to select, the id is always included
+     * @return student with the requested fields and its version
+     * @throws NoEntityFoundException if student with such id doesn't exist
+     * @throws com.example.university.exception.InvalidRequestParameterException if a field is unknown
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Versioned<Map<String, Object>> getStudentById(int id, String fields) {
+        List<String> selected = SparseQueries.parseFields(fields, FIELDS);
+        return SparseQueries.findVersionedById(entityManager, Student.class, selected, id)
+                .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + id));
+    }
+
+    /**
+     * Searches students by the prefix of their first, last or middle name
+     *
+     * <p>The ids of the students are found in the in-memory name index, and the students themselves are read with a
+     * single {@code in} query.
+     *
+     * @param prefix beginning of a name, case is ignored
+     * @param limit maximum number of students to return
+     * @return studentDtos ordered by the matching name
+     * @throws com.example.university.exception.InvalidRequestParameterException if the prefix is blank or the limit is out of range
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<StudentDto> searchStudents(String prefix, int limit) {
+        NameSearch.check(prefix, limit);
+        Set<Integer> ids = nameIndex.search(prefix, limit);
+        return ids.isEmpty() ? List.of() : BatchLookup.of(ids, studentRepo.findDtosByIds(ids), StudentDto::getId).getItems();
+    }
+
+    /**
+     * Gets students by ids
+     *
+     * <p>All students are read with a single {@code in} query, bypassing the per-id cache so the
+     * lookup is one round-trip however many ids are requested.
+     *
+     * @param ids of students
+     * @return studentDtos in the order of the ids and the ids without a student
+     * @throws com.example.university.exception.InvalidRequestParameterException if too many ids are requested
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BatchLookup<StudentDto> getStudentsByIds(List<Integer> ids) {
+        Set<Integer> distinct = BatchLookup.distinctIds(ids);
+        List<StudentDto> found = distinct.isEmpty() ? List.of() : studentRepo.findDtosByIds(distinct);
+        return BatchLookup.of(distinct, found, StudentDto::getId);
+    }
+
+    /**
+     * Gets students by ids with only the requested fields
+     *
+     * @param ids    of students
+     * @param fields comma separated fields of studentDto to select, the id is always included
+     * @return students with the requested fields in the order of the ids and the ids without a student
+     * @throws com.example.university.exception.InvalidRequestParameterException if a field is unknown or too many ids are requested
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BatchLookup<Map<String, Object>> getStudentsByIds(List<Integer> ids, String fields) {
+        List<String> selected = SparseQueries.parseFields(fields, FIELDS);
+        Set<Integer> distinct = BatchLookup.distinctIds(ids);
+        List<Map<String, Object>> found = distinct.isEmpty() ? List.of()
+                : SparseQueries.findByIds(entityManager, Student.class, selected, distinct);
+        return BatchLookup.of(distinct, found, SparseQueries::idOf);
+    }
+
+    /**
+     * Gets one page of students ordered by id
+     *
+     * @param after cursor of the previous page, {@code null} for the first page
+     * @param limit maximum number of students in the page
+     * @return page of studentDtos
+     * @throws com.example.university.exception.InvalidRequestParameterException if the cursor or limit is invalid
+     */
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<StudentDto> getStudents(String after, int limit) {
+        CursorPage.checkLimit(limit);
+        List<StudentDto> list = studentRepo.findDtosAfter(CursorPage.decodeCursor(after), PageRequest.of(0, limit + 1));
+        return CursorPage.of(list, limit, StudentDto::getId);
+    }
+
+    /**
+     * Gets one page of students ordered by id with only the requested fields
+     *
+     * <p>Only the columns of the requested fields are selected, so narrow pages read and send less data.
+     *
+     * @param after  cursor of the previous page, {@code null} for the first page
+     * @param limit  maximum number of students in the page
+     * @param fields comma separated fields of studentDto to select, the id is always included
+     * @return page of students with the requested fields
+     * @throws com.example.university.exception.InvalidRequestParameterException if the cursor, limit or a field is invalid
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<Map<String, Object>> getStudents(String after, int limit, String fields) {
+        CursorPage.checkLimit(limit);
+        List<String> selected = SparseQueries.parseFields(fields, FIELDS);
+        List<Map<String, Object>> list = SparseQueries.findAfter(entityManager, Student.class, selected, CursorPage.decodeCursor(after), limit + 1);
+        return CursorPage.of(list, limit, SparseQueries::idOf);
+    }
+
+    /**
+     * Gets version stamp of one page of students
+     *
+     * <p>The stamp covers the same rows as {@link #getStudents(String, int)}, including the one
+     * that decides whether there is a next page.
+     *
+     * @param after cursor of the previous page, {@code null} for the first page
+     * @param limit maximum number of students in the page
+     * @return version stamp of the page
+     * @throws com.example.university.exception.InvalidRequestParameterException if the cursor or limit is invalid
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public VersionStamp getStudentsPageStamp(String after, int limit) {
+        CursorPage.checkLimit(limit);
+        return studentRepo.findPageStamp(CursorPage.decodeCursor(after), limit + 1);
     }
     /**
-     * Gets all students
+     * Exports all students
      *
-     * @return list of studentDtos
+     * <p>Students are projected into DTOs by a single result set streamed with a bounded fetch size,
+     * so no entities are managed and memory stays flat however many rows there are.
+     * The repeatable read transaction makes the export one consistent snapshot.
+     *
+     * @param sink receives the studentDtos one by one in id order
      */
 
     @Override
-    public List<StudentDto> getAllStudents() {
-        List<Student> list = studentRepo.findAll();
-        return list.stream()
-                .map(studentMapper::entityToDto)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportStudents(Consumer<StudentDto> sink) {
+        try (Stream<StudentDto> students = studentRepo.streamAllDtos()) {
+            students.forEach(sink);
+        }
     }
+
     /**
      * Saves student
      *
@@ -80,10 +246,35 @@ public class StudentServiceImpl implements StudentService {
      */
 
     @Override
+    @Transactional
     public StudentDto saveStudent(StudentDto studentDto) {
         Student student = studentMapper.dtoToEntity(studentDto);
         studentRepo.save(student);
-        return studentMapper.entityToDto(student);
+        StudentDto saved = studentMapper.entityToDto(student);
+        nameIndex.put(saved);
+        return saved;
+    }
+
+    /**
+     * Saves many students at once
+     *
+     * <p>The inserts are sent in JDBC batches and the ids of the new students are taken from the
+     * pooled sequence, so the cost per student is a fraction of a round-trip. Ids in the DTOs are ignored.
+     *
+     * @param studentDtos students to be saved
+     * @return saved students with their new ids, in the order they were given
+     */
+
+    @Override
+    @Transactional
+    public List<StudentDto> saveStudents(List<StudentDto> studentDtos) {
+        List<StudentDto> saved = BatchInserts.persistAll(entityManager, studentDtos, dto -> {
+            Student student = studentMapper.dtoToEntity(dto);
+            student.setId(0);
+            return student;
+        }, studentMapper::entityToDto);
+        nameIndex.putAll(saved);
+        return saved;
     }
 
     /**
@@ -91,33 +282,99 @@ public class StudentServiceImpl implements StudentService {
      *
      * @param id of student to be updated
      * @param studentDto student to be updated
+     * @param expectedVersion version the client has seen, {@code null} to update unconditionally
      * @return updated student
      * @throws NoEntityFoundException if student with such id doesn't exist
+     * @throws EntityVersionMismatchException if student has another version than expected
      */
 
     @Override
-    public StudentDto updateStudent(int id, StudentDto studentDto) {
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#id")
+    public StudentDto updateStudent(int id, StudentDto studentDto, Long expectedVersion) {
         Student student = studentRepo.findById(id)
                 .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + id));
+        if (expectedVersion != null && expectedVersion != student.getVersion()) {
+            throw new EntityVersionMismatchException("Student with id " + id + " has been modified, its version is " + student.getVersion());
+        }
         student.setFirstName(studentDto.getFirstName());
         student.setLastName(studentDto.getLastName());
         student.setMiddleName(studentDto.getMiddleName());
         student.setAge(studentDto.getAge());
         studentRepo.save(student);
-        return studentMapper.entityToDto(student);
+        StudentDto updated = studentMapper.entityToDto(student);
+        nameIndex.put(updated);
+        return updated;
+    }
+
+    /**
+     * Updates only the given fields of student
+     *
+     * <p>The fields are written by one update statement without reading the student first. The
+     * student is read back afterwards for the response and the name index.
+     *
+     * @param id of student to be updated
+     * @param changes new values by field name of studentDto, other fields keep their values
+     * @param expectedVersion version the client has seen, {@code null} to update unconditionally
+     * @return updated student
+     * @throws NoEntityFoundException if student with such id doesn't exist
+     * @throws EntityVersionMismatchException if student has another version than expected
+     * @throws InvalidRequestParameterException if a field is unknown or has a value of another type, or there are no fields
+     * @throws InvalidFieldsException if a value is invalid
+     */
+
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#id")
+    public StudentDto patchStudent(int id, Map<String, Object> changes, Long expectedVersion) {
+        Map<String, Object> fields = PartialUpdates.parseChanges(validator, changes, StudentDto.class, WRITABLE_FIELDS, READ_ONLY_FIELDS);
+        if (PartialUpdates.update(entityManager, Student.class, id, fields, expectedVersion) == 0) {
+            long version = studentRepo.findVersionById(id)
+                    .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + id));
+            throw new EntityVersionMismatchException("Student with id " + id + " has been modified, its version is " + version);
+        }
+        StudentDto updated = studentRepo.findDtoById(id).orElseThrow();
+        nameIndex.put(updated);
+        return updated;
     }
 
     /**
      * Deletes student
      *
+     * <p>The student is subtracted from the numbers of students of their teachers and subjects, and
+     * then deleted by one statement that also deletes their join rows. Nothing is loaded, and the
+     * number of deleted rows tells whether the student existed. The ids of the teachers and subjects are
+     * read first, so only their DTOs are evicted from the caches.
+     *
      *  @param id of student to be deleted
      * @throws NoEntityFoundException if student with such id doesn't exist
      */
 
     @Override
+    @Transactional
     public void deleteStudent(int id) {
-        studentRepo.findById(id).orElseThrow(() -> new NoEntityFoundException("There is no student with id " + id));
-        studentRepo.deleteById(id);
+        if (delete(List.of(id)) == 0) {
+            throw new NoEntityFoundException("There is no student with id " + id);
+        }
+    }
+
+    /**
+     * Deletes many students at once
+     *
+     * <p>The students are deleted like {@link #deleteStudent(int)}, {@link BulkIds#CHUNK_SIZE} ids per
+     * statement. Ids without a student are skipped.
+     *
+     * @param ids of students to be deleted
+     * @return number of students deleted
+     */
+    @Override
+    @Transactional
+    public int deleteStudents(List<Integer> ids) {
+        int deleted = 0;
+        for (List<Integer> chunk : BulkIds.distinctChunks(ids)) {
+            deleted += delete(chunk);
+        }
+        return deleted;
     }
 
     /**
@@ -130,16 +387,17 @@ public class StudentServiceImpl implements StudentService {
      */
 
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#studentId"),
+            @CacheEvict(cacheNames = CacheConfig.TEACHERS, key = "#teacherId")
+    })
     public void addTeacherToStudent(int studentId, int teacherId) {
-        Student student = studentRepo.findById(studentId)
-                .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + studentId));
-        Teacher teacher = teacherRepo.findById(teacherId)
-                .orElseThrow(() -> new NoEntityFoundException("There is no teacher with id " + teacherId));
-        if (student.getTeachers().contains(teacher)) {
+        if (studentRepo.addTeacher(studentId, teacherId) == 0) {
+            requireStudentAndTeacher(studentId, teacherId);
             throw new EntityAlreadyAddedException("There is already a teacher with id " + teacherId);
         }
-        teacher.getStudents().add(student);
-        teacherRepo.save(teacher);
+        touchStudentAndTeacher(studentId, teacherId, 1);
     }
 
     /**
@@ -152,11 +410,24 @@ public class StudentServiceImpl implements StudentService {
      */
 
     @Override
+    @Transactional(readOnly = true)
     public List<TeacherDto> getAllTeachersOfStudent(int studentId) {
-        Student student = studentRepo.findById(studentId)
+        return RelationRows.relatedOrThrow(teacherRepo.findTeachersOfStudent(studentId), TeacherDto::getId,
+                () -> new NoEntityFoundException("There is no student with id " + studentId));
+    }
+
+    /**
+     * Gets version stamp of all teachers of student
+     *
+     * @param studentId id of student
+     * @return version stamp of the teachers
+     * @throws NoEntityFoundException if student with such id doesn't exist
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public VersionStamp getTeachersOfStudentStamp(int studentId) {
+        return teacherRepo.findTeachersOfStudentStamp(studentId)
                 .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + studentId));
-        List<Teacher> teachers = student.getTeachers();
-        return teachers.stream().map(teacherMapper::entityToDto).collect(Collectors.toList());
     }
 
     /**
@@ -168,11 +439,24 @@ public class StudentServiceImpl implements StudentService {
      */
 
     @Override
+    @Transactional(readOnly = true)
     public List<SubjectDto> getAllSubjectsOfStudent(int studentId) {
-        Student student = studentRepo.findById(studentId)
+        return RelationRows.relatedOrThrow(subjectRepo.findSubjectsOfStudent(studentId), SubjectDto::getId,
+                () -> new NoEntityFoundException("There is no student with id " + studentId));
+    }
+
+    /**
+     * Gets version stamp of all subjects of student
+     *
+     * @param studentId id of student
+     * @return version stamp of the subjects
+     * @throws NoEntityFoundException if student with such id doesn't exist
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public VersionStamp getSubjectsOfStudentStamp(int studentId) {
+        return subjectRepo.findSubjectsOfStudentStamp(studentId)
                 .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + studentId));
-        List<Subject> subjects = student.getSubjects();
-        return subjects.stream().map(subjectMapper::entityToDto).collect(Collectors.toList());
     }
 
     /**
@@ -185,16 +469,17 @@ public class StudentServiceImpl implements StudentService {
      */
 
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#studentId"),
+            @CacheEvict(cacheNames = CacheConfig.SUBJECTS, key = "#subjectId")
+    })
     public void addSubjectToStudent(int studentId, int subjectId) {
-        Student student = studentRepo.findById(studentId)
-                .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + studentId));
-        Subject subject = subjectRepo.findById(subjectId)
-                .orElseThrow(() -> new NoEntityFoundException("There is no subject with id " + subjectId));
-        if (student.getSubjects().contains(subject)) {
+        if (studentRepo.addSubject(studentId, subjectId) == 0) {
+            requireStudentAndSubject(studentId, subjectId);
             throw new EntityAlreadyAddedException("There is already a subject with id " + subjectId);
         }
-        student.getSubjects().add(subject);
-        studentRepo.save(student);
+        touchStudentAndSubject(studentId, subjectId, 1);
     }
 
     /**
@@ -206,13 +491,17 @@ public class StudentServiceImpl implements StudentService {
      */
 
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#studentId"),
+            @CacheEvict(cacheNames = CacheConfig.SUBJECTS, key = "#subjectId")
+    })
     public void deleteSubjectFromStudent(int studentId, int subjectId) {
-        Student student = studentRepo.findById(studentId)
-                .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + studentId));
-        Subject subject = subjectRepo.findById(subjectId)
-                .orElseThrow(() -> new NoEntityFoundException("There is no subject with id " + subjectId));
-        student.getSubjects().remove(subject);
-        studentRepo.save(student);
+        if (studentRepo.removeSubject(studentId, subjectId) == 0) {
+            requireStudentAndSubject(studentId, subjectId);
+        } else {
+            touchStudentAndSubject(studentId, subjectId, -1);
+        }
     }
 
     /**
@@ -224,13 +513,75 @@ public class StudentServiceImpl implements StudentService {
      */
 
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#studentId"),
+            @CacheEvict(cacheNames = CacheConfig.TEACHERS, key = "#teacherId")
+    })
     public void deleteTeacherFromStudent(int studentId, int teacherId) {
-        Student student = studentRepo.findById(studentId)
-                .orElseThrow(() -> new NoEntityFoundException("There is no student with id " + studentId));
-        Teacher teacher = teacherRepo.findById(teacherId)
-                .orElseThrow(() -> new NoEntityFoundException("There is no teacher with id " + teacherId));
-        teacher.getStudents().remove(student);
-        teacherRepo.save(teacher);
+        if (studentRepo.removeTeacher(studentId, teacherId) == 0) {
+            requireStudentAndTeacher(studentId, teacherId);
+        } else {
+            touchStudentAndTeacher(studentId, teacherId, -1);
+        }
+    }
+
+    /**
+     * Subtracts the students from the counters while their join rows still exist and deletes them.
+     * The students and their teachers and subjects are evicted from the caches once this commits.
+     */
+    private int delete(List<Integer> ids) {
+        List<Integer> teacherIds = teacherRepo.findIdsOfStudents(ids);
+        List<Integer> subjectIds = subjectRepo.findIdsOfStudents(ids);
+        if (!teacherIds.isEmpty()) {
+            teacherRepo.subtractStudents(ids);
+        }
+        if (!subjectIds.isEmpty()) {
+            subjectRepo.subtractStudents(ids);
+        }
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.STUDENTS, ids);
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.TEACHERS, teacherIds);
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.SUBJECTS, subjectIds);
+        int deleted = studentRepo.deleteByIds(ids);
+        ids.forEach(nameIndex::remove);
+        return deleted;
+    }
+
+    /**
+     * Explains why a join row was not written: the relationship mutations only look up the
+     * student and the other side when the direct insert or delete touched no row.
+     */
+    private void requireStudentAndTeacher(int studentId, int teacherId) {
+        if (!studentRepo.existsById(studentId)) {
+            throw new NoEntityFoundException("There is no student with id " + studentId);
+        }
+        if (!teacherRepo.existsById(teacherId)) {
+            throw new NoEntityFoundException("There is no teacher with id " + teacherId);
+        }
+    }
+
+    /**
+     * A direct write to a join table bypasses Hibernate, so the versions of both sides are
+     * incremented explicitly to change the ETags of their collections. The counters of the
+     * sides whose DTOs show the size of the relationship are changed by the same updates.
+     */
+    private void touchStudentAndTeacher(int studentId, int teacherId, int delta) {
+        studentRepo.incrementVersions(List.of(studentId));
+        teacherRepo.addToStudentCount(teacherId, delta);
+    }
+
+    private void touchStudentAndSubject(int studentId, int subjectId, int delta) {
+        studentRepo.addToSubjectCount(studentId, delta);
+        subjectRepo.addToStudentCount(subjectId, delta);
+    }
+
+    private void requireStudentAndSubject(int studentId, int subjectId) {
+        if (!studentRepo.existsById(studentId)) {
+            throw new NoEntityFoundException("There is no student with id " + studentId);
+        }
+        if (!subjectRepo.existsById(subjectId)) {
+            throw new NoEntityFoundException("There is no subject with id " + subjectId);
+        }
     }
 
 }
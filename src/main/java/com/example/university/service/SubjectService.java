@@ -1,7 +1,14 @@
 package com.example.university.service;
 
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.SubjectDto;
+import com.example.university.dto.SubjectStats;
+import com.example.university.dto.VersionStamp;
+import com.example.university.dto.Versioned;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 /**
  * Service interface for managing {@link com.example.university.entity.Subject} entities.
  *
@@ -12,13 +19,29 @@ import java.util.List;
 
 public interface SubjectService {
 
-    SubjectDto getSubjectById(int id);
+    Versioned<SubjectDto> getSubjectById(int id);
 
-    List<SubjectDto> getAllSubjects();
+    BatchLookup<SubjectDto> getSubjectsByIds(List<Integer> ids);
+
+    CursorPage<SubjectDto> getSubjects(String after, int limit);
+
+    VersionStamp getSubjectsPageStamp(String after, int limit);
+
+    CursorPage<SubjectStats> getSubjectStats(String sort, String after, int limit);
+
+    void exportSubjects(Consumer<SubjectDto> sink);
 
     SubjectDto saveSubject(SubjectDto dto);
 
+    List<SubjectDto> saveSubjects(int teacherId, List<SubjectDto> dtos);
+
     void deleteSubject(int id);
 
-    SubjectDto updateSubject(int id, SubjectDto subjectDto);
+    int deleteSubjects(List<Integer> ids);
+
+    SubjectDto updateSubject(int id, SubjectDto subjectDto, Long expectedVersion);
+
+    SubjectDto patchSubject(int id, Map<String, Object> changes, Long expectedVersion);
+
+    int addStudentsToSubject(int subjectId, List<Integer> studentIds);
 }
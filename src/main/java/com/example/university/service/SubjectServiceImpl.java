@@ -1,15 +1,39 @@
 package com.example.university.service;
 
+import com.example.university.config.CacheConfig;
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.SubjectDto;
+import com.example.university.dto.SubjectStats;
+import com.example.university.dto.VersionStamp;
+import com.example.university.dto.Versioned;
 import com.example.university.entity.Subject;
+import com.example.university.entity.Teacher;
+import com.example.university.exception.EntityVersionMismatchException;
+import com.example.university.exception.InvalidFieldsException;
+import com.example.university.exception.InvalidRequestParameterException;
 import com.example.university.exception.NoEntityFoundException;
 import com.example.university.mapper.SubjectMapper;
+import com.example.university.repository.StudentRepository;
 import com.example.university.repository.SubjectRepository;
+import com.example.university.repository.TeacherRepository;
 import lombok.AllArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import javax.persistence.EntityManager;
+import javax.validation.Validator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the {@link SubjectService} interface.
@@ -22,33 +46,130 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class SubjectServiceImpl implements SubjectService {
 
+    private static final Map<String, Class<?>> WRITABLE_FIELDS = Map.of("name", String.class);
+
+    private static final List<String> READ_ONLY_FIELDS = List.of("id", "studentCount");
+
     private SubjectRepository subjectRepository;
 
+    private StudentRepository studentRepository;
+
+    private TeacherRepository teacherRepository;
+
     private SubjectMapper subjectMapper;
 
+    private EntityManager entityManager;
+
+    private Validator validator;
+
+    private CacheManager cacheManager;
+
     /**
      * Gets a subject by id
      *
+     * <p>The subject is cached together with the version it was read with.
+     *
      * @param id the id of the subject
-     * @return the subject with the given id
+     * @return the subject with the given id and its version
      * @throws NoEntityFoundException if there is no subject with such id
+     * @see StudentServiceImpl#getStudentById(int)
      */
-    public SubjectDto getSubjectById(int id) {
-        Subject subject = subjectRepository.findById(id)
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.SUBJECTS, key = "#id")
+    public Versioned<SubjectDto> getSubjectById(int id) {
+        return subjectRepository.findById(id)
+                .map(subject -> new Versioned<>(subjectMapper.entityToDto(subject), subject.getVersion()))
                 .orElseThrow(() -> new NoEntityFoundException("No such subject found with id: " + id));
-        return subjectMapper.entityToDto(subject);
     }
 
     /**
-     * Gets all subjects
+     * Gets subjects by ids
+     *
+     * <p>All subjects are read with a single {@code in} query, bypassing the per-id cache so the
+     * lookup is one round-trip however many ids are requested.
+     *
+     * @param ids the ids of the subjects
+     * @return the subjects in the order of the ids and the ids without a subject
+     * @throws com.example.university.exception.InvalidRequestParameterException if too many ids are requested
+     */
+    @Transactional(readOnly = true)
+    public BatchLookup<SubjectDto> getSubjectsByIds(List<Integer> ids) {
+        Set<Integer> distinct = BatchLookup.distinctIds(ids);
+        List<SubjectDto> found = distinct.isEmpty() ? List.of() : subjectRepository.findDtosByIds(distinct);
+        return BatchLookup.of(distinct, found, SubjectDto::getId);
+    }
+
+    /**
+     * Gets one page of subjects ordered by id
+     *
+     * @param after the cursor of the previous page, {@code null} for the first page
+     * @param limit the maximum number of subjects in the page
+     * @return a page of subjects
+     * @throws com.example.university.exception.InvalidRequestParameterException if the cursor or limit is invalid
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<SubjectDto> getSubjects(String after, int limit) {
+        CursorPage.checkLimit(limit);
+        List<SubjectDto> list = subjectRepository.findDtosAfter(CursorPage.decodeCursor(after), PageRequest.of(0, limit + 1));
+        return CursorPage.of(list, limit, SubjectDto::getId);
+    }
+
+    /**
+     * Gets one page of the numbers of students enrolled in the subjects
+     *
+     * <p>The numbers are read from the counter column of the subjects, no enrollment or student is read.
      *
-     * @return a list of all subjects
+     * @param sort  {@code id} to order by id, {@code students} to order by the number of students descending
+     * @param after the cursor of the previous page, {@code null} for the first page
+     * @param limit the maximum number of subjects in the page
+     * @return a page of subject stats
+     * @throws InvalidRequestParameterException if the sort, cursor or limit is invalid
      */
-    public List<SubjectDto> getAllSubjects() {
-        List<Subject> list = subjectRepository.findAll();
-        return list.stream()
-                .map(subjectMapper::entityToDto)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public CursorPage<SubjectStats> getSubjectStats(String sort, String after, int limit) {
+        CursorPage.checkLimit(limit);
+        ToLongFunction<SubjectStats> keyOf;
+        switch (sort) {
+            case "id":
+                keyOf = stats -> 0;
+                break;
+            case "students":
+                keyOf = SubjectStats::getStudentCount;
+                break;
+            default:
+                throw new InvalidRequestParameterException("Sort must be one of id, students");
+        }
+        CursorPage.Position position = CursorPage.decodeKeyedCursor(after);
+        List<SubjectStats> list = subjectRepository.findStats(sort, position.getKey(), position.getId(), limit + 1);
+        return CursorPage.of(list, limit, keyOf, SubjectStats::getId);
+    }
+
+    /**
+     * Gets the version stamp of one page of subjects
+     *
+     * @param after the cursor of the previous page, {@code null} for the first page
+     * @param limit the maximum number of subjects in the page
+     * @return the version stamp of the page
+     * @throws com.example.university.exception.InvalidRequestParameterException if the cursor or limit is invalid
+     * @see StudentServiceImpl#getStudentsPageStamp(String, int)
+     */
+    @Transactional(readOnly = true)
+    public VersionStamp getSubjectsPageStamp(String after, int limit) {
+        CursorPage.checkLimit(limit);
+        return subjectRepository.findPageStamp(CursorPage.decodeCursor(after), limit + 1);
+    }
+
+    /**
+     * Exports all subjects from one consistent snapshot
+     *
+     * @param sink receives the subjects one by one in id order
+     * @see StudentServiceImpl#exportStudents(Consumer)
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportSubjects(Consumer<SubjectDto> sink) {
+        try (Stream<SubjectDto> subjects = subjectRepository.streamAllDtos()) {
+            subjects.forEach(sink);
+        }
     }
 
     /**
@@ -58,22 +179,71 @@ public class SubjectServiceImpl implements SubjectService {
      * @return the created subject
      * @throws MethodArgumentNotValidException if the DTO is invalid
      */
+    @Transactional
     public SubjectDto saveSubject(SubjectDto dto) {
         Subject subject = subjectMapper.dtoToEntity(dto);
         subjectRepository.save(subject);
         return subjectMapper.entityToDto(subject);
     }
 
+    /**
+     * Creates many subjects of one teacher at once
+     *
+     * <p>The subjects are inserted in JDBC batches with ids from the pooled sequence. Every subject
+     * needs a teacher, so the teacher is given once for the whole list. Ids in the DTOs are ignored.
+     *
+     * @param teacherId the id of the teacher of the subjects
+     * @param dtos the subjects to be created
+     * @return the created subjects with their new ids, in the order they were given
+     * @throws NoEntityFoundException if there is no teacher with such id
+     */
+    @Override
+    @Transactional
+    public List<SubjectDto> saveSubjects(int teacherId, List<SubjectDto> dtos) {
+        if (!teacherRepository.existsById(teacherId)) {
+            throw new NoEntityFoundException("There is no teacher with id " + teacherId);
+        }
+        return BatchInserts.persistAll(entityManager, dtos, dto -> {
+            Subject subject = subjectMapper.dtoToEntity(dto);
+            subject.setId(0);
+            subject.setTeacher(entityManager.getReference(Teacher.class, teacherId));
+            return subject;
+        }, subjectMapper::entityToDto);
+    }
+
     /**
      * Deletes a subject by id
      *
+     * <p>The subject is subtracted from the numbers of subjects of its students and then deleted by
+     * one statement that also deletes its enrollments. The number of deleted rows tells whether the
+     * subject existed. The ids of the students are read first, so only their DTOs are evicted from the cache.
+     *
      * @param id the id of the subject to be deleted
      * @throws NoEntityFoundException if there is no subject with such id
      */
+    @Transactional
     public void deleteSubject(int id) {
-        subjectRepository.findById(id)
-                .orElseThrow(() -> new NoEntityFoundException("No such subject found with id: " + id));
-        subjectRepository.deleteById(id);
+        if (delete(List.of(id)) == 0) {
+            throw new NoEntityFoundException("No such subject found with id: " + id);
+        }
+    }
+
+    /**
+     * Deletes many subjects at once
+     *
+     * <p>The subjects are deleted like {@link #deleteSubject(int)}, {@link BulkIds#CHUNK_SIZE} ids per
+     * statement. Ids without a subject are skipped.
+     *
+     * @param ids the ids of the subjects to be deleted
+     * @return the number of subjects deleted
+     */
+    @Transactional
+    public int deleteSubjects(List<Integer> ids) {
+        int deleted = 0;
+        for (List<Integer> chunk : BulkIds.distinctChunks(ids)) {
+            deleted += delete(chunk);
+        }
+        return deleted;
     }
 
     /**
@@ -81,15 +251,113 @@ public class SubjectServiceImpl implements SubjectService {
      *
      * @param id the id of the subject to be updated
      * @param subjectDto the updated subject data transfer object
+     * @param expectedVersion the version the client has seen, {@code null} to update unconditionally
      * @return the updated subjectDto
      * @throws NoEntityFoundException if there is no subject with such id
+     * @throws EntityVersionMismatchException if the subject has another version than expected
      */
     @Override
-    public SubjectDto updateSubject(int id, SubjectDto subjectDto) {
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.SUBJECTS, key = "#id")
+    public SubjectDto updateSubject(int id, SubjectDto subjectDto, Long expectedVersion) {
         Subject subject = subjectRepository.findById(id)
                 .orElseThrow(() -> new NoEntityFoundException("No such subject found with id: " + id));
+        if (expectedVersion != null && expectedVersion != subject.getVersion()) {
+            throw new EntityVersionMismatchException("Subject with id " + id + " has been modified, its version is " + subject.getVersion());
+        }
         subject.setName(subjectDto.getName());
         subjectRepository.save(subject);
         return subjectMapper.entityToDto(subject);
     }
+
+    /**
+     * Updates only the given fields of a subject by id
+     *
+     * <p>The fields are written by one update statement without reading the subject first. The
+     * subject is read back afterwards for the response.
+     *
+     * @param id the id of the subject to be updated
+     * @param changes the new values by field name of the subjectDto, other fields keep their values
+     * @param expectedVersion the version the client has seen, {@code null} to update unconditionally
+     * @return the updated subjectDto
+     * @throws NoEntityFoundException if there is no subject with such id
+     * @throws EntityVersionMismatchException if the subject has another version than expected
+     * @throws InvalidRequestParameterException if a field is unknown or has a value of another type, or there are no fields
+     * @throws InvalidFieldsException if a value is invalid
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.SUBJECTS, key = "#id")
+    public SubjectDto patchSubject(int id, Map<String, Object> changes, Long expectedVersion) {
+        Map<String, Object> fields = PartialUpdates.parseChanges(validator, changes, SubjectDto.class, WRITABLE_FIELDS, READ_ONLY_FIELDS);
+        if (PartialUpdates.update(entityManager, Subject.class, id, fields, expectedVersion) == 0) {
+            long version = subjectRepository.findVersionById(id)
+                    .orElseThrow(() -> new NoEntityFoundException("No such subject found with id: " + id));
+            throw new EntityVersionMismatchException("Subject with id " + id + " has been modified, its version is " + version);
+        }
+        return subjectRepository.findDtoById(id).orElseThrow();
+    }
+
+    /**
+     * Enrolls many students in a subject at once
+     *
+     * <p>Existence of all students is checked with one {@code IN} query per chunk of ids before
+     * anything is written, then the join rows are inserted with one statement per chunk.
+     * Students that are already enrolled are looked up per chunk and skipped, so only the newly
+     * enrolled students get their numbers of subjects counted again, their versions incremented and
+     * their DTOs evicted from the cache, and the ETags of the others stay valid. A student enrolled
+     * concurrently between the lookup and the insert is skipped by the insert and only counted again.
+     * The number of students of the subject grows by the number of new enrollments.
+     *
+     * @param subjectId  the id of the subject
+     * @param studentIds the ids of the students to enroll
+     * @return the number of students that were enrolled by this call
+     * @throws NoEntityFoundException if there is no subject with such id or some of the students don't exist
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.SUBJECTS, key = "#subjectId")
+    public int addStudentsToSubject(int subjectId, List<Integer> studentIds) {
+        if (!subjectRepository.existsById(subjectId)) {
+            throw new NoEntityFoundException("No such subject found with id: " + subjectId);
+        }
+        List<List<Integer>> chunks = BulkIds.distinctChunks(studentIds);
+        List<Integer> missing = BulkIds.missing(chunks, studentRepository::findExistingIds);
+        if (!missing.isEmpty()) {
+            throw new NoEntityFoundException("Students are not found with ids " + missing);
+        }
+        int added = 0;
+        for (List<Integer> chunk : chunks) {
+            List<Integer> newIds = BulkIds.except(chunk, studentRepository.findIdsEnrolledIn(subjectId, chunk));
+            if (newIds.isEmpty()) {
+                continue;
+            }
+            int addedInChunk = studentRepository.addSubjectToStudents(subjectId, newIds);
+            if (addedInChunk > 0) {
+                studentRepository.recountSubjects(newIds);
+                CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.STUDENTS, newIds);
+            }
+            added += addedInChunk;
+        }
+        if (added > 0) {
+            subjectRepository.addToStudentCount(subjectId, added);
+        }
+        return added;
+    }
+
+    /**
+     * Subtracts the subjects from the numbers of subjects of their students while the enrollments
+     * still exist and deletes them. The subjects and their students are evicted from the caches once
+     * this commits.
+     */
+    private int delete(List<Integer> ids) {
+        List<Integer> studentIds = studentRepository.findIdsEnrolledInAny(ids);
+        if (!studentIds.isEmpty()) {
+            studentRepository.subtractSubjects(ids);
+        }
+        int deleted = subjectRepository.deleteByIds(ids);
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.SUBJECTS, ids);
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.STUDENTS, studentIds);
+        return deleted;
+    }
 }
@@ -1,10 +1,17 @@
 package com.example.university.service;
 
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.StudentDto;
 import com.example.university.dto.SubjectDto;
 import com.example.university.dto.TeacherDto;
+import com.example.university.dto.TeacherStats;
+import com.example.university.dto.VersionStamp;
+import com.example.university.dto.Versioned;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 /**
  * Service interface for managing {@link com.example.university.entity.Teacher} entities.
  *
@@ -15,25 +22,53 @@ import java.util.List;
 
 public interface TeacherService {
 
-    List<TeacherDto> getAllTeachers();
+    CursorPage<TeacherDto> getTeachers(String after, int limit);
 
-    TeacherDto getTeacherById(int id);
+    CursorPage<Map<String, Object>> getTeachers(String after, int limit, String fields);
+
+    void exportTeachers(Consumer<TeacherDto> sink);
+
+    Versioned<TeacherDto> getTeacherById(int id);
+
+    Versioned<Map<String, Object>> getTeacherById(int id, String fields);
+
+    List<TeacherDto> searchTeachers(String prefix, int limit);
+
+    BatchLookup<TeacherDto> getTeachersByIds(List<Integer> ids);
+
+    BatchLookup<Map<String, Object>> getTeachersByIds(List<Integer> ids, String fields);
+
+    VersionStamp getTeachersPageStamp(String after, int limit);
+
+    CursorPage<TeacherStats> getTeacherStats(String sort, String after, int limit);
 
     TeacherDto saveTeacher(TeacherDto teacherDto);
 
-    TeacherDto updateTeacher(int id, TeacherDto teacherDto);
+    List<TeacherDto> saveTeachers(List<TeacherDto> teacherDtos);
+
+    TeacherDto updateTeacher(int id, TeacherDto teacherDto, Long expectedVersion);
+
+    TeacherDto patchTeacher(int id, Map<String, Object> changes, Long expectedVersion);
 
     void deleteTeacher(int id);
 
+    int deleteTeachers(List<Integer> ids);
+
     void addSubjectToTeacher(int teacherId, SubjectDto subjectDto);
 
     List<SubjectDto> getAllSubjectsOfTeacher(int id);
 
+    VersionStamp getSubjectsOfTeacherStamp(int id);
+
     void deleteSubjectOfTeacher(int teacherId, int subjectId);
 
     List<StudentDto> getAllStudentsOfTeacher(int teacherId);
 
+    VersionStamp getStudentsOfTeacherStamp(int teacherId);
+
     void deleteStudentOfTeacher(int teacherId, int studentId);
 
     void addStudentToTeacher(int teacherId, int studentId);
+
+    int addStudentsToTeacher(int teacherId, List<Integer> studentIds);
 }
@@ -1,24 +1,45 @@
 package com.example.university.service;
 
+import com.example.university.config.CacheConfig;
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.StudentDto;
 import com.example.university.dto.SubjectDto;
 import com.example.university.dto.TeacherDto;
-import com.example.university.entity.Student;
+import com.example.university.dto.TeacherStats;
+import com.example.university.dto.VersionStamp;
+import com.example.university.dto.Versioned;
 import com.example.university.entity.Subject;
 import com.example.university.entity.Teacher;
 import com.example.university.exception.EntityAlreadyAddedException;
+import com.example.university.exception.EntityVersionMismatchException;
+import com.example.university.exception.InvalidFieldsException;
+import com.example.university.exception.InvalidRequestParameterException;
 import com.example.university.exception.NoEntityFoundException;
-import com.example.university.mapper.StudentMapper;
 import com.example.university.mapper.SubjectMapper;
 import com.example.university.mapper.TeacherMapper;
 import com.example.university.repository.StudentRepository;
 import com.example.university.repository.SubjectRepository;
 import com.example.university.repository.TeacherRepository;
+import com.example.university.search.NamePrefixIndex;
 import lombok.AllArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.MethodArgumentNotValidException;
+import javax.persistence.EntityManager;
+import javax.validation.Validator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 /**
  * Implementation of the {@link TeacherService} interface.
@@ -31,6 +52,13 @@ import java.util.stream.Collectors;
 @AllArgsConstructor
 public class TeacherServiceImpl implements TeacherService {
 
+    private static final List<String> FIELDS = List.of("id", "firstName", "lastName", "middleName", "age", "studentCount");
+
+    private static final Map<String, Class<?>> WRITABLE_FIELDS = Map.of(
+            "firstName", String.class, "lastName", String.class, "middleName", String.class, "age", Integer.class);
+
+    private static final List<String> READ_ONLY_FIELDS = List.of("id", "studentCount");
+
     private TeacherRepository teacherRepo;
 
     private SubjectRepository subjectRepo;
@@ -41,33 +69,204 @@ public class TeacherServiceImpl implements TeacherService {
 
     private SubjectMapper subjectMapper;
 
-    private StudentMapper studentMapper;
+    private EntityManager entityManager;
+
+    private Validator validator;
+
+    private CacheManager cacheManager;
+
+    private NamePrefixIndex<TeacherDto> nameIndex;
+
+    /**
+     * Gets one page of teachers ordered by id.
+     *
+     * @param after cursor of the previous page, {@code null} for the first page
+     * @param limit maximum number of teachers in the page
+     * @return a page of teacher DTOs
+     * @throws com.example.university.exception.InvalidRequestParameterException if the cursor or limit is invalid
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<TeacherDto> getTeachers(String after, int limit) {
+        CursorPage.checkLimit(limit);
+        List<TeacherDto> list = teacherRepo.findDtosAfter(CursorPage.decodeCursor(after), PageRequest.of(0, limit + 1));
+        return CursorPage.of(list, limit, TeacherDto::getId);
+    }
 
     /**
-     * Gets a list of all teachers.
+     * Gets one page of teachers ordered by id with only the requested fields.
+     *
+     * <p>Only the columns of the requested fields are selected, so narrow pages read and send less data.
      *
-     * @return a list of teacher DTOs
+     * @param after  cursor of the previous page, {@code null} for the first page
+     * @param limit  maximum number of teachers in the page
+     * @param fields comma separated fields of the teacher DTO to select, the id is always included
+     * @return a page of teachers with the requested fields
+     * @throws com.example.university.exception.InvalidRequestParameterException if the cursor, limit or a field is invalid
      */
     @Override
-    public List<TeacherDto> getAllTeachers() {
-        List<Teacher> list = teacherRepo.findAll();
-        return list.stream()
-                .map(teacherMapper::entityToDto)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public CursorPage<Map<String, Object>> getTeachers(String after, int limit, String fields) {
+        CursorPage.checkLimit(limit);
+        List<String> selected = SparseQueries.parseFields(fields, FIELDS);
+        List<Map<String, Object>> list = SparseQueries.findAfter(entityManager, Teacher.class, selected, CursorPage.decodeCursor(after), limit + 1);
+        return CursorPage.of(list, limit, SparseQueries::idOf);
+    }
+
+    /**
+     * Gets one page of the numbers of students and subjects of the teachers.
+     *
+     * <p>The numbers of students are read from the counter column and the subjects are counted with one grouped
+     * query, so no student or subject is loaded.
+     *
+     * @param sort  {@code id} to order by id, {@code students} or {@code subjects} to order by that count descending
+     * @param after cursor of the previous page, {@code null} for the first page
+     * @param limit maximum number of teachers in the page
+     * @return a page of teacher stats
+     * @throws InvalidRequestParameterException if the sort, cursor or limit is invalid
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<TeacherStats> getTeacherStats(String sort, String after, int limit) {
+        CursorPage.checkLimit(limit);
+        ToLongFunction<TeacherStats> keyOf;
+        switch (sort) {
+            case "id":
+                keyOf = stats -> 0;
+                break;
+            case "students":
+                keyOf = TeacherStats::getStudentCount;
+                break;
+            case "subjects":
+                keyOf = TeacherStats::getSubjectCount;
+                break;
+            default:
+                throw new InvalidRequestParameterException("Sort must be one of id, students, subjects");
+        }
+        CursorPage.Position position = CursorPage.decodeKeyedCursor(after);
+        List<TeacherStats> list = teacherRepo.findStats(sort, position.getKey(), position.getId(), limit + 1);
+        return CursorPage.of(list, limit, keyOf, TeacherStats::getId);
+    }
+
+    /**
+     * Gets the version stamp of one page of teachers.
+     *
+     * @param after cursor of the previous page, {@code null} for the first page
+     * @param limit maximum number of teachers in the page
+     * @return the version stamp of the page
+     * @throws com.example.university.exception.InvalidRequestParameterException if the cursor or limit is invalid
+     * @see StudentServiceImpl#getStudentsPageStamp(String, int)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public VersionStamp getTeachersPageStamp(String after, int limit) {
+        CursorPage.checkLimit(limit);
+        return teacherRepo.findPageStamp(CursorPage.decodeCursor(after), limit + 1);
+    }
+
+    /**
+     * Exports all teachers from one consistent snapshot.
+     *
+     * @param sink receives the teacher DTOs one by one in id order
+     * @see StudentServiceImpl#exportStudents(Consumer)
+     */
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportTeachers(Consumer<TeacherDto> sink) {
+        try (Stream<TeacherDto> teachers = teacherRepo.streamAllDtos()) {
+            teachers.forEach(sink);
+        }
     }
 
     /**
      * Gets a teacher by id.
      *
+     * <p>The teacher is cached together with the version it was read with.
+     *
      * @param id of the teacher
-     * @return a teacher DTO
+     * @return a teacher DTO and its version
      * @throws NoEntityFoundException if the teacher with such id doesn't exist
+     * @see StudentServiceImpl#getStudentById(int)
      */
     @Override
-    public TeacherDto getTeacherById(int id) {
-        Teacher teacher = teacherRepo.findById(id)
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.TEACHERS, key = "#id")
+    public Versioned<TeacherDto> getTeacherById(int id) {
+        return teacherRepo.findById(id)
+                .map(teacher -> new Versioned<>(teacherMapper.entityToDto(teacher), teacher.getVersion()))
                 .orElseThrow(() -> new NoEntityFoundException("No teacher found with id " + id));
-        return teacherMapper.entityToDto(teacher);
+    }
+
+    /**
+     * Gets a teacher by id with only the requested fields.
+     *
+     * @param id     of the teacher
+     * @param fields comma separated fields of the teacher DTO to select, the id is always included
+     * @return the teacher with the requested fields and its version
+     * @throws NoEntityFoundException if the teacher with such id doesn't exist
+     * @throws com.example.university.exception.InvalidRequestParameterException if a field is unknown
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Versioned<Map<String, Object>> getTeacherById(int id, String fields) {
+        List<String> selected = SparseQueries.parseFields(fields, FIELDS);
+        return SparseQueries.findVersionedById(entityManager, Teacher.class, selected, id)
+                .orElseThrow(() -> new NoEntityFoundException("No teacher found with id " + id));
+    }
+
+    /**
+     * Searches teachers by the prefix of their first, last or middle name.
+     *
+     * <p>The ids of the teachers are found in the in-memory name index, and the teachers themselves are read with a
+     * single {@code in} query.
+     *
+     * @param prefix the beginning of a name, case is ignored
+     * @param limit  the maximum number of teachers to return
+     * @return teacher DTOs ordered by the matching name
+     * @throws com.example.university.exception.InvalidRequestParameterException if the prefix is blank or the limit is out of range
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<TeacherDto> searchTeachers(String prefix, int limit) {
+        NameSearch.check(prefix, limit);
+        Set<Integer> ids = nameIndex.search(prefix, limit);
+        return ids.isEmpty() ? List.of() : BatchLookup.of(ids, teacherRepo.findDtosByIds(ids), TeacherDto::getId).getItems();
+    }
+
+    /**
+     * Gets teachers by ids.
+     *
+     * <p>All teachers are read with a single {@code in} query, bypassing the per-id cache so the
+     * lookup is one round-trip however many ids are requested.
+     *
+     * @param ids of the teachers
+     * @return teacher DTOs in the order of the ids and the ids without a teacher
+     * @throws com.example.university.exception.InvalidRequestParameterException if too many ids are requested
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BatchLookup<TeacherDto> getTeachersByIds(List<Integer> ids) {
+        Set<Integer> distinct = BatchLookup.distinctIds(ids);
+        List<TeacherDto> found = distinct.isEmpty() ? List.of() : teacherRepo.findDtosByIds(distinct);
+        return BatchLookup.of(distinct, found, TeacherDto::getId);
+    }
+
+    /**
+     * Gets teachers by ids with only the requested fields.
+     *
+     * @param ids    of the teachers
+     * @param fields comma separated fields of the teacher DTO to select, the id is always included
+     * @return teachers with the requested fields in the order of the ids and the ids without a teacher
+     * @throws com.example.university.exception.InvalidRequestParameterException if a field is unknown or too many ids are requested
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BatchLookup<Map<String, Object>> getTeachersByIds(List<Integer> ids, String fields) {
+        List<String> selected = SparseQueries.parseFields(fields, FIELDS);
+        Set<Integer> distinct = BatchLookup.distinctIds(ids);
+        List<Map<String, Object>> found = distinct.isEmpty() ? List.of()
+                : SparseQueries.findByIds(entityManager, Teacher.class, selected, distinct);
+        return BatchLookup.of(distinct, found, SparseQueries::idOf);
     }
 
     /**
@@ -78,10 +277,32 @@ public class TeacherServiceImpl implements TeacherService {
      * @throws MethodArgumentNotValidException if there are validation errors
      */
     @Override
+    @Transactional
     public TeacherDto saveTeacher(TeacherDto teacherDto) {
         Teacher teacher = teacherMapper.dtoToEntity(teacherDto);
         teacherRepo.save(teacher);
-        return teacherMapper.entityToDto(teacher);
+        TeacherDto saved = teacherMapper.entityToDto(teacher);
+        nameIndex.put(saved);
+        return saved;
+    }
+
+    /**
+     * Saves many teachers at once.
+     *
+     * @param teacherDtos the teacher DTOs, their ids are ignored
+     * @return the saved teacher DTOs with their new ids, in the order they were given
+     * @see StudentServiceImpl#saveStudents(List)
+     */
+    @Override
+    @Transactional
+    public List<TeacherDto> saveTeachers(List<TeacherDto> teacherDtos) {
+        List<TeacherDto> saved = BatchInserts.persistAll(entityManager, teacherDtos, dto -> {
+            Teacher teacher = teacherMapper.dtoToEntity(dto);
+            teacher.setId(0);
+            return teacher;
+        }, teacherMapper::entityToDto);
+        nameIndex.putAll(saved);
+        return saved;
     }
 
     /**
@@ -89,31 +310,96 @@ public class TeacherServiceImpl implements TeacherService {
      *
      * @param teacherId of the teacher
      * @param dto       a teacher DTO
+     * @param expectedVersion the version the client has seen, {@code null} to update unconditionally
      * @return the updated teacher DTO
      * @throws NoEntityFoundException if the teacher with such id doesn't exist
+     * @throws EntityVersionMismatchException if the teacher has another version than expected
      */
     @Override
-    public TeacherDto updateTeacher(int teacherId, TeacherDto dto) {
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.TEACHERS, key = "#teacherId")
+    public TeacherDto updateTeacher(int teacherId, TeacherDto dto, Long expectedVersion) {
         Teacher teacher = teacherRepo.findById(teacherId)
                 .orElseThrow(() -> new NoEntityFoundException("Teacher is not found with id " + teacherId));
+        if (expectedVersion != null && expectedVersion != teacher.getVersion()) {
+            throw new EntityVersionMismatchException("Teacher with id " + teacherId + " has been modified, its version is " + teacher.getVersion());
+        }
         teacher.setFirstName(dto.getFirstName());
         teacher.setLastName(dto.getLastName());
         teacher.setMiddleName(dto.getMiddleName());
         teacher.setAge(dto.getAge());
         teacherRepo.save(teacher);
-        return teacherMapper.entityToDto(teacher);
+        TeacherDto updated = teacherMapper.entityToDto(teacher);
+        nameIndex.put(updated);
+        return updated;
+    }
+
+    /**
+     * Updates only the given fields of a teacher.
+     *
+     * <p>The fields are written by one update statement without reading the teacher first. The
+     * teacher is read back afterwards for the response and the name index.
+     *
+     * @param teacherId       of the teacher
+     * @param changes         new values by field name of the teacher DTO, other fields keep their values
+     * @param expectedVersion the version the client has seen, {@code null} to update unconditionally
+     * @return the updated teacher DTO
+     * @throws NoEntityFoundException           if the teacher with such id doesn't exist
+     * @throws EntityVersionMismatchException   if the teacher has another version than expected
+     * @throws InvalidRequestParameterException if a field is unknown or has a value of another type, or there are no fields
+     * @throws InvalidFieldsException           if a value is invalid
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.TEACHERS, key = "#teacherId")
+    public TeacherDto patchTeacher(int teacherId, Map<String, Object> changes, Long expectedVersion) {
+        Map<String, Object> fields = PartialUpdates.parseChanges(validator, changes, TeacherDto.class, WRITABLE_FIELDS, READ_ONLY_FIELDS);
+        if (PartialUpdates.update(entityManager, Teacher.class, teacherId, fields, expectedVersion) == 0) {
+            long version = teacherRepo.findVersionById(teacherId)
+                    .orElseThrow(() -> new NoEntityFoundException("Teacher is not found with id " + teacherId));
+            throw new EntityVersionMismatchException("Teacher with id " + teacherId + " has been modified, its version is " + version);
+        }
+        TeacherDto updated = teacherRepo.findDtoById(teacherId).orElseThrow();
+        nameIndex.put(updated);
+        return updated;
     }
 
     /**
      * Deletes a teacher.
      *
+     * <p>The subjects of the teacher are deleted with them by the database, so they are first subtracted
+     * from the numbers of subjects of the students enrolled in them. The teacher is then deleted by one
+     * statement, and the number of deleted rows tells whether the teacher existed. The ids of the subjects
+     * and their students are read first, so only their DTOs are evicted from the caches.
+     *
      * @param id of the teacher
      * @throws NoEntityFoundException if the teacher with such id doesn't exist
      */
     @Override
+    @Transactional
     public void deleteTeacher(int id) {
-        teacherRepo.findById(id).orElseThrow(() -> new NoEntityFoundException("There is no teacher with id " + id));
-        teacherRepo.deleteById(id);
+        if (delete(List.of(id)) == 0) {
+            throw new NoEntityFoundException("There is no teacher with id " + id);
+        }
+    }
+
+    /**
+     * Deletes many teachers at once.
+     *
+     * <p>The teachers are deleted like {@link #deleteTeacher(int)}, {@link BulkIds#CHUNK_SIZE} ids per
+     * statement. Ids without a teacher are skipped.
+     *
+     * @param ids of the teachers
+     * @return the number of teachers deleted
+     */
+    @Override
+    @Transactional
+    public int deleteTeachers(List<Integer> ids) {
+        int deleted = 0;
+        for (List<Integer> chunk : BulkIds.distinctChunks(ids)) {
+            deleted += delete(chunk);
+        }
+        return deleted;
     }
 
     /**
@@ -125,6 +411,8 @@ public class TeacherServiceImpl implements TeacherService {
      * @throws MethodArgumentNotValidException if there are validation errors
      */
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.TEACHERS, key = "#teacherId")
     public void addSubjectToTeacher(int teacherId, SubjectDto subjectDto) {
         Teacher teacher = teacherRepo.findById(teacherId)
                 .orElseThrow(() -> new NoEntityFoundException("Teacher is not found with id " + teacherId));
@@ -145,28 +433,50 @@ public class TeacherServiceImpl implements TeacherService {
      * @throws NoEntityFoundException if the teacher with such id doesn't exist
      */
     @Override
+    @Transactional(readOnly = true)
     public List<SubjectDto> getAllSubjectsOfTeacher(int id) {
-        Teacher teacher = teacherRepo.findById(id)
+        return RelationRows.relatedOrThrow(subjectRepo.findSubjectsOfTeacher(id), SubjectDto::getId,
+                () -> new NoEntityFoundException("There is no teacher with id " + id));
+    }
+
+    /**
+     * Gets the version stamp of all subjects of the teacher.
+     *
+     * @param id of the teacher
+     * @return the version stamp of the subjects
+     * @throws NoEntityFoundException if the teacher with such id doesn't exist
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public VersionStamp getSubjectsOfTeacherStamp(int id) {
+        return subjectRepo.findSubjectsOfTeacherStamp(id)
                 .orElseThrow(() -> new NoEntityFoundException("There is no teacher with id " + id));
-        List<Subject> subjects = teacher.getSubjects();
-        return subjects.stream().map(subjectMapper::entityToDto).collect(Collectors.toList());
     }
 
     /**
      * Deletes a subject from the teacher.
      *
+     * <p>The subject is deleted with a single statement that also checks that the teacher teaches it,
+     * so neither of them is loaded. A subject of another teacher is left as it is. Only the students
+     * enrolled in the subject are evicted from the cache.
+     *
      * @param teacherId of the teacher
      * @param subjectId of the subject
      * @throws NoEntityFoundException if the teacher or subject with such id doesn't exist
      */
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.SUBJECTS, key = "#subjectId")
     public void deleteSubjectOfTeacher(int teacherId, int subjectId) {
-        Teacher teacher = teacherRepo.findById(teacherId)
-                .orElseThrow(() -> new NoEntityFoundException("Teacher is not found with id " + teacherId));
-        Subject subject = subjectRepo.findById(subjectId)
-                .orElseThrow(() -> new NoEntityFoundException("Subject is not found with id " + subjectId));
-        teacher.getSubjects().remove(subject);
-        teacherRepo.save(teacher);
+        List<Integer> studentIds = studentRepo.findIdsEnrolledInAny(List.of(subjectId));
+        if (!studentIds.isEmpty()) {
+            studentRepo.subtractSubjectOfTeacher(subjectId, teacherId);
+        }
+        if (subjectRepo.deleteOfTeacher(subjectId, teacherId) == 0) {
+            requireTeacherAndSubject(teacherId, subjectId);
+            return;
+        }
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.STUDENTS, studentIds);
     }
 
     /**
@@ -177,11 +487,24 @@ public class TeacherServiceImpl implements TeacherService {
      * @throws NoEntityFoundException if the teacher with such id doesn't exist
      */
     @Override
+    @Transactional(readOnly = true)
     public List<StudentDto> getAllStudentsOfTeacher(int teacherId) {
-        Teacher teacher = teacherRepo.findById(teacherId)
+        return RelationRows.relatedOrThrow(studentRepo.findStudentsOfTeacher(teacherId), StudentDto::getId,
+                () -> new NoEntityFoundException("Teacher is not found with id " + teacherId));
+    }
+
+    /**
+     * Gets the version stamp of all students of the teacher.
+     *
+     * @param teacherId of the teacher
+     * @return the version stamp of the students
+     * @throws NoEntityFoundException if the teacher with such id doesn't exist
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public VersionStamp getStudentsOfTeacherStamp(int teacherId) {
+        return studentRepo.findStudentsOfTeacherStamp(teacherId)
                 .orElseThrow(() -> new NoEntityFoundException("Teacher is not found with id " + teacherId));
-        List<Student> students = teacher.getStudents();
-        return students.stream().map(studentMapper::entityToDto).collect(Collectors.toList());
     }
 
     /**
@@ -192,13 +515,17 @@ public class TeacherServiceImpl implements TeacherService {
      * @throws NoEntityFoundException if the teacher or student with such id doesn't exist
      */
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.TEACHERS, key = "#teacherId"),
+            @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#studentId")
+    })
     public void deleteStudentOfTeacher(int teacherId, int studentId) {
-        Teacher teacher = teacherRepo.findById(teacherId)
-                .orElseThrow(() -> new NoEntityFoundException("Teacher is not found with id " + teacherId));
-        Student student = studentRepo.findById(studentId)
-                .orElseThrow(() -> new NoEntityFoundException("Student is not found with id " + studentId));
-        teacher.getStudents().remove(student);
-        teacherRepo.save(teacher);
+        if (studentRepo.removeTeacher(studentId, teacherId) == 0) {
+            requireTeacherAndStudent(teacherId, studentId);
+        } else {
+            touchTeacherAndStudents(teacherId, List.of(studentId), -1);
+        }
     }
 
     /**
@@ -207,15 +534,118 @@ public class TeacherServiceImpl implements TeacherService {
      * @param teacherId of the teacher
      * @param studentId of the student
      * @throws NoEntityFoundException if the teacher or student with such id doesn't exist
+     * @throws EntityAlreadyAddedException if the student is already added to the teacher
      */
     @Override
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.TEACHERS, key = "#teacherId"),
+            @CacheEvict(cacheNames = CacheConfig.STUDENTS, key = "#studentId")
+    })
     public void addStudentToTeacher(int teacherId, int studentId) {
-        Teacher teacher = teacherRepo.findById(teacherId)
-                .orElseThrow(() -> new NoEntityFoundException("Teacher is not found with id " + teacherId));
-        Student student = studentRepo.findById(studentId)
-                .orElseThrow(() -> new NoEntityFoundException("Student is not found with id " + studentId));
-        teacher.getStudents().add(student);
-        teacherRepo.save(teacher);
+        if (studentRepo.addTeacher(studentId, teacherId) == 0) {
+            requireTeacherAndStudent(teacherId, studentId);
+            throw new EntityAlreadyAddedException("Student is already added with id " + studentId);
+        }
+        touchTeacherAndStudents(teacherId, List.of(studentId), 1);
+    }
+
+    /**
+     * Adds many students to a teacher at once
+     *
+     * <p>Students that are already added are looked up per chunk and skipped, so only the versions of
+     * the newly added students are incremented and only their DTOs are evicted from the cache.
+     *
+     * @param teacherId  the id of the teacher
+     * @param studentIds the ids of the students to add
+     * @return the number of students that were added by this call
+     * @throws NoEntityFoundException if there is no teacher with such id or some of the students don't exist
+     * @see SubjectServiceImpl#addStudentsToSubject(int, List)
+     */
+    @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.TEACHERS, key = "#teacherId")
+    public int addStudentsToTeacher(int teacherId, List<Integer> studentIds) {
+        if (!teacherRepo.existsById(teacherId)) {
+            throw new NoEntityFoundException("Teacher is not found with id " + teacherId);
+        }
+        List<List<Integer>> chunks = BulkIds.distinctChunks(studentIds);
+        List<Integer> missing = BulkIds.missing(chunks, studentRepo::findExistingIds);
+        if (!missing.isEmpty()) {
+            throw new NoEntityFoundException("Students are not found with ids " + missing);
+        }
+        int added = 0;
+        for (List<Integer> chunk : chunks) {
+            List<Integer> newIds = BulkIds.except(chunk, studentRepo.findIdsAssignedTo(teacherId, chunk));
+            if (newIds.isEmpty()) {
+                continue;
+            }
+            int addedInChunk = studentRepo.addTeacherToStudents(teacherId, newIds);
+            if (addedInChunk > 0) {
+                studentRepo.incrementVersions(newIds);
+                CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.STUDENTS, newIds);
+            }
+            added += addedInChunk;
+        }
+        if (added > 0) {
+            teacherRepo.addToStudentCount(teacherId, added);
+        }
+        return added;
+    }
+
+    /**
+     * Increments the versions of both sides of changed join rows and adds to the number of students of the teacher.
+     *
+     * @see StudentServiceImpl#addTeacherToStudent(int, int)
+     */
+    private void touchTeacherAndStudents(int teacherId, List<Integer> studentIds, int delta) {
+        teacherRepo.addToStudentCount(teacherId, delta);
+        studentRepo.incrementVersions(studentIds);
+    }
+
+    /**
+     * Subtracts the subjects of the teachers from the numbers of subjects of their students while the
+     * subjects still exist and deletes the teachers, which deletes the subjects. The teachers, their
+     * subjects and the students of those are evicted from the caches once this commits.
+     */
+    private int delete(List<Integer> ids) {
+        List<Integer> subjectIds = subjectRepo.findIdsOfTeachers(ids);
+        List<Integer> studentIds = subjectIds.isEmpty() ? List.of() : studentRepo.findIdsEnrolledInAny(subjectIds);
+        if (!studentIds.isEmpty()) {
+            studentRepo.subtractSubjects(subjectIds);
+        }
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.TEACHERS, ids);
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.SUBJECTS, subjectIds);
+        CacheEvictions.evictAfterCommit(cacheManager, CacheConfig.STUDENTS, studentIds);
+        int deleted = teacherRepo.deleteByIds(ids);
+        ids.forEach(nameIndex::remove);
+        return deleted;
+    }
+
+    /**
+     * Explains why a subject of a teacher was not deleted; a subject of another teacher is left as it is.
+     */
+    private void requireTeacherAndSubject(int teacherId, int subjectId) {
+        if (!teacherRepo.existsById(teacherId)) {
+            throw new NoEntityFoundException("Teacher is not found with id " + teacherId);
+        }
+        if (!subjectRepo.existsById(subjectId)) {
+            throw new NoEntityFoundException("Subject is not found with id " + subjectId);
+        }
+    }
+
+    /**
+     * Explains why a join row was not written.
+     *
+     * @see StudentServiceImpl#addTeacherToStudent(int, int)
+     */
+    private void requireTeacherAndStudent(int teacherId, int studentId) {
+        if (!teacherRepo.existsById(teacherId)) {
+            throw new NoEntityFoundException("Teacher is not found with id " + teacherId);
+        }
+        if (!studentRepo.existsById(studentId)) {
+            throw new NoEntityFoundException("Student is not found with id " + studentId);
+        }
     }
 
 }
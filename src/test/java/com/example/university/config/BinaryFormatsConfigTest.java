@@ -0,0 +1,61 @@
+package com.example.university.config;
+
+import com.example.university.dto.StudentDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the binary encodings configured by {@link BinaryFormatsConfig}.
+ *
+ * <p>The throughput of the encodings is measured by {@code BinaryFormatsBenchmark} in the JMH sources.
+ */
+class BinaryFormatsConfigTest {
+
+    private static final TypeReference<List<StudentDto>> STUDENT_LIST = new TypeReference<>() {
+    };
+
+    private final BinaryFormatsConfig config = new BinaryFormatsConfig();
+
+    private final List<StudentDto> students = students(100);
+
+    @Test
+    void smile_WhenListOfStudents_ReadsBackEqualToJsonAndIsSmaller() throws IOException {
+        assertReadsBackEqualToJsonAndIsSmaller(config.smileHttpMessageConverter(builder()).getObjectMapper());
+    }
+
+    @Test
+    void cbor_WhenListOfStudents_ReadsBackEqualToJsonAndIsSmaller() throws IOException {
+        assertReadsBackEqualToJsonAndIsSmaller(config.cborHttpMessageConverter(builder()).getObjectMapper());
+    }
+
+    private void assertReadsBackEqualToJsonAndIsSmaller(ObjectMapper binary) throws IOException {
+        ObjectMapper json = builder().build();
+        byte[] jsonPayload = json.writeValueAsBytes(students);
+        byte[] binaryPayload = binary.writeValueAsBytes(students);
+
+        assertEquals(json.readValue(jsonPayload, STUDENT_LIST), binary.readValue(binaryPayload, STUDENT_LIST));
+        assertEquals(students, binary.readValue(binaryPayload, STUDENT_LIST));
+        assertTrue(binaryPayload.length < jsonPayload.length,
+                binaryPayload.length + " bytes is not smaller than " + jsonPayload.length + " bytes of json");
+    }
+
+    private static Jackson2ObjectMapperBuilder builder() {
+        return Jackson2ObjectMapperBuilder.json().modulesToInstall(ParameterNamesModule.class);
+    }
+
+    private static List<StudentDto> students(int count) {
+        List<StudentDto> students = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            students.add(new StudentDto(i, "firstName" + i, "lastName" + i, "middleName" + i, 18 + i % 50, i % 10));
+        }
+        return students;
+    }
+}
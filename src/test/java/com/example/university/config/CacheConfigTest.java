@@ -0,0 +1,70 @@
+package com.example.university.config;
+
+import com.example.university.dto.StudentDto;
+import com.example.university.dto.Versioned;
+import com.example.university.service.StudentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.BeanFactoryCacheOperationSourceAdvisor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.interceptor.BeanFactoryTransactionAttributeSourceAdvisor;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the cache advice of {@link CacheConfig} acts after the transactions of the services.
+ *
+ * <p>The application runs on an in-memory database like the one of the {@code embedded} profile, but of its
+ * own, so that it doesn't meet the database of the other application contexts of the tests.
+ */
+@SpringBootTest(properties = {"university.roster-counts.reconcile.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:cache-config;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE"})
+@ActiveProfiles("embedded")
+class CacheConfigTest {
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private BeanFactoryCacheOperationSourceAdvisor cacheAdvisor;
+
+    @Autowired
+    private BeanFactoryTransactionAttributeSourceAdvisor transactionAdvisor;
+
+    @Test
+    void cacheAdvisor_ShouldWrapTransactionAdvisor() {
+        // with equal orders the nesting depends on the registration order of the advisors
+        assertTrue(cacheAdvisor.getOrder() < transactionAdvisor.getOrder(),
+                "cache advice order " + cacheAdvisor.getOrder() + " must precede transaction advice order " + transactionAdvisor.getOrder());
+    }
+
+    @Test
+    void updateStudent_WhenCommitFails_LeavesCachedStudentUntouched() {
+        StudentDto saved = studentService.saveStudent(new StudentDto(0, "Anna", "Ivanova", "Petrovna", 20, 0));
+        Versioned<StudentDto> cached = studentService.getStudentById(saved.getId());
+
+        // the first name column is NOT NULL, so the update only fails when it is flushed at the commit
+        StudentDto invalid = new StudentDto(saved.getId(), null, "Smirnova", "Petrovna", 21, 0);
+        assertThrows(RuntimeException.class, () -> studentService.updateStudent(saved.getId(), invalid, null));
+
+        assertEquals(cached, cacheManager.getCache(CacheConfig.STUDENTS).get(saved.getId(), Versioned.class));
+        assertEquals(cached, studentService.getStudentById(saved.getId()));
+    }
+
+    @Test
+    void updateStudent_WhenCommitted_CachesNewStudentWithItsNewVersion() {
+        StudentDto saved = studentService.saveStudent(new StudentDto(0, "Oleg", "Petrov", "Ivanovich", 20, 0));
+        Versioned<StudentDto> cached = studentService.getStudentById(saved.getId());
+
+        StudentDto updated = studentService.updateStudent(saved.getId(), new StudentDto(saved.getId(), "Oleg", "Petrov", "Ivanovich", 21, 0),
+                cached.getVersion());
+
+        assertEquals(new Versioned<>(updated, cached.getVersion() + 1), studentService.getStudentById(saved.getId()));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.university.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import java.util.concurrent.ExecutorService;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for {@link VirtualThreadsConfig}, on the Java runtime that runs the tests.
+ */
+class VirtualThreadsConfigTest {
+
+    private static final boolean VIRTUAL_THREADS = Runtime.version().feature() >= 21;
+
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(TaskExecutionAutoConfiguration.class))
+            .withUserConfiguration(VirtualThreadsConfig.class);
+
+    @Test
+    void context_WhenModeIsOff_ShouldUsePlatformThreads() {
+        runner.run(context -> {
+            assertThat(context).doesNotHaveBean(VirtualThreadsConfig.class);
+            assertThat(context.getBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME))
+                    .isInstanceOf(ThreadPoolTaskExecutor.class);
+        });
+    }
+
+    @Test
+    void context_WhenModeIsOnBeforeJava21_ShouldFallBackToPlatformThreads() {
+        assumeTrue(!VIRTUAL_THREADS, "the runtime has virtual threads");
+        runner.withPropertyValues("university.virtual-threads.enabled=true").run(context -> {
+            assertThat(context).hasNotFailed();
+            assertThat(context).doesNotHaveBean(VirtualThreadsConfig.class);
+            assertThat(context).doesNotHaveBean(ExecutorService.class);
+            assertThat(context).doesNotHaveBean(TomcatProtocolHandlerCustomizer.class);
+            assertThat(context.getBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME))
+                    .isInstanceOf(ThreadPoolTaskExecutor.class);
+        });
+    }
+
+    @Test
+    void context_WhenModeIsOnFromJava21_ShouldUseVirtualThreads() {
+        assumeTrue(VIRTUAL_THREADS, "the runtime has no virtual threads");
+        runner.withPropertyValues("university.virtual-threads.enabled=true").run(context -> {
+            assertThat(context).hasSingleBean(ExecutorService.class);
+            assertThat(context).hasSingleBean(TomcatProtocolHandlerCustomizer.class);
+            assertThat(context.getBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME))
+                    .isInstanceOf(TaskExecutorAdapter.class);
+        });
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.university.controller;
+
+import com.example.university.dto.StudentDto;
+import com.example.university.dto.SubjectDto;
+import com.example.university.dto.TeacherDto;
+import com.example.university.service.StudentService;
+import com.example.university.service.SubjectService;
+import com.example.university.service.TeacherService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Query budgets of the endpoints of {@link StudentController}, {@link TeacherController} and {@link SubjectController}.
+ *
+ * <p>Each endpoint is called with empty caches, and the JDBC statements, entity loads and lazy collection fetches it
+ * caused are compared with its budget. The rosters the endpoints read and change hold one, ten and a hundred
+ * entities in turn, so an endpoint whose counts grow with a roster, an N+1 select, breaks its budget at the larger
+ * sizes. The counts must match exactly: a change that saves queries updates the budget, so it can't be lost later.
+ * Only the endpoints that insert may use one more statement, for the next block of ids of a sequence.
+ *
+ * <p>The application runs on the in-memory database of the {@code embedded} profile.
+ */
+@SpringBootTest(properties = "university.roster-counts.reconcile.enabled=false")
+@ActiveProfiles("embedded")
+@AutoConfigureMockMvc
+class QueryBudgetTest {
+
+    private static final String JSON = MediaType.APPLICATION_JSON_VALUE;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private StudentService studentService;
+
+    @Autowired
+    private TeacherService teacherService;
+
+    @Autowired
+    private SubjectService subjectService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private QueryCounter counter;
+
+    private int subjectNames;
+
+    @BeforeEach
+    void setUp() {
+        counter = new QueryCounter(entityManagerFactory);
+    }
+
+    @ParameterizedTest(name = "rosters of {0}")
+    @ValueSource(ints = {1, 10, 100})
+    void endpoints_WhenRostersGrow_KeepTheirQueryBudgets(int size) throws Exception {
+        World world = seed(size);
+        List<String> broken = new ArrayList<>();
+        for (Budget budget : budgets()) {
+            MockHttpServletRequestBuilder request = budget.request.prepare(world);
+            cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+            QueryCounter.Counts counts = counter.count(() -> perform(budget.name, request));
+            if (!budget.allows(counts)) {
+                broken.add(budget.name + ": budget " + budget.counts + ", used " + counts);
+            }
+        }
+        assertTrue(broken.isEmpty(), () -> "Query budgets broken with rosters of " + size + ":\n" + String.join("\n", broken));
+    }
+
+    private List<Budget> budgets() {
+        List<Budget> budgets = new ArrayList<>();
+        budgets.add(budget("GET /api/students", 2, 0, 0, w -> get("/api/students?limit=100")));
+        budgets.add(budget("GET /api/students?fields", 2, 0, 0, w -> get("/api/students?limit=100&fields=firstName,age")));
+        budgets.add(budget("GET /api/students?ids", 1, 0, 0, w -> get("/api/students?ids=" + ids(w.students))));
+        budgets.add(budget("GET /api/students?ids&fields", 1, 0, 0, w -> get("/api/students?fields=lastName&ids=" + ids(w.students))));
+        budgets.add(budget("GET /api/students/export", 1, 0, 0, w -> get("/api/students/export")));
+        budgets.add(budget("GET /api/students/search", 1, 0, 0, w -> get("/api/students/search?limit=100&prefix=" + w.name)));
+        budgets.add(budget("GET /api/students/{id}", 1, 1, 0, w -> get("/api/students/" + w.student())));
+        budgets.add(budget("GET /api/students/{id}?fields", 1, 0, 0, w -> get("/api/students/" + w.student() + "?fields=firstName")));
+        budgets.add(insertBudget("POST /api/students/bulk", 1, 0, 0, w -> post("/api/students/bulk").contentType(JSON)
+                .content("[" + person(w.name) + "," + person(w.name) + "," + person(w.name) + "]")));
+        budgets.add(insertBudget("POST /api/students", 1, 0, 0, w -> post("/api/students").contentType(JSON).content(person(w.name))));
+        budgets.add(budget("PUT /api/students/{id}", 2, 1, 0,
+                w -> put("/api/students/" + w.student()).contentType(JSON).content(person(w.name))));
+        budgets.add(budget("PATCH /api/students/{id}", 2, 0, 0,
+                w -> patch("/api/students/" + w.student()).contentType(JSON).content("{\"age\":30}")));
+        budgets.add(budget("DELETE /api/students/{id}", 5, 0, 0, w -> delete("/api/students/" + enrolledStudent(w))));
+        budgets.add(budget("DELETE /api/students?ids", 5, 0, 0,
+                w -> delete("/api/students?ids=" + enrolledStudent(w) + "," + enrolledStudent(w) + ",0")));
+        budgets.add(budget("PUT /api/students/{id}/teachers", 3, 0, 0,
+                w -> put("/api/students/" + newStudent(w) + "/teachers?setTeacher=" + w.teacher())));
+        budgets.add(budget("GET /api/students/{id}/teachers", 2, 0, 0, w -> get("/api/students/" + w.student() + "/teachers")));
+        budgets.add(budget("DELETE /api/students/{id}/teachers", 3, 0, 0,
+                w -> delete("/api/students/" + enrolledStudent(w) + "/teachers?setTeacher=" + w.teacher())));
+        budgets.add(budget("PUT /api/students/{id}/subjects", 3, 0, 0,
+                w -> put("/api/students/" + newStudent(w) + "/subjects?setSubject=" + w.subject())));
+        budgets.add(budget("GET /api/students/{id}/subjects", 2, 0, 0, w -> get("/api/students/" + w.student() + "/subjects")));
+        budgets.add(budget("DELETE /api/students/{id}/subjects", 3, 0, 0,
+                w -> delete("/api/students/" + enrolledStudent(w) + "/subjects?setSubject=" + w.subject())));
+
+        budgets.add(budget("GET /api/teachers", 2, 0, 0, w -> get("/api/teachers?limit=100")));
+        budgets.add(budget("GET /api/teachers?fields", 2, 0, 0, w -> get("/api/teachers?limit=100&fields=firstName,studentCount")));
+        budgets.add(budget("GET /api/teachers?ids", 1, 0, 0, w -> get("/api/teachers?ids=" + ids(w.teachers))));
+        budgets.add(budget("GET /api/teachers?ids&fields", 1, 0, 0, w -> get("/api/teachers?fields=lastName&ids=" + ids(w.teachers))));
+        budgets.add(budget("GET /api/teachers/stats", 1, 0, 0, w -> get("/api/teachers/stats?sort=students&limit=100")));
+        budgets.add(budget("GET /api/teachers/export", 1, 0, 0, w -> get("/api/teachers/export")));
+        budgets.add(budget("GET /api/teachers/search", 1, 0, 0, w -> get("/api/teachers/search?limit=100&prefix=" + w.name)));
+        budgets.add(budget("GET /api/teachers/{id}", 1, 1, 0, w -> get("/api/teachers/" + w.teacher())));
+        budgets.add(budget("GET /api/teachers/{id}?fields", 1, 0, 0, w -> get("/api/teachers/" + w.teacher() + "?fields=firstName")));
+        budgets.add(insertBudget("POST /api/teachers/bulk", 1, 0, 0, w -> post("/api/teachers/bulk").contentType(JSON)
+                .content("[" + person(w.name) + "," + person(w.name) + "," + person(w.name) + "]")));
+        budgets.add(insertBudget("POST /api/teachers", 1, 0, 0, w -> post("/api/teachers").contentType(JSON).content(person(w.name))));
+        budgets.add(budget("PUT /api/teachers/{id}", 2, 1, 0,
+                w -> put("/api/teachers/" + w.teacher()).contentType(JSON).content(person(w.name))));
+        budgets.add(budget("PATCH /api/teachers/{id}", 2, 0, 0,
+                w -> patch("/api/teachers/" + w.teacher()).contentType(JSON).content("{\"lastName\":\"Petrov\"}")));
+        budgets.add(budget("DELETE /api/teachers/{id}", 4, 0, 0, w -> delete("/api/teachers/" + busyTeacher(w))));
+        budgets.add(budget("DELETE /api/teachers?ids", 4, 0, 0,
+                w -> delete("/api/teachers?ids=" + busyTeacher(w) + "," + busyTeacher(w) + ",0")));
+        budgets.add(budget("PUT /api/teachers/{id}/subjects", 3, 2, 1,
+                w -> put("/api/teachers/" + w.teacher() + "/subjects").contentType(JSON).content(subject(w.name))));
+        budgets.add(budget("GET /api/teachers/{id}/subjects", 2, 0, 0, w -> get("/api/teachers/" + w.teacher() + "/subjects")));
+        budgets.add(budget("DELETE /api/teachers/{id}/subjects", 3, 0, 0,
+                w -> delete("/api/teachers/" + w.teacher() + "/subjects?subjectId=" + enrolledSubject(w, w.teacher()))));
+        budgets.add(budget("GET /api/teachers/{id}/students", 2, 0, 0, w -> get("/api/teachers/" + w.teacher() + "/students")));
+        budgets.add(budget("PUT /api/teachers/{id}/students", 3, 0, 0,
+                w -> put("/api/teachers/" + w.teacher() + "/students?studentId=" + newStudent(w))));
+        budgets.add(budget("DELETE /api/teachers/{id}/students", 3, 0, 0,
+                w -> delete("/api/teachers/" + w.teacher() + "/students?studentId=" + enrolledStudent(w))));
+        budgets.add(budget("POST /api/teachers/{id}/students", 6, 0, 0,
+                w -> post("/api/teachers/" + newTeacher(w) + "/students").contentType(JSON).content(w.students.toString())));
+
+        budgets.add(budget("GET /api/subjects", 2, 0, 0, w -> get("/api/subjects?limit=100")));
+        budgets.add(budget("GET /api/subjects?ids", 1, 0, 0, w -> get("/api/subjects?ids=" + ids(w.subjects))));
+        budgets.add(budget("GET /api/subjects/stats", 1, 0, 0, w -> get("/api/subjects/stats?sort=students&limit=100")));
+        budgets.add(budget("GET /api/subjects/export", 1, 0, 0, w -> get("/api/subjects/export")));
+        budgets.add(budget("GET /api/subjects/{id}", 1, 2, 0, w -> get("/api/subjects/" + w.subject())));
+        budgets.add(insertBudget("POST /api/subjects/bulk", 2, 0, 0, w -> post("/api/subjects/bulk?teacherId=" + w.teacher()).contentType(JSON)
+                .content("[" + subject(w.name) + "," + subject(w.name) + "," + subject(w.name) + "]")));
+        // POST /api/subjects has no budget: a subject needs a teacher, and only the bulk endpoint takes one
+        budgets.add(budget("PUT /api/subjects/{id}", 2, 2, 0,
+                w -> put("/api/subjects/" + w.subject()).contentType(JSON).content(subject(w.name))));
+        budgets.add(budget("PATCH /api/subjects/{id}", 2, 0, 0,
+                w -> patch("/api/subjects/" + w.subject()).contentType(JSON).content(subject(w.name))));
+        budgets.add(budget("DELETE /api/subjects/{id}", 3, 0, 0, w -> delete("/api/subjects/" + enrolledSubject(w, newTeacher(w)))));
+        budgets.add(budget("DELETE /api/subjects?ids", 3, 0, 0,
+                w -> delete("/api/subjects?ids=" + enrolledSubject(w, w.teacher()) + "," + enrolledSubject(w, w.teacher()) + ",0")));
+        budgets.add(budget("POST /api/subjects/{id}/students", 3, 0, 0,
+                w -> post("/api/subjects/" + enrolledSubject(w, w.teacher()) + "/students").contentType(JSON).content(w.students.toString())));
+        return budgets;
+    }
+
+    /**
+     * Seeds the rosters of the given size: that many students, teachers with a subject each, a teacher and a
+     * subject with all the students, and a student with all the teachers and subjects.
+     */
+    private World seed(int size) {
+        String name = "budget" + size + "x";
+        List<Integer> students = studentService.saveStudents(people(name, size, StudentDto::new)).stream()
+                .map(StudentDto::getId).collect(Collectors.toList());
+        List<Integer> teachers = teacherService.saveTeachers(people(name, size, TeacherDto::new)).stream()
+                .map(TeacherDto::getId).collect(Collectors.toList());
+        List<Integer> subjects = new ArrayList<>(size);
+        for (int teacher : teachers) {
+            subjects.add(subjectService.saveSubjects(teacher, List.of(new SubjectDto(0, name + ++subjectNames, 0))).get(0).getId());
+            teacherService.addStudentsToTeacher(teacher, List.of(students.get(0)));
+        }
+        teacherService.addStudentsToTeacher(teachers.get(0), students);
+        for (int subject : subjects) {
+            subjectService.addStudentsToSubject(subject, List.of(students.get(0)));
+        }
+        subjectService.addStudentsToSubject(subjects.get(0), students);
+        return new World(name, students, teachers, subjects);
+    }
+
+    /**
+     * Creates a student without teachers and subjects.
+     */
+    private int newStudent(World world) {
+        return studentService.saveStudent(new StudentDto(0, "new", world.name, "m", 20, 0)).getId();
+    }
+
+    /**
+     * Creates a student with all the teachers and subjects of the world.
+     */
+    private int enrolledStudent(World world) {
+        int student = newStudent(world);
+        for (int teacher : world.teachers) {
+            teacherService.addStudentsToTeacher(teacher, List.of(student));
+        }
+        for (int subject : world.subjects) {
+            subjectService.addStudentsToSubject(subject, List.of(student));
+        }
+        return student;
+    }
+
+    /**
+     * Creates a teacher without students and subjects.
+     */
+    private int newTeacher(World world) {
+        return teacherService.saveTeacher(new TeacherDto(0, "new", world.name, "m", 40, 0)).getId();
+    }
+
+    /**
+     * Creates a teacher with all the students of the world and two subjects with all of them.
+     */
+    private int busyTeacher(World world) {
+        int teacher = newTeacher(world);
+        teacherService.addStudentsToTeacher(teacher, world.students);
+        enrolledSubject(world, teacher);
+        enrolledSubject(world, teacher);
+        return teacher;
+    }
+
+    /**
+     * Creates a subject of the given teacher with all the students of the world.
+     */
+    private int enrolledSubject(World world, int teacher) {
+        int subject = subjectService.saveSubjects(teacher, List.of(new SubjectDto(0, world.name + ++subjectNames, 0))).get(0).getId();
+        subjectService.addStudentsToSubject(subject, world.students);
+        return subject;
+    }
+
+    private void perform(String name, MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            mvc.perform(asyncDispatch(result));
+        }
+        assertEquals(2, result.getResponse().getStatus() / 100, () -> name + " failed: " + result.getResponse().getStatus());
+    }
+
+    private static <T> List<T> people(String name, int count, PersonFactory<T> factory) {
+        List<T> people = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            people.add(factory.create(0, "p" + i, name, "m", 30, 0));
+        }
+        return people;
+    }
+
+    private static String person(String name) {
+        return "{\"firstName\":\"p\",\"lastName\":\"" + name + "\",\"middleName\":\"m\",\"age\":30}";
+    }
+
+    private String subject(String name) {
+        return "{\"name\":\"" + name + ++subjectNames + "\"}";
+    }
+
+    private static String ids(List<Integer> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static Budget budget(String name, int statements, int entityLoads, int collectionFetches, Request request) {
+        return new Budget(name, new QueryCounter.Counts(statements, entityLoads, collectionFetches), false, request);
+    }
+
+    private static Budget insertBudget(String name, int statements, int entityLoads, int collectionFetches, Request request) {
+        return new Budget(name, new QueryCounter.Counts(statements, entityLoads, collectionFetches), true, request);
+    }
+
+    private interface PersonFactory<Dto> {
+
+        Dto create(int id, String firstName, String lastName, String middleName, int age, int count);
+    }
+
+    /**
+     * Builds the request of an endpoint, creating the entities it changes first.
+     */
+    private interface Request {
+
+        MockHttpServletRequestBuilder prepare(World world);
+    }
+
+    private static final class Budget {
+
+        private final String name;
+
+        private final QueryCounter.Counts counts;
+
+        private final boolean allocatesIds;
+
+        private final Request request;
+
+        private Budget(String name, QueryCounter.Counts counts, boolean allocatesIds, Request request) {
+            this.name = name;
+            this.counts = counts;
+            this.allocatesIds = allocatesIds;
+            this.request = request;
+        }
+
+        /**
+         * Whether the counts match the budget. The ids of new rows come from sequences in blocks, so an
+         * insert that uses up the current block also fetches the next one.
+         */
+        private boolean allows(QueryCounter.Counts used) {
+            return used.equals(counts) || allocatesIds && used.equals(counts.withOneMoreStatement());
+        }
+    }
+
+    private static final class World {
+
+        private final String name;
+
+        private final List<Integer> students;
+
+        private final List<Integer> teachers;
+
+        private final List<Integer> subjects;
+
+        private World(String name, List<Integer> students, List<Integer> teachers, List<Integer> subjects) {
+            this.name = name;
+            this.students = students;
+            this.teachers = teachers;
+            this.subjects = subjects;
+        }
+
+        private int student() {
+            return students.get(0);
+        }
+
+        private int teacher() {
+            return teachers.get(0);
+        }
+
+        private int subject() {
+            return subjects.get(0);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.university.controller;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import javax.persistence.EntityManagerFactory;
+import java.util.Objects;
+
+/**
+ * Counts what Hibernate does while a block of code runs, from the statistics of the session factory.
+ *
+ * <p>The statistics are global, so the counts include the work of other threads, like the streaming of an
+ * export, and are only exact when nothing else uses the database at the same time.
+ */
+final class QueryCounter {
+
+    private final Statistics statistics;
+
+    /**
+     * Creates a counter and turns on the statistics of the session factory.
+     *
+     * @param entityManagerFactory the entity manager factory of the application
+     */
+    QueryCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    /**
+     * Runs a block of code and counts the statements, entity loads and collection fetches it caused.
+     *
+     * @param block the code to run
+     * @return the counts
+     * @throws Exception whatever the block throws
+     */
+    Counts count(Block block) throws Exception {
+        statistics.clear();
+        block.run();
+        return new Counts(statistics.getPrepareStatementCount(), statistics.getEntityLoadCount(), statistics.getCollectionFetchCount());
+    }
+
+    /**
+     * Code whose queries are counted.
+     */
+    interface Block {
+
+        void run() throws Exception;
+    }
+
+    /**
+     * Numbers of JDBC statements prepared, entities loaded and lazy collections fetched.
+     */
+    static final class Counts {
+
+        private final long statements;
+
+        private final long entityLoads;
+
+        private final long collectionFetches;
+
+        Counts(long statements, long entityLoads, long collectionFetches) {
+            this.statements = statements;
+            this.entityLoads = entityLoads;
+            this.collectionFetches = collectionFetches;
+        }
+
+        /**
+         * Returns the same counts with one more statement.
+         */
+        Counts withOneMoreStatement() {
+            return new Counts(statements + 1, entityLoads, collectionFetches);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Counts)) {
+                return false;
+            }
+            Counts counts = (Counts) o;
+            return statements == counts.statements && entityLoads == counts.entityLoads && collectionFetches == counts.collectionFetches;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(statements, entityLoads, collectionFetches);
+        }
+
+        @Override
+        public String toString() {
+            return statements + " statements, " + entityLoads + " entity loads, " + collectionFetches + " collection fetches";
+        }
+    }
+}
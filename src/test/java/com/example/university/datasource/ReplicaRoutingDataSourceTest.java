@@ -0,0 +1,196 @@
+package com.example.university.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for the {@link ReplicaRoutingDataSource} class, with in-memory databases as primary and replicas.
+ *
+ * <p>Each database answers which one it is, and reports the lag that the test gives it.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = database("primary");
+
+    private final DataSource replica1 = database("replica1");
+
+    private final SwitchableDataSource replica2 = new SwitchableDataSource(database("replica2"));
+
+    private final ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica1, replica2),
+            "select seconds from replica_lag", Duration.ofSeconds(10));
+
+    private final LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routing);
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    private final TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+    private final TransactionTemplate readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+    ReplicaRoutingDataSourceTest() {
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        routing.close();
+        for (DataSource database : List.of(primary, replica1, replica2.getTargetDataSource())) {
+            new JdbcTemplate(database).execute("drop all objects");
+        }
+    }
+
+    @Test
+    void getConnection_WhenTransactionIsReadOnly_AlternatesBetweenReplicas() {
+        routing.checkReplicas();
+
+        assertEquals(List.of("replica1", "replica2", "replica1", "replica2"), readOnlyReads(4));
+        assertEquals(2, routing.usableReplicas());
+    }
+
+    @Test
+    void getConnection_WhenTransactionWritesOrIsMissing_UsesPrimary() {
+        routing.checkReplicas();
+
+        assertEquals("primary", readWrite.execute(status -> whoAnswers()));
+        assertEquals("primary", whoAnswers());
+    }
+
+    @Test
+    void getConnection_WhenReplicasWereNotCheckedYet_UsesPrimary() {
+        assertEquals(List.of("primary", "primary"), readOnlyReads(2));
+    }
+
+    @Test
+    void getConnection_WhenReplicaLagsTooMuch_SkipsItUntilItCatchesUp() {
+        setLag(replica1, 11);
+        routing.checkReplicas();
+
+        assertEquals(List.of("replica2", "replica2"), readOnlyReads(2));
+
+        setLag(replica1, 0.5);
+        routing.checkReplicas();
+
+        assertEquals(2, routing.usableReplicas());
+    }
+
+    @Test
+    void getConnection_WhenAllReplicasLagOrFail_UsesPrimary() {
+        setLag(replica1, 60);
+        replica2.down = true;
+        routing.checkReplicas();
+
+        assertEquals(List.of("primary", "primary"), readOnlyReads(2));
+        assertEquals(0, routing.usableReplicas());
+    }
+
+    @Test
+    void getConnection_WhenReplicaGivesNoConnection_UsesNextReplicaAndSkipsIt() {
+        routing.checkReplicas();
+        replica2.down = true;
+
+        assertEquals(List.of("replica1", "replica1", "replica1"), readOnlyReads(3));
+        assertEquals(1, routing.usableReplicas());
+
+        replica2.down = false;
+        routing.checkReplicas();
+
+        assertEquals(2, routing.usableReplicas());
+    }
+
+    @Test
+    void getConnection_WhenTwoLookupsRunInOneRequest_UsesOneReplicaForBoth() {
+        routing.checkReplicas();
+        ReplicaPinningInterceptor interceptor = new ReplicaPinningInterceptor(routing);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/students/1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertEquals(List.of("replica1"), readOnlyReads(1));
+        interceptor.preHandle(request, response, null);
+        // the ETag lookup and the body lookup of a conditional GET, with a write in between
+        assertEquals("replica2", readOnly.execute(status -> whoAnswers()));
+        assertEquals("primary", readWrite.execute(status -> whoAnswers()));
+        assertEquals("replica2", readOnly.execute(status -> whoAnswers()));
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(List.of("replica1", "replica2"), readOnlyReads(2));
+    }
+
+    @Test
+    void getConnection_WhenPinnedReplicaGivesNoConnection_UsesPrimaryUntilUnpinned() {
+        routing.checkReplicas();
+
+        assertEquals(List.of("replica1"), readOnlyReads(1));
+        routing.pinReplica();
+        assertEquals(List.of("replica2"), readOnlyReads(1));
+        replica2.down = true;
+        assertEquals(List.of("primary"), readOnlyReads(1));
+        replica2.down = false;
+        routing.checkReplicas();
+        assertEquals(List.of("primary"), readOnlyReads(1));
+        routing.unpinReplica();
+
+        assertEquals(List.of("replica1", "replica2"), readOnlyReads(2));
+    }
+
+    private List<String> readOnlyReads(int count) {
+        List<String> answers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            answers.add(readOnly.execute(status -> whoAnswers()));
+        }
+        return answers;
+    }
+
+    private String whoAnswers() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private static void setLag(DataSource database, double seconds) {
+        new JdbcTemplate(database).update("update replica_lag set seconds = ?", seconds);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table node (name varchar(20))");
+        jdbcTemplate.update("insert into node values (?)", name);
+        jdbcTemplate.execute("create table replica_lag (seconds double)");
+        jdbcTemplate.update("insert into replica_lag values (0)");
+        return dataSource;
+    }
+
+    /**
+     * Replica that can be taken down: while it is down it gives no connections.
+     */
+    private static final class SwitchableDataSource extends DelegatingDataSource {
+
+        private boolean down;
+
+        private SwitchableDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Replica is down");
+            }
+            return super.getConnection();
+        }
+    }
+}
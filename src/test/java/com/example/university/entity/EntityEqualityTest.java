@@ -0,0 +1,89 @@
+package com.example.university.entity;
+
+import org.junit.jupiter.api.Test;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the id-based {@code equals} and {@code hashCode} of the entities.
+ *
+ * <p>The associations of the entities in the rosters below throw on any access, standing in for
+ * lazy collections that would otherwise be initialized with extra SQL. A roster lookup that looked
+ * at them, as the generated Lombok equality did, fails the test.
+ */
+class EntityEqualityTest {
+
+    private static final int ROSTER_SIZE = 10_000;
+
+    @Test
+    void contains_WhenRosterIsLarge_ShouldNotTouchAssociations() {
+        List<Student> roster = new ArrayList<>();
+        for (int id = 1; id <= ROSTER_SIZE; id++) {
+            roster.add(student(id));
+        }
+
+        assertTrue(roster.contains(student(ROSTER_SIZE)));
+        assertFalse(roster.contains(student(ROSTER_SIZE + 1)));
+        assertTrue(roster.remove(student(ROSTER_SIZE / 2)));
+        assertEquals(ROSTER_SIZE - 1, roster.size());
+    }
+
+    @Test
+    void equals_WhenEntitiesAreNotPersisted_ShouldOnlyBeEqualToThemselves() {
+        Student first = Student.builder().firstName("ilyas").build();
+        Student second = Student.builder().firstName("ilyas").build();
+
+        assertEquals(first, first);
+        assertNotEquals(first, second);
+        assertNotEquals(Teacher.builder().build(), Teacher.builder().build());
+        assertNotEquals(Subject.builder().name("Math").build(), Subject.builder().name("Math").build());
+    }
+
+    @Test
+    void equals_WhenIdsMatch_ShouldIgnoreOtherFieldsAndEntityType() {
+        assertEquals(Teacher.builder().id(1).firstName("ivan").build(), Teacher.builder().id(1).firstName("igor").build());
+        assertEquals(Subject.builder().id(1).name("Math").build(), Subject.builder().id(1).name("Physics").build());
+        assertNotEquals(Subject.builder().id(1).build(), Teacher.builder().id(1).build());
+    }
+
+    @Test
+    void hashCode_WhenIdIsAssignedAfterAdding_ShouldStillFindEntityInSet() {
+        Student student = Student.builder().firstName("ilyas").build();
+        Set<Student> students = new HashSet<>();
+        students.add(student);
+
+        student.setId(42);
+
+        assertTrue(students.contains(student));
+        assertTrue(students.contains(student(42)));
+    }
+
+    private static Student student(int id) {
+        return Student.builder()
+                .id(id)
+                .firstName("student" + id)
+                .teachers(new UntouchableList<>())
+                .subjects(new UntouchableList<>())
+                .build();
+    }
+
+    private static class UntouchableList<T> extends AbstractList<T> {
+
+        @Override
+        public T get(int index) {
+            throw new AssertionError("association was accessed");
+        }
+
+        @Override
+        public int size() {
+            throw new AssertionError("association was accessed");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.university.export;
+
+import com.example.university.dto.SubjectDto;
+import com.example.university.exception.TooManyExportsException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for the {@link DtoExporter} class.
+ */
+class DtoExporterTest {
+
+    private final DtoExporter exporter = new DtoExporter(new ObjectMapper(), 1);
+
+    @AfterEach
+    void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void toResponse_WhenExportIsRunning_RejectsNextExportUntilBodyIsWritten() throws IOException {
+        ResponseEntity<StreamingResponseBody> first = exporter.toResponse(ExportFormat.CSV, "subjects", SubjectDto.class,
+                sink -> sink.accept(new SubjectDto(1, "Math", 3)));
+
+        assertThrows(TooManyExportsException.class, () -> exporter.toResponse(ExportFormat.CSV, "subjects", SubjectDto.class, sink -> {
+        }));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        first.getBody().writeTo(out);
+        assertEquals("id,name,studentCount\n1,Math,3\n", out.toString());
+        exporter.toResponse(ExportFormat.CSV, "subjects", SubjectDto.class, sink -> {
+        });
+    }
+
+    @Test
+    void toResponse_WhenWritingFails_GivesPermitBack() {
+        ResponseEntity<StreamingResponseBody> failing = exporter.toResponse(ExportFormat.NDJSON, "subjects", SubjectDto.class,
+                sink -> sink.accept(new SubjectDto(1, "Math", 3)));
+
+        assertThrows(IOException.class, () -> failing.getBody().writeTo(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Client went away");
+            }
+        }));
+        exporter.toResponse(ExportFormat.NDJSON, "subjects", SubjectDto.class, sink -> {
+        });
+    }
+
+    @Test
+    void afterCompletion_WhenBodyNeverRuns_GivesPermitBackOnce() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        ResponseEntity<StreamingResponseBody> timedOut = exporter.toResponse(ExportFormat.CSV, "subjects", SubjectDto.class,
+                sink -> sink.accept(new SubjectDto(1, "Math", 3)));
+
+        exporter.afterCompletion(new ServletWebRequest(request), () -> null);
+        timedOut.getBody().writeTo(new ByteArrayOutputStream());
+        exporter.afterCompletion(new ServletWebRequest(request), () -> null);
+
+        RequestContextHolder.resetRequestAttributes();
+        exporter.toResponse(ExportFormat.CSV, "subjects", SubjectDto.class, sink -> {
+        });
+        assertThrows(TooManyExportsException.class, () -> exporter.toResponse(ExportFormat.CSV, "subjects", SubjectDto.class, sink -> {
+        }));
+    }
+}
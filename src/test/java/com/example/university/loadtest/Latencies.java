@@ -0,0 +1,43 @@
+package com.example.university.loadtest;
+
+import java.util.Collection;
+
+/**
+ * Latencies of the responses measured by a load test, with their percentiles.
+ */
+final class Latencies {
+
+    private final long[] sorted;
+
+    /**
+     * Creates the latencies from the measured durations.
+     *
+     * @param nanos the durations in nanoseconds, in any order
+     */
+    Latencies(Collection<Long> nanos) {
+        this.sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    /**
+     * Returns the number of measured responses.
+     *
+     * @return the number of responses
+     */
+    int count() {
+        return sorted.length;
+    }
+
+    /**
+     * Returns the latency that the given percentage of the responses didn't exceed, by the nearest-rank method.
+     *
+     * @param percentile the percentage, {@code 100} for the maximum
+     * @return the latency in milliseconds, {@code 0} if nothing was measured
+     */
+    double percentile(double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
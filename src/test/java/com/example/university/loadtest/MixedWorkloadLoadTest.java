@@ -0,0 +1,340 @@
+package com.example.university.loadtest;
+
+import com.example.university.UniversityApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Load test that drives a mix of reads and enrollments at a fixed arrival rate.
+ *
+ * <p>The test is only enabled with {@code -DloadTest=true} and is configured with system properties:
+ * <pre>
+ * mvn test -Dtest=MixedWorkloadLoadTest -DloadTest=true -DloadTest.rate=1000 -DloadTest.seconds=60 \
+ *     -DloadTest.mix=student=40,teachers=20,subjects=20,enroll=20
+ * </pre>
+ *
+ * <p>By default the application runs on the in-memory database of the {@code embedded} profile, so the test
+ * needs nothing but a JDK. With {@code -DloadTest.database=local} it runs against the PostgreSQL database
+ * configured in {@code application.yml} instead, and deletes the seeded rows afterwards. The database is seeded
+ * over HTTP with {@code loadTest.students} students and {@code loadTest.teachers} teachers, each teaching two
+ * subjects, and every student gets three teachers and three subjects.
+ *
+ * <p>The requests are sent on a fixed schedule of {@code loadTest.rate} requests per second, whether the earlier
+ * ones have been answered or not, like independent users would send them. Each request picks a workload at
+ * random by the weights of {@code loadTest.mix}:
+ * <ul>
+ *     <li>{@code student}: {@code GET /api/students/{id}}</li>
+ *     <li>{@code teachers}: {@code GET /api/students/{id}/teachers}</li>
+ *     <li>{@code subjects}: {@code GET /api/students/{id}/subjects}</li>
+ *     <li>{@code enroll}: {@code PUT /api/students/{id}/subjects} with a subject the student doesn't have yet</li>
+ * </ul>
+ * The latency of a request is measured from the time it was scheduled, not from the time it was sent, so a
+ * server that falls behind shows its queueing delay instead of slowing down the test. The throughput and the
+ * latency percentiles of the requests scheduled after a warm-up are printed per route and in total.
+ */
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class MixedWorkloadLoadTest {
+
+    private static final int RATE = Integer.getInteger("loadTest.rate", 500);
+
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("loadTest.warmupSeconds", 10));
+
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("loadTest.seconds", 30));
+
+    private static final String MIX = System.getProperty("loadTest.mix", "student=50,teachers=20,subjects=20,enroll=10");
+
+    private static final boolean LOCAL_DATABASE = "local".equals(System.getProperty("loadTest.database", "embedded"));
+
+    private static final int STUDENTS = Integer.getInteger("loadTest.students", 10_000);
+
+    private static final int TEACHERS = Integer.getInteger("loadTest.teachers", 200);
+
+    private static final int SUBJECTS_PER_TEACHER = 2;
+
+    private static final int TEACHERS_PER_STUDENT = 3;
+
+    private static final int SUBJECTS_PER_STUDENT = 3;
+
+    private static final int SEED_CHUNK = 1000;
+
+    private static final String MARKER = "loadtest";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void mixedWorkload() throws Exception {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        SpringApplicationBuilder application = new SpringApplicationBuilder(UniversityApplication.class)
+                .properties("server.port=0", "spring.jpa.show-sql=false");
+        if (!LOCAL_DATABASE) {
+            application.profiles("embedded");
+        }
+        try (ConfigurableApplicationContext context = application.run()) {
+            URI base = URI.create("http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort());
+            try {
+                Seed seed = seed(client, base);
+                int failed = report(drive(client, seed, mix()));
+                assertEquals(0, failed);
+            } finally {
+                if (LOCAL_DATABASE) {
+                    JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+                    jdbc.update("delete from subjects where name like ?", MARKER + " %");
+                    jdbc.update("delete from students where last_name = ?", MARKER);
+                    jdbc.update("delete from teachers where last_name = ?", MARKER);
+                }
+            }
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private Seed seed(HttpClient client, URI base) throws IOException, InterruptedException {
+        List<Integer> studentIds = new ArrayList<>(STUDENTS);
+        for (int from = 0; from < STUDENTS; from += SEED_CHUNK) {
+            StringBuilder students = new StringBuilder("[");
+            for (int i = from; i < Math.min(from + SEED_CHUNK, STUDENTS); i++) {
+                students.append(i == from ? "" : ",")
+                        .append("{\"firstName\":\"s").append(i).append("\",\"lastName\":\"" + MARKER + "\",\"middleName\":\"m\",\"age\":20}");
+            }
+            post(client, base.resolve("/api/students/bulk"), students.append("]").toString()).forEach(s -> studentIds.add(s.get("id").asInt()));
+        }
+        StringBuilder teachers = new StringBuilder("[");
+        for (int i = 0; i < TEACHERS; i++) {
+            teachers.append(i == 0 ? "" : ",")
+                    .append("{\"firstName\":\"t").append(i).append("\",\"lastName\":\"" + MARKER + "\",\"middleName\":\"m\",\"age\":40}");
+        }
+        List<Integer> teacherIds = new ArrayList<>(TEACHERS);
+        List<Integer> subjectIds = new ArrayList<>(TEACHERS * SUBJECTS_PER_TEACHER);
+        for (JsonNode teacher : post(client, base.resolve("/api/teachers/bulk"), teachers.append("]").toString())) {
+            int teacherId = teacher.get("id").asInt();
+            teacherIds.add(teacherId);
+            StringBuilder subjects = new StringBuilder("[");
+            for (int i = 0; i < SUBJECTS_PER_TEACHER; i++) {
+                subjects.append(i == 0 ? "" : ",").append("{\"name\":\"" + MARKER + " ").append(subjectIds.size() + i).append("\"}");
+            }
+            post(client, base.resolve("/api/subjects/bulk?teacherId=" + teacherId), subjects.append("]").toString())
+                    .forEach(s -> subjectIds.add(s.get("id").asInt()));
+        }
+        for (Map.Entry<Integer, List<Integer>> roster : rosters(studentIds, teacherIds, TEACHERS_PER_STUDENT).entrySet()) {
+            post(client, base.resolve("/api/teachers/" + roster.getKey() + "/students"), roster.getValue().toString());
+        }
+        for (Map.Entry<Integer, List<Integer>> roster : rosters(studentIds, subjectIds, SUBJECTS_PER_STUDENT).entrySet()) {
+            post(client, base.resolve("/api/subjects/" + roster.getKey() + "/students"), roster.getValue().toString());
+        }
+        return new Seed(base, studentIds, subjectIds);
+    }
+
+    /**
+     * Gives every student {@code perStudent} consecutive owners, so the owners get equal rosters.
+     */
+    private static Map<Integer, List<Integer>> rosters(List<Integer> studentIds, List<Integer> ownerIds, int perStudent) {
+        Map<Integer, List<Integer>> rosters = new HashMap<>();
+        for (int i = 0; i < studentIds.size(); i++) {
+            for (int k = 0; k < perStudent; k++) {
+                rosters.computeIfAbsent(ownerIds.get((i * perStudent + k) % ownerIds.size()), o -> new ArrayList<>()).add(studentIds.get(i));
+            }
+        }
+        return rosters;
+    }
+
+    private JsonNode post(HttpClient client, URI uri, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(2, response.statusCode() / 100, response.body());
+        return objectMapper.readTree(response.body());
+    }
+
+    /**
+     * Parses {@code loadTest.mix} into a table of workloads to draw from, one entry per unit of weight.
+     */
+    private static List<Workload> mix() {
+        List<Workload> mix = new ArrayList<>();
+        for (String entry : MIX.split(",")) {
+            String[] nameAndWeight = entry.trim().split("=");
+            Workload workload = Workload.valueOf(nameAndWeight[0].trim().toUpperCase());
+            for (int i = Integer.parseInt(nameAndWeight[1].trim()); i > 0; i--) {
+                mix.add(workload);
+            }
+        }
+        return mix;
+    }
+
+    private static Run drive(HttpClient client, Seed seed, List<Workload> mix) {
+        Map<Workload, Route> routes = new EnumMap<>(Workload.class);
+        for (Workload workload : Workload.values()) {
+            routes.put(workload, new Route());
+        }
+        long interval = 1_000_000_000L / RATE;
+        long start = System.nanoTime();
+        long measureFrom = start + WARMUP.toNanos();
+        long until = measureFrom + DURATION.toNanos();
+        AtomicLong lastResponse = new AtomicLong(measureFrom);
+        List<CompletableFuture<?>> responses = new ArrayList<>();
+        for (long sequence = 0; start + sequence * interval < until; sequence++) {
+            long scheduled = start + sequence * interval;
+            LockSupport.parkNanos(scheduled - System.nanoTime());
+            Workload workload = mix.get(ThreadLocalRandom.current().nextInt(mix.size()));
+            HttpRequest request = workload.request(seed, sequence).timeout(Duration.ofSeconds(60)).build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).handle((response, error) -> {
+                if (scheduled >= measureFrom) {
+                    long end = System.nanoTime();
+                    routes.get(workload).record(end - scheduled, error == null && response.statusCode() / 100 == 2);
+                    lastResponse.accumulateAndGet(end, Math::max);
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0])).join();
+        return new Run(routes, (lastResponse.get() - measureFrom) / 1e9);
+    }
+
+    /**
+     * Prints the results; the throughput is what the server answered until the last response, below the rate
+     * when the server couldn't keep up.
+     */
+    private static int report(Run run) {
+        System.out.printf("%d requests/s scheduled for %ds, mix %s%n", RATE, DURATION.toSeconds(), MIX);
+        ConcurrentLinkedQueue<Long> all = new ConcurrentLinkedQueue<>();
+        int failed = 0;
+        for (Map.Entry<Workload, Route> entry : run.routes.entrySet()) {
+            Route route = entry.getValue();
+            if (!route.latencies.isEmpty()) {
+                print(entry.getKey().route, new Latencies(route.latencies), route.failed.get(), run.seconds);
+                all.addAll(route.latencies);
+                failed += route.failed.get();
+            }
+        }
+        print("total", new Latencies(all), failed, run.seconds);
+        return failed;
+    }
+
+    private static void print(String route, Latencies latencies, int failed, double seconds) {
+        System.out.printf("%-36s %7d requests %8.1f requests/s, latency ms p50 %7.1f p90 %7.1f p99 %7.1f p99.9 %7.1f max %7.1f, %d failed%n",
+                route, latencies.count(), latencies.count() / seconds, latencies.percentile(50), latencies.percentile(90),
+                latencies.percentile(99), latencies.percentile(99.9), latencies.percentile(100), failed);
+    }
+
+    private enum Workload {
+
+        STUDENT("GET /api/students/{id}") {
+            @Override
+            HttpRequest.Builder request(Seed seed, long sequence) {
+                return HttpRequest.newBuilder(seed.base.resolve("/api/students/" + seed.randomStudent()));
+            }
+        },
+
+        TEACHERS("GET /api/students/{id}/teachers") {
+            @Override
+            HttpRequest.Builder request(Seed seed, long sequence) {
+                return HttpRequest.newBuilder(seed.base.resolve("/api/students/" + seed.randomStudent() + "/teachers"));
+            }
+        },
+
+        SUBJECTS("GET /api/students/{id}/subjects") {
+            @Override
+            HttpRequest.Builder request(Seed seed, long sequence) {
+                return HttpRequest.newBuilder(seed.base.resolve("/api/students/" + seed.randomStudent() + "/subjects"));
+            }
+        },
+
+        /**
+         * Enrolls the students in turn, each time in the subject after the ones it has, so no enrollment is repeated.
+         */
+        ENROLL("PUT /api/students/{id}/subjects") {
+            @Override
+            HttpRequest.Builder request(Seed seed, long sequence) {
+                int student = (int) (sequence % seed.studentIds.size());
+                long round = sequence / seed.studentIds.size();
+                int subject = (int) ((student * SUBJECTS_PER_STUDENT + SUBJECTS_PER_STUDENT + round) % seed.subjectIds.size());
+                URI uri = seed.base.resolve("/api/students/" + seed.studentIds.get(student) + "/subjects?setSubject=" + seed.subjectIds.get(subject));
+                return HttpRequest.newBuilder(uri).PUT(HttpRequest.BodyPublishers.noBody());
+            }
+        };
+
+        private final String route;
+
+        Workload(String route) {
+            this.route = route;
+        }
+
+        abstract HttpRequest.Builder request(Seed seed, long sequence);
+    }
+
+    private static final class Seed {
+
+        private final URI base;
+
+        private final List<Integer> studentIds;
+
+        private final List<Integer> subjectIds;
+
+        private Seed(URI base, List<Integer> studentIds, List<Integer> subjectIds) {
+            this.base = base;
+            this.studentIds = studentIds;
+            this.subjectIds = subjectIds;
+        }
+
+        private int randomStudent() {
+            return studentIds.get(ThreadLocalRandom.current().nextInt(studentIds.size()));
+        }
+    }
+
+    private static final class Run {
+
+        private final Map<Workload, Route> routes;
+
+        private final double seconds;
+
+        private Run(Map<Workload, Route> routes, double seconds) {
+            this.routes = routes;
+            this.seconds = seconds;
+        }
+    }
+
+    private static final class Route {
+
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private void record(long nanos, boolean succeeded) {
+            latencies.add(nanos);
+            if (!succeeded) {
+                failed.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.university.loadtest;
+
+import com.example.university.UniversityApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Load test comparing request handling on platform threads with virtual threads.
+ *
+ * <p>The test runs against the PostgreSQL database configured in {@code application.yml}, so it is
+ * only enabled with {@code -DloadTest=true}:
+ * <pre>
+ * mvn test -Dtest=ThreadModeLoadTest -DloadTest=true -DloadTest.clients=5000 -DloadTest.seconds=30
+ * </pre>
+ *
+ * <p>Each test starts the application on a random port, once with the default pool of platform
+ * threads and once with {@code university.virtual-threads.enabled}. It seeds a teacher with students
+ * and lets every client request the teachers of a random student in a closed loop, one request at a
+ * time. The responses that arrive after a warm-up, during the measured period, give the throughput
+ * and the latency percentiles that are printed. The seeded rows are deleted afterwards. The virtual
+ * thread test is skipped on Java versions before 21.
+ */
+@EnabledIfSystemProperty(named = "loadTest", matches = "true")
+class ThreadModeLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("loadTest.clients", 5000);
+
+    private static final Duration WARMUP = Duration.ofSeconds(Integer.getInteger("loadTest.warmupSeconds", 10));
+
+    private static final Duration DURATION = Duration.ofSeconds(Integer.getInteger("loadTest.seconds", 30));
+
+    private static final int STUDENTS = 1000;
+
+    private static final String MARKER = "loadtest";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void platformThreads() throws Exception {
+        run(false);
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+        run(true);
+    }
+
+    private void run(boolean virtualThreads) throws Exception {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(UniversityApplication.class)
+                .properties("server.port=0", "spring.jpa.show-sql=false", "university.virtual-threads.enabled=" + virtualThreads)
+                .run()) {
+            URI base = URI.create("http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort());
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            try {
+                List<URI> uris = seed(client, base);
+                Result result = drive(client, uris);
+                System.out.printf("%s threads, %d clients: %d requests in %ds, %.0f requests/s, latency ms p50 %.1f p90 %.1f p99 %.1f "
+                                + "p99.9 %.1f max %.1f, %d failed%n",
+                        virtualThreads ? "virtual" : "platform", CLIENTS, result.latencies.count(), DURATION.toSeconds(),
+                        result.latencies.count() / (double) DURATION.toSeconds(), result.latencies.percentile(50),
+                        result.latencies.percentile(90), result.latencies.percentile(99), result.latencies.percentile(99.9),
+                        result.latencies.percentile(100), result.failed);
+                assertEquals(0, result.failed);
+            } finally {
+                jdbc.update("delete from students where last_name = ?", MARKER);
+                jdbc.update("delete from teachers where last_name = ?", MARKER);
+            }
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private List<URI> seed(HttpClient client, URI base) throws IOException, InterruptedException {
+        StringBuilder students = new StringBuilder("[");
+        for (int i = 0; i < STUDENTS; i++) {
+            students.append(i == 0 ? "" : ",")
+                    .append("{\"firstName\":\"s").append(i).append("\",\"lastName\":\"" + MARKER + "\",\"middleName\":\"m\",\"age\":20}");
+        }
+        JsonNode created = post(client, base.resolve("/api/students/bulk"), students.append("]").toString());
+        JsonNode teacher = post(client, base.resolve("/api/teachers"),
+                "{\"firstName\":\"t\",\"lastName\":\"" + MARKER + "\",\"middleName\":\"m\",\"age\":40}");
+        List<URI> uris = new ArrayList<>();
+        StringBuilder ids = new StringBuilder("[");
+        for (JsonNode student : created) {
+            ids.append(ids.length() == 1 ? "" : ",").append(student.get("id").asInt());
+            uris.add(base.resolve("/api/students/" + student.get("id").asInt() + "/teachers"));
+        }
+        post(client, base.resolve("/api/teachers/" + teacher.get("id").asInt() + "/students"), ids.append("]").toString());
+        return uris;
+    }
+
+    private JsonNode post(HttpClient client, URI uri, String json) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(2, response.statusCode() / 100, response.body());
+        return objectMapper.readTree(response.body());
+    }
+
+    private Result drive(HttpClient client, List<URI> uris) {
+        long measureFrom = System.nanoTime() + WARMUP.toNanos();
+        long until = measureFrom + DURATION.toNanos();
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger failed = new AtomicInteger();
+        CompletableFuture<?>[] clients = new CompletableFuture<?>[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            next(client, uris, measureFrom, until, latencies, failed, done);
+            clients[i] = done;
+        }
+        CompletableFuture.allOf(clients).join();
+        return new Result(new Latencies(latencies), failed.get());
+    }
+
+    private void next(HttpClient client, List<URI> uris, long measureFrom, long until, ConcurrentLinkedQueue<Long> latencies,
+                      AtomicInteger failed, CompletableFuture<Void> done) {
+        HttpRequest request = HttpRequest.newBuilder(uris.get(ThreadLocalRandom.current().nextInt(uris.size())))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long end = System.nanoTime();
+            if (end >= measureFrom && end <= until) {
+                latencies.add(end - start);
+                if (error != null || response.statusCode() != 200) {
+                    failed.incrementAndGet();
+                }
+            }
+            if (end < until) {
+                next(client, uris, measureFrom, until, latencies, failed, done);
+            } else {
+                done.complete(null);
+            }
+        });
+    }
+
+    private static final class Result {
+
+        private final Latencies latencies;
+
+        private final int failed;
+
+        private Result(Latencies latencies, int failed) {
+            this.latencies = latencies;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.university.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the {@link HibernateRequestMetrics} class.
+ */
+class HibernateRequestMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final HibernateRequestMetrics metrics = new HibernateRequestMetrics(registry);
+
+    private final HibernateRequestMetrics.StatementCounter counter = new HibernateRequestMetrics.StatementCounter();
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Test
+    void afterCompletion_WhenRequestRanQueries_RecordsCountsPerRoute() {
+        MockHttpServletRequest request = request("/api/v1/teachers/{id}/students");
+
+        metrics.preHandle(request, response, null);
+        counter.jdbcExecuteStatementStart();
+        counter.jdbcExecuteStatementStart();
+        counter.jdbcExecuteBatchStart();
+        metrics.onPostLoad(null);
+        metrics.onInitializeCollection(null);
+        metrics.afterCompletion(request, response, null, null);
+
+        assertEquals(3, summary(HibernateRequestMetrics.STATEMENTS, "/api/v1/teachers/{id}/students").totalAmount());
+        assertEquals(1, summary(HibernateRequestMetrics.ENTITY_LOADS, "/api/v1/teachers/{id}/students").totalAmount());
+        assertEquals(1, summary(HibernateRequestMetrics.COLLECTION_FETCHES, "/api/v1/teachers/{id}/students").totalAmount());
+    }
+
+    @Test
+    void afterCompletion_WhenQueriesRanOutsideRequest_DoesNotCountThem() {
+        counter.jdbcExecuteStatementStart();
+        metrics.onPostLoad(null);
+
+        MockHttpServletRequest request = request("/api/v1/students");
+        metrics.preHandle(request, response, null);
+        counter.jdbcExecuteStatementStart();
+        metrics.afterCompletion(request, response, null, null);
+        counter.jdbcExecuteStatementStart();
+
+        assertEquals(1, summary(HibernateRequestMetrics.STATEMENTS, "/api/v1/students").totalAmount());
+        assertEquals(0, summary(HibernateRequestMetrics.ENTITY_LOADS, "/api/v1/students").totalAmount());
+        assertEquals(1, summary(HibernateRequestMetrics.STATEMENTS, "/api/v1/students").count());
+    }
+
+    @Test
+    void afterConcurrentHandlingStarted_WhenRequestIsAsync_RecordsNothing() {
+        MockHttpServletRequest request = request("/api/v1/students/export");
+
+        metrics.preHandle(request, response, null);
+        counter.jdbcExecuteStatementStart();
+        metrics.afterConcurrentHandlingStarted(request, response, null);
+        metrics.afterCompletion(request, response, null, null);
+
+        assertTrue(registry.find(HibernateRequestMetrics.STATEMENTS).summaries().isEmpty());
+    }
+
+    private static MockHttpServletRequest request(String pattern) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", pattern);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, pattern);
+        return request;
+    }
+
+    private DistributionSummary summary(String name, String uri) {
+        return registry.get(name).tag("method", "GET").tag("uri", uri).summary();
+    }
+}
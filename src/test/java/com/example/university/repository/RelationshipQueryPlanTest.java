@@ -0,0 +1,174 @@
+package com.example.university.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Query plan regression check for the relationship queries.
+ *
+ * <p>The test runs against the PostgreSQL database configured in {@code application.yml}, so it is
+ * only enabled with {@code -DqueryPlans=true}:
+ * <pre>
+ * mvn test -Dtest=RelationshipQueryPlanTest -DqueryPlans=true
+ * </pre>
+ *
+ * <p>Each test seeds students, teachers, subjects and enrollments, calls a repository method and
+ * runs {@code EXPLAIN} on every statement Hibernate sent for it, with sequential scans disabled.
+ * When no index can serve a lookup the planner then falls back to a sequential scan, or to a full
+ * scan of an index whose leading column is not in the condition, so such a scan node means an index
+ * is missing. The lookups PostgreSQL runs for the {@code ON DELETE CASCADE} foreign keys are
+ * checked the same way. Everything is rolled back.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.university.repository.RelationshipQueryPlanTest$SqlRecorder")
+@EnabledIfSystemProperty(named = "queryPlans", matches = "true")
+@Transactional
+class RelationshipQueryPlanTest {
+
+    private static final int STUDENTS = 2000;
+
+    private static final int TEACHERS = 100;
+
+    private static final Set<String> INDEX_SCANS = Set.of("Index Scan", "Index Only Scan", "Bitmap Index Scan");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private SubjectRepository subjectRepository;
+
+    private int studentId;
+
+    private int teacherId;
+
+    private int subjectId;
+
+    @BeforeEach
+    void seed() {
+        int firstStudent = jdbc.queryForObject("select coalesce(max(id), 0) + 1 from students", Integer.class);
+        int firstTeacher = jdbc.queryForObject("select coalesce(max(id), 0) + 1 from teachers", Integer.class);
+        int firstSubject = jdbc.queryForObject("select coalesce(max(id), 0) + 1 from subjects", Integer.class);
+        jdbc.update("insert into students (id, first_name, last_name, middle_name, age) "
+                + "select i, 's' || i, 'plan', 'test', 20 from generate_series(?, ?) i", firstStudent, firstStudent + STUDENTS - 1);
+        jdbc.update("insert into teachers (id, first_name, last_name, middle_name, age) "
+                + "select i, 't' || i, 'plan', 'test', 40 from generate_series(?, ?) i", firstTeacher, firstTeacher + TEACHERS - 1);
+        jdbc.update("insert into subjects (id, name, teacher_id) "
+                + "select ? + i, 'subject ' || i, ? + i from generate_series(0, ?) i", firstSubject, firstTeacher, TEACHERS - 1);
+        jdbc.update("insert into teacher_student (teacher_id, student_id) "
+                + "select ? + s % ?, s from generate_series(?, ?) s", firstTeacher, TEACHERS, firstStudent, firstStudent + STUDENTS - 1);
+        jdbc.update("insert into student_subject (student_id, subject_id) "
+                + "select s, ? + s % ? from generate_series(?, ?) s", firstSubject, TEACHERS, firstStudent, firstStudent + STUDENTS - 1);
+        jdbc.execute("analyze students, teachers, subjects, teacher_student, student_subject");
+        jdbc.execute("set local enable_seqscan = off");
+        studentId = firstStudent + STUDENTS / 2;
+        teacherId = firstTeacher + TEACHERS / 2;
+        subjectId = firstSubject + TEACHERS / 2;
+        SqlRecorder.STATEMENTS.clear();
+    }
+
+    @Test
+    void findStudentsOfTeacher_ShouldUseIndexes() {
+        studentRepository.findStudentsOfTeacher(teacherId);
+        assertRecordedStatementsUseIndexes(teacherId);
+    }
+
+    @Test
+    void findTeachersOfStudent_ShouldUseIndexes() {
+        teacherRepository.findTeachersOfStudent(studentId);
+        assertRecordedStatementsUseIndexes(studentId);
+    }
+
+    @Test
+    void findSubjectsOfStudent_ShouldUseIndexes() {
+        subjectRepository.findSubjectsOfStudent(studentId);
+        assertRecordedStatementsUseIndexes(studentId);
+    }
+
+    @Test
+    void findSubjectsOfTeacher_ShouldUseIndexes() {
+        subjectRepository.findSubjectsOfTeacher(teacherId);
+        assertRecordedStatementsUseIndexes(teacherId);
+    }
+
+    @Test
+    void cascadeDeletes_ShouldUseIndexes() {
+        assertUsesIndexes("delete from teacher_student where student_id = ?", studentId);
+        assertUsesIndexes("delete from teacher_student where teacher_id = ?", teacherId);
+        assertUsesIndexes("delete from student_subject where subject_id = ?", subjectId);
+        assertUsesIndexes("delete from student_subject where student_id = ?", studentId);
+        assertUsesIndexes("select id from subjects where teacher_id = ?", teacherId);
+    }
+
+    private void assertRecordedStatementsUseIndexes(int id) {
+        List<String> statements = new ArrayList<>(SqlRecorder.STATEMENTS);
+        assertFalse(statements.isEmpty(), "no statement was recorded");
+        for (String sql : statements) {
+            assertUsesIndexes(sql, id);
+        }
+    }
+
+    private void assertUsesIndexes(String sql, int id) {
+        String plan = jdbc.queryForObject("explain (format json) " + sql, String.class, id);
+        try {
+            assertNoFullScan(objectMapper.readTree(plan).get(0).get("Plan"), sql, plan);
+        } catch (JsonProcessingException e) {
+            fail("Unreadable plan of\n" + sql + "\n" + plan, e);
+        }
+    }
+
+    private void assertNoFullScan(JsonNode node, String sql, String plan) {
+        String type = node.get("Node Type").asText();
+        boolean fullScan = type.equals("Seq Scan")
+                || INDEX_SCANS.contains(type) && !bindsLeadingColumn(node.get("Index Name").asText(), node.path("Index Cond").asText());
+        if (fullScan) {
+            fail("Full scan of " + node.path("Relation Name").asText(node.path("Index Name").asText())
+                    + " in the plan of\n" + sql + "\n" + plan);
+        }
+        node.path("Plans").forEach(child -> assertNoFullScan(child, sql, plan));
+    }
+
+    private boolean bindsLeadingColumn(String index, String indexCond) {
+        String column = jdbc.queryForObject("select a.attname from pg_index i "
+                + "join pg_class c on c.oid = i.indexrelid "
+                + "join pg_attribute a on a.attrelid = i.indrelid and a.attnum = i.indkey[0] "
+                + "where c.relname = ?", String.class, index);
+        return Pattern.compile("\\((\\w+\\.)?" + column + " = ").matcher(indexCond).find();
+    }
+
+    /**
+     * Records the statements Hibernate prepares, so their plans can be checked.
+     */
+    public static class SqlRecorder implements StatementInspector {
+
+        static final List<String> STATEMENTS = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
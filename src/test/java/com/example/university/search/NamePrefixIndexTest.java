@@ -0,0 +1,100 @@
+package com.example.university.search;
+
+import com.example.university.dto.StudentDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the {@link NamePrefixIndex} class.
+ */
+class NamePrefixIndexTest {
+
+    private final NamePrefixIndex<StudentDto> index = new NamePrefixIndex<>(StudentDto::getId,
+            s -> Arrays.asList(s.getFirstName(), s.getLastName(), s.getMiddleName()));
+
+    @Test
+    void search_WhenNamesStartWithPrefix_ReturnsMatchesOrderedByNameIgnoringCase() {
+        index.put(student(1, "Ivan", "Petrov", "Ivanovich"));
+        index.put(student(2, "Iva", "Sidorova", null));
+        index.put(student(3, "Petr", "Ivanov", "Sergeevich"));
+        index.put(student(4, "Anna", "Smirnova", "Olegovna"));
+
+        assertEquals(List.of(2, 1, 3), ids(index.search("iva", 10)));
+        assertEquals(List.of(2, 1), ids(index.search(" IVA", 2)));
+        assertEquals(List.of(3, 1), ids(index.search("Pet", 10)));
+        assertTrue(index.search("ivz", 10).isEmpty());
+    }
+
+    @Test
+    void put_WhenStudentIsRenamed_ReplacesOldNames() {
+        index.put(student(7, "Mixail", "Jekov", "Alekseivich"));
+        index.put(student(7, "Nikolay", "Jekov", null));
+
+        assertTrue(index.search("mix", 10).isEmpty());
+        assertTrue(index.search("alek", 10).isEmpty());
+        assertEquals(List.of(7), ids(index.search("nik", 10)));
+        assertEquals(List.of(7), ids(index.search("jek", 10)));
+    }
+
+    @Test
+    void remove_WhenStudentIsDeleted_ReturnsNoMatches() {
+        index.put(student(70_000, "Ilyas", "Nasirov", "Urakbayevich"));
+        assertEquals(List.of(70_000), ids(index.search("nas", 10)));
+
+        index.remove(70_000);
+
+        assertTrue(index.search("nas", 10).isEmpty());
+    }
+
+    @Test
+    void search_WhenPendingKeysWereMerged_FindsOldAndNewNamesInOrder() {
+        List<StudentDto> students = IntStream.rangeClosed(1, 2000)
+                .mapToObj(id -> student(id, "Name" + id, "Surname", null))
+                .collect(Collectors.toList());
+        index.putAll(students);
+        index.put(student(5, "Renamed", "Surname", null));
+        index.remove(7);
+        index.put(student(3000, "Name1", "Other", null));
+
+        assertEquals(List.of(1, 3000, 10, 100, 1000, 1001), ids(index.search("name1", 6)));
+        assertTrue(index.search("name5", 2000).containsAll(List.of(50, 500)));
+        assertFalse(index.search("name5", 2000).contains(5));
+        assertFalse(index.search("name7", 2000).contains(7));
+        assertEquals(List.of(5), ids(index.search("ren", 10)));
+        assertEquals(1999, index.search("surname", 2000).size());
+    }
+
+    @Test
+    void put_WhenInsideTransaction_AppliesOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.put(student(1, "Ivan", "Ivanov", "Ivanovich"));
+            index.putAll(List.of(student(2, "Ilyas", "Nasirov", "Urakbayevich")));
+            assertTrue(index.search("i", 10).isEmpty());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(List.of(2, 1), ids(index.search("i", 10)));
+    }
+
+    private static StudentDto student(int id, String firstName, String lastName, String middleName) {
+        return StudentDto.builder().id(id).firstName(firstName).lastName(lastName).middleName(middleName).age(20).build();
+    }
+
+    private static List<Integer> ids(Set<Integer> ids) {
+        return new ArrayList<>(ids);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.university.service;
+
+import com.example.university.config.CacheConfig;
+import com.example.university.repository.StudentRepository;
+import com.example.university.repository.SubjectRepository;
+import com.example.university.repository.TeacherRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the {@link RosterCountReconciler} class.
+ */
+@ExtendWith(MockitoExtension.class)
+class RosterCountReconcilerTest {
+
+    private static final PageRequest BATCH = PageRequest.of(0, RosterCountReconciler.BATCH_SIZE);
+
+    @InjectMocks
+    private RosterCountReconciler reconciler;
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private TeacherRepository teacherRepository;
+
+    @Mock
+    private SubjectRepository subjectRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache cache;
+
+    @Test
+    void reconcile_WhenCountersDrifted_RecountsOnlyDriftedRowsBatchByBatch() {
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(studentRepository.findIdsAfter(0, BATCH)).thenReturn(List.of(1, 2));
+        when(studentRepository.findIdsAfter(2, BATCH)).thenReturn(List.of(3));
+        when(studentRepository.findIdsAfter(3, BATCH)).thenReturn(List.of());
+        when(studentRepository.findSubjectCountDrift(List.of(1, 2))).thenReturn(List.of(2));
+        when(studentRepository.findSubjectCountDrift(List.of(3))).thenReturn(List.of());
+        when(subjectRepository.findIdsAfter(0, BATCH)).thenReturn(List.of(5));
+        when(subjectRepository.findStudentCountDrift(List.of(5))).thenReturn(List.of(5));
+        when(subjectRepository.findIdsAfter(5, BATCH)).thenReturn(List.of());
+        when(cacheManager.getCache(CacheConfig.STUDENTS)).thenReturn(cache);
+        when(cacheManager.getCache(CacheConfig.SUBJECTS)).thenReturn(cache);
+
+        assertEquals(2, reconciler.reconcile());
+        verify(studentRepository, times(1)).recountSubjects(List.of(2));
+        verify(studentRepository, never()).recountSubjects(List.of(3));
+        verify(subjectRepository, times(1)).recountStudents(List.of(5));
+        verify(cache, times(1)).evict(2);
+        verify(cache, times(1)).evict(5);
+        verify(studentRepository, never()).findDtosByIds(any());
+        verify(teacherRepository, never()).recountStudents(any());
+    }
+
+    @Test
+    void reconcile_WhenTablesAreEmpty_ShouldNotOpenTransactions() {
+        assertEquals(0, reconciler.reconcile());
+        verify(transactionTemplate, never()).execute(any());
+    }
+}
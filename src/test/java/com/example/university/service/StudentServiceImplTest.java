@@ -1,34 +1,54 @@
 package com.example.university.service;
 
+import com.example.university.config.CacheConfig;
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.StudentDto;
 import com.example.university.dto.SubjectDto;
 import com.example.university.dto.TeacherDto;
+import com.example.university.dto.Versioned;
 import com.example.university.entity.Student;
-import com.example.university.entity.Subject;
-import com.example.university.entity.Teacher;
 import com.example.university.exception.EntityAlreadyAddedException;
+import com.example.university.exception.EntityVersionMismatchException;
+import com.example.university.exception.InvalidFieldsException;
+import com.example.university.exception.InvalidRequestParameterException;
 import com.example.university.exception.NoEntityFoundException;
 import com.example.university.mapper.StudentMapper;
-import com.example.university.mapper.SubjectMapper;
-import com.example.university.mapper.TeacherMapper;
 import com.example.university.repository.StudentRepository;
 import com.example.university.repository.SubjectRepository;
 import com.example.university.repository.TeacherRepository;
+import com.example.university.search.NamePrefixIndex;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import javax.validation.Validator;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -46,6 +66,9 @@ class StudentServiceImplTest {
     @InjectMocks
     private StudentServiceImpl service;
 
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @Mock
     private StudentRepository studentRepository;
 
@@ -59,14 +82,20 @@ class StudentServiceImplTest {
     private StudentMapper studentMapper;
 
     @Mock
-    private TeacherMapper teacherMapper;
+    private EntityManager entityManager;
+
+    @Mock
+    private NamePrefixIndex<StudentDto> nameIndex;
+
+    @Mock
+    private CacheManager cacheManager;
 
     @Mock
-    private SubjectMapper subjectMapper;
+    private Cache cache;
 
     @Test
-    void getAllStudents_WhenCalled_ReturnsListOfStudentDtos() {
-        Student student1 = Student.builder()
+    void getStudents_WhenCalled_ReturnsPageOfStudentDtos() {
+        StudentDto student1 = StudentDto.builder()
                 .id(1)
                 .firstName("ilyas")
                 .lastName("nasirov")
@@ -74,7 +103,7 @@ class StudentServiceImplTest {
                 .age(25)
                 .build();
 
-        Student student2 = Student.builder()
+        StudentDto student2 = StudentDto.builder()
                 .id(2)
                 .firstName("ivan")
                 .lastName("ivanov")
@@ -82,27 +111,112 @@ class StudentServiceImplTest {
                 .age(21)
                 .build();
 
-        Student student3 = Student.builder()
+        StudentDto student3 = StudentDto.builder()
                 .id(3)
                 .firstName("mixail")
                 .lastName("jekov")
                 .middleName("alekseivich")
                 .age(19)
                 .build();
-        List<Student> students = List.of(student1, student2, student3);
+        List<StudentDto> students = List.of(student1, student2, student3);
 
         when(studentRepository
-                .findAll())
+                .findDtosAfter(0, PageRequest.of(0, CursorPage.DEFAULT_LIMIT + 1)))
                 .thenReturn(students);
 
-        List<StudentDto> expectedDtos = students
-                .stream()
-                .map(studentMapper::entityToDto)
-                .collect(Collectors.toList());
+        CursorPage<StudentDto> page = service.getStudents(null, CursorPage.DEFAULT_LIMIT);
+        assertEquals(students, page.getItems());
+        assertNull(page.getNextCursor());
+        verify(studentRepository, times(1)).findDtosAfter(0, PageRequest.of(0, CursorPage.DEFAULT_LIMIT + 1));
+    }
+
+    @Test
+    void searchStudents_WhenPrefixIsBlank_ShouldThrowInvalidRequestParameterException() {
+        assertThrows(InvalidRequestParameterException.class, () -> service.searchStudents(" ", 10));
+        verify(nameIndex, never()).search(any(), anyInt());
+    }
+
+    @Test
+    void searchStudents_WhenIndexFindsIds_ReadsStudentsInIndexOrder() {
+        StudentDto student3 = StudentDto.builder().id(3).firstName("ilyas").lastName("nasirov").middleName("urakbayevich").age(25).build();
+        StudentDto student1 = StudentDto.builder().id(1).firstName("igor").lastName("jekov").middleName("mixailovich").age(31).build();
+        Set<Integer> ids = new LinkedHashSet<>(List.of(3, 1));
+        when(nameIndex.search("i", 10)).thenReturn(ids);
+        when(studentRepository.findDtosByIds(ids)).thenReturn(List.of(student1, student3));
+
+        assertEquals(List.of(student3, student1), service.searchStudents("i", 10));
+    }
+
+    @Test
+    void getStudentsByIds_WhenSomeStudentsDoNotExist_ReturnsFoundInRequestOrderAndReportsMissing() {
+        StudentDto student3 = StudentDto.builder().id(3).firstName("mixail").lastName("jekov").middleName("alekseivich").age(19).build();
+        StudentDto student1 = StudentDto.builder().id(1).firstName("ilyas").lastName("nasirov").middleName("urakbayevich").age(25).build();
+
+        when(studentRepository.findDtosByIds(new LinkedHashSet<>(List.of(3, 5, 1))))
+                .thenReturn(List.of(student1, student3));
+
+        BatchLookup<StudentDto> lookup = service.getStudentsByIds(List.of(3, 5, 1, 3));
+        assertEquals(List.of(student3, student1), lookup.getItems());
+        assertEquals(List.of(5), lookup.getMissingIds());
+        verify(studentRepository, times(1)).findDtosByIds(any());
+    }
+
+    @Test
+    void getStudentsByIds_WhenTooManyIds_ShouldThrowInvalidRequestParameterException() {
+        List<Integer> ids = IntStream.rangeClosed(1, BatchLookup.MAX_IDS + 1).boxed().collect(Collectors.toList());
+
+        assertThrows(InvalidRequestParameterException.class, () -> service.getStudentsByIds(ids));
+        verify(studentRepository, never()).findDtosByIds(any());
+    }
+
+    @Test
+    void getStudents_WhenFieldIsUnknown_ShouldThrowInvalidRequestParameterException() {
+        assertThrows(InvalidRequestParameterException.class, () -> service.getStudents(null, CursorPage.DEFAULT_LIMIT, "lastName,version"));
+        verify(entityManager, never()).getCriteriaBuilder();
+    }
+
+    @Test
+    void getStudents_WhenMoreStudentsThanLimit_ReturnsCursorOfLastStudent() {
+        List<StudentDto> students = List.of(
+                StudentDto.builder().id(4).firstName("ilyas").lastName("nasirov").middleName("urakbayevich").age(25).build(),
+                StudentDto.builder().id(7).firstName("ivan").lastName("ivanov").middleName("ivanovich").age(21).build(),
+                StudentDto.builder().id(9).firstName("mixail").lastName("jekov").middleName("alekseivich").age(19).build()
+        );
+
+        when(studentRepository
+                .findDtosAfter(3, PageRequest.of(0, 3)))
+                .thenReturn(students);
+
+        CursorPage<StudentDto> page = service.getStudents(CursorPage.encodeCursor(3), 2);
+        assertEquals(students.subList(0, 2), page.getItems());
+        assertEquals(CursorPage.encodeCursor(7), page.getNextCursor());
+    }
+
+    @Test
+    void getStudents_WhenLimitOutOfRange_ShouldThrowInvalidRequestParameterException() {
+        assertThrows(InvalidRequestParameterException.class, () -> service.getStudents(null, 0));
+        assertThrows(InvalidRequestParameterException.class, () -> service.getStudents(null, CursorPage.MAX_LIMIT + 1));
+        verify(studentRepository, never()).findDtosAfter(anyInt(), any());
+    }
+
+    @Test
+    void getStudents_WhenCursorIsMalformed_ShouldThrowInvalidRequestParameterException() {
+        assertThrows(InvalidRequestParameterException.class, () -> service.getStudents("not a cursor", 10));
+    }
 
-        List<StudentDto> actualDtos = service.getAllStudents();
-        assertEquals(expectedDtos, actualDtos);
-        verify(studentRepository, times(1)).findAll();
+    @Test
+    void exportStudents_WhenCalled_PassesEveryStudentToSink() {
+        StudentDto dto1 = StudentDto.builder().id(1).firstName("ilyas").lastName("nasirov").middleName("urakbayevich").age(25).build();
+        StudentDto dto2 = StudentDto.builder().id(2).firstName("ivan").lastName("ivanov").middleName("ivanovich").age(21).build();
+
+        when(studentRepository
+                .streamAllDtos())
+                .thenReturn(Stream.of(dto1, dto2));
+
+        List<StudentDto> exported = new ArrayList<>();
+        service.exportStudents(exported::add);
+
+        assertEquals(List.of(dto1, dto2), exported);
     }
 
     @Test
@@ -115,8 +229,17 @@ class StudentServiceImplTest {
     }
 
     @Test
-    void getStudentById_WhenStudentExists_ReturnsStudent() {
-        Student student1 = Student
+    void getStudentById_WhenStudentExists_ReturnsStudentWithItsVersion() {
+        Student student = Student
+                .builder()
+                .id(1)
+                .firstName("ilyas")
+                .lastName("nasirov")
+                .middleName("urakbayevich")
+                .age(25)
+                .version(4)
+                .build();
+        StudentDto studentDto = StudentDto
                 .builder()
                 .id(1)
                 .firstName("ilyas")
@@ -127,11 +250,13 @@ class StudentServiceImplTest {
 
         when(studentRepository
                 .findById(1))
-                .thenReturn(Optional.of(student1));
+                .thenReturn(Optional.of(student));
+        when(studentMapper
+                .entityToDto(student))
+                .thenReturn(studentDto);
 
-        StudentDto studentDto = studentMapper.entityToDto(student1);
-        assertEquals(studentDto, service.getStudentById(1));
-        verify(studentRepository, times(1)).findById(1);
+        assertEquals(new Versioned<>(studentDto, 4), service.getStudentById(1));
+        verify(studentRepository, never()).findDtoById(anyInt());
     }
 
     @Test
@@ -165,6 +290,28 @@ class StudentServiceImplTest {
                 .save(any(Student.class));
     }
 
+    @Test
+    void saveStudents_WhenCalled_PersistsEveryStudentWithNewIdAndFlushes() {
+        StudentDto dto1 = StudentDto.builder().id(7).firstName("ilyas").lastName("nasirov").middleName("urakbayevich").age(25).build();
+        StudentDto dto2 = StudentDto.builder().id(8).firstName("ivan").lastName("ivanov").middleName("ivanovich").age(21).build();
+        Student student1 = Student.builder().id(7).firstName("ilyas").build();
+        Student student2 = Student.builder().id(8).firstName("ivan").build();
+
+        when(studentMapper.dtoToEntity(dto1)).thenReturn(student1);
+        when(studentMapper.dtoToEntity(dto2)).thenReturn(student2);
+        when(studentMapper.entityToDto(student1)).thenReturn(dto1);
+        when(studentMapper.entityToDto(student2)).thenReturn(dto2);
+
+        assertEquals(List.of(dto1, dto2), service.saveStudents(List.of(dto1, dto2)));
+        assertEquals(0, student1.getId());
+        assertEquals(0, student2.getId());
+        verify(entityManager, times(1)).persist(student1);
+        verify(entityManager, times(1)).persist(student2);
+        verify(entityManager, times(1)).flush();
+        verify(entityManager, times(1)).clear();
+        verify(studentRepository, never()).save(any(Student.class));
+    }
+
     @Test
     void updateStudent_WhenStudentExists_ShouldUpdateStudent() {
         Student existingStudent = Student
@@ -196,7 +343,7 @@ class StudentServiceImplTest {
                 .entityToDto(existingStudent))
                 .thenReturn(studentDto);
 
-        StudentDto updatedStudentDto = service.updateStudent(existingStudent.getId(), studentDto);
+        StudentDto updatedStudentDto = service.updateStudent(existingStudent.getId(), studentDto, null);
         assertEquals(studentDto, updatedStudentDto);
 
         verify(studentRepository, times(1)).save(existingStudent);
@@ -204,6 +351,66 @@ class StudentServiceImplTest {
 
     }
 
+    @Test
+    void updateStudent_WhenVersionDoesNotMatch_ShouldThrowEntityVersionMismatchException() {
+        Student existingStudent = Student
+                .builder()
+                .id(1)
+                .firstName("ivan")
+                .lastName("ivanov")
+                .middleName("ivanovich")
+                .age(30)
+                .version(3)
+                .build();
+        StudentDto studentDto = StudentDto
+                .builder()
+                .id(1)
+                .firstName("igor")
+                .lastName("ivanov")
+                .middleName("ivanovich")
+                .age(30)
+                .build();
+
+        when(studentRepository
+                .findById(existingStudent.getId()))
+                .thenReturn(Optional.of(existingStudent));
+
+        assertThrows(EntityVersionMismatchException.class, () -> service.updateStudent(1, studentDto, 2L));
+        assertEquals("ivan", existingStudent.getFirstName());
+        verify(studentRepository, never()).save(any(Student.class));
+    }
+
+    @Test
+    void patchStudent_WhenFieldIsUnknown_ShouldThrowInvalidRequestParameterException() {
+        Map<String, Object> changes = Map.of("age", 20, "version", 3);
+
+        assertThrows(InvalidRequestParameterException.class, () -> service.patchStudent(1, changes, null));
+        verifyNoInteractions(entityManager);
+    }
+
+    @Test
+    void patchStudent_WhenValueBreaksConstraint_ShouldThrowInvalidFieldsException() {
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("firstName", null);
+        changes.put("age", 0);
+
+        InvalidFieldsException exception = assertThrows(InvalidFieldsException.class,
+                () -> service.patchStudent(1, changes, null));
+        assertEquals(Map.of("firstName", "First name cannot be null", "age", "Age must be greater than 0"), exception.getErrors());
+        verifyNoInteractions(entityManager);
+    }
+
+    @Test
+    void patchStudent_WhenAgeIsNull_ShouldThrowInvalidFieldsException() {
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("age", null);
+
+        InvalidFieldsException exception = assertThrows(InvalidFieldsException.class,
+                () -> service.patchStudent(1, changes, null));
+        assertEquals(Map.of("age", "Age cannot be null"), exception.getErrors());
+        verifyNoInteractions(entityManager);
+    }
+
     @Test
     void deleteStudent_WhenStudentExists_ShouldDeleteStudent() {
         Student student = Student
@@ -215,12 +422,20 @@ class StudentServiceImplTest {
                 .age(16)
                 .build();
 
+        when(teacherRepository
+                .findIdsOfStudents(List.of(student.getId())))
+                .thenReturn(List.of(3));
+        when(subjectRepository
+                .findIdsOfStudents(List.of(student.getId())))
+                .thenReturn(List.of(5));
         when(studentRepository
-                .findById(student.getId()))
-                .thenReturn(Optional.of(student));
+                .deleteByIds(List.of(student.getId())))
+                .thenReturn(1);
 
         service.deleteStudent(student.getId());
-        verify(studentRepository, times(1)).deleteById(student.getId());
+        verify(teacherRepository, times(1)).subtractStudents(List.of(student.getId()));
+        verify(subjectRepository, times(1)).subtractStudents(List.of(student.getId()));
+        verify(nameIndex, times(1)).remove(student.getId());
     }
 
     @Test
@@ -235,298 +450,207 @@ class StudentServiceImplTest {
                 .build();
 
         when(studentRepository
-                .findById(st1.getId()))
-                .thenReturn(Optional.empty());
+                .deleteByIds(List.of(st1.getId())))
+                .thenReturn(0);
 
         NoEntityFoundException exception = assertThrows(NoEntityFoundException.class, () -> service.deleteStudent(st1.getId()));
         assertEquals("There is no student with id " + st1.getId(), exception.getMessage());
-        verify(studentRepository, never()).deleteById(st1.getId());
+    }
+
+    @Test
+    void deleteStudents_WhenSomeIdsAreRepeatedOrMissing_ShouldDeleteEachStudentOnceAndCountDeleted() {
+        when(teacherRepository
+                .findIdsOfStudents(List.of(1, 2, 3)))
+                .thenReturn(List.of(4));
+        when(subjectRepository
+                .findIdsOfStudents(List.of(1, 2, 3)))
+                .thenReturn(List.of());
+        when(studentRepository
+                .deleteByIds(List.of(1, 2, 3)))
+                .thenReturn(2);
+        when(cacheManager.getCache(any())).thenReturn(cache);
+
+        assertEquals(2, service.deleteStudents(List.of(3, 1, 2, 1)));
+        verify(teacherRepository, times(1)).subtractStudents(List.of(1, 2, 3));
+        verify(subjectRepository, never()).subtractStudents(any());
+        verify(cacheManager, never()).getCache(CacheConfig.SUBJECTS);
+        verify(cache, times(1)).evict(1);
+        verify(cache, times(1)).evict(2);
+        verify(cache, times(1)).evict(3);
+        verify(cache, times(1)).evict(4);
+        verify(cache, never()).clear();
+        verify(nameIndex, times(1)).remove(1);
+        verify(nameIndex, times(1)).remove(2);
+        verify(nameIndex, times(1)).remove(3);
     }
 
     @Test
     void addTeacherToStudent_WhenStudentDoesNotExist_ShouldThrownNoEntityFoundException() {
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.empty());
+                .addTeacher(1, 1))
+                .thenReturn(0);
+        when(studentRepository
+                .existsById(1))
+                .thenReturn(false);
 
         assertThrows(NoEntityFoundException.class, () -> service.addTeacherToStudent(1, 1));
     }
 
     @Test
     void addTeacherToStudent_WhenTeacherDoesNotExist_ShouldThrownNoEntityFoundException() {
-        Student st1 = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .build();
-
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(st1));
-
+                .addTeacher(1, 1))
+                .thenReturn(0);
+        when(studentRepository
+                .existsById(1))
+                .thenReturn(true);
         when(teacherRepository
-                .findById(1))
-                .thenReturn(Optional.empty());
+                .existsById(1))
+                .thenReturn(false);
 
         assertThrows(NoEntityFoundException.class, () -> service.addTeacherToStudent(1, 1));
-        verify(studentRepository, times(1)).findById(1);
+        verify(studentRepository, times(1)).existsById(1);
     }
 
     @Test
     void addTeacherToStudent_WhenStudentAlreadyHasTeacher_ShouldThrownEntityAlreadyAddedException() {
-        Student student = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .teachers(new ArrayList<>())
-                .build();
-        Teacher teacher = Teacher
-                .builder()
-                .id(1)
-                .firstName("ivan")
-                .lastName("ivanov")
-                .middleName("ivanovich")
-                .age(31)
-                .build();
-
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
-
+                .addTeacher(1, 1))
+                .thenReturn(0);
+        when(studentRepository
+                .existsById(1))
+                .thenReturn(true);
         when(teacherRepository
-                .findById(1))
-                .thenReturn(Optional.of(teacher));
-
-        student.getTeachers().add(teacher);
+                .existsById(1))
+                .thenReturn(true);
 
-        assertThrows(EntityAlreadyAddedException.class, () -> service.addTeacherToStudent(student.getId(), teacher.getId()));
-        verify(studentRepository, never()).save(any(Student.class));
+        assertThrows(EntityAlreadyAddedException.class, () -> service.addTeacherToStudent(1, 1));
     }
 
     @Test
     void addTeacherToStudent_WhenTeacherDoesntExists_ShouldAddedTeacher() {
-        Student student = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .teachers(new ArrayList<>())
-                .build();
-        Teacher teacher = Teacher
-                .builder()
-                .id(1)
-                .firstName("ivan")
-                .lastName("ivanov")
-                .middleName("ivanovich")
-                .age(31)
-                .students(new ArrayList<>())
-                .build();
-
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
-
-        when(teacherRepository
-                .findById(1))
-
-                .thenReturn(Optional.of(teacher));
-
-        service.addTeacherToStudent(student.getId(), teacher.getId());
-        verify(teacherRepository, times(1)).save(any(Teacher.class));
+                .addTeacher(1, 1))
+                .thenReturn(1);
+
+        service.addTeacherToStudent(1, 1);
+        verify(studentRepository, times(1)).addTeacher(1, 1);
+        verify(studentRepository, never()).findById(anyInt());
+        verify(teacherRepository, never()).findById(anyInt());
+        verify(studentRepository, times(1)).incrementVersions(List.of(1));
+        verify(teacherRepository, times(1)).addToStudentCount(1, 1);
+        verify(teacherRepository, never()).findDtoById(anyInt());
     }
 
     @Test
     void getAllTeachersOfStudent_WhenStudentHasTeachers_ShouldReturnAllTeachers() {
-        Student student = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .teachers(new ArrayList<>())
-                .build();
-        Teacher teacher = Teacher
+        TeacherDto teacher = TeacherDto
                 .builder()
                 .id(1)
                 .firstName("ivan")
                 .lastName("ivanov")
                 .middleName("ivanovich")
-                .age(31).students(new ArrayList<>())
+                .age(31)
                 .build();
+        List<TeacherDto> teacherDtos = List.of(teacher);
 
-        student.getTeachers().add(teacher);
+        when(teacherRepository
+                .findTeachersOfStudent(1))
+                .thenReturn(teacherDtos);
 
-        when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
-        List<TeacherDto> teacherDtos = student
-                .getTeachers()
-                .stream()
-                .map(teacherMapper::entityToDto)
-                .collect(Collectors.toList());
+        assertEquals(teacherDtos, service.getAllTeachersOfStudent(1));
+        verify(teacherRepository, times(1)).findTeachersOfStudent(1);
+    }
+
+    @Test
+    void getAllTeachersOfStudent_WhenStudentDoesNotExist_ShouldThrowNoEntityFoundException() {
+        when(teacherRepository
+                .findTeachersOfStudent(1))
+                .thenReturn(List.of());
 
-        assertEquals(teacherDtos, service.getAllTeachersOfStudent(student.getId()));
-        verify(studentRepository, times(1)).findById(student.getId());
+        assertThrows(NoEntityFoundException.class, () -> service.getAllTeachersOfStudent(1));
     }
 
     @Test
     void getAllSubjectsOfStudent_WhenStudentHasSubjects_ShouldReturnAllSubjects() {
-        Student student = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .subjects(new ArrayList<>())
-                .build();
-
-        Subject subject = Subject
+        SubjectDto subject = SubjectDto
                 .builder()
                 .id(1)
                 .name("Math")
                 .build();
+        List<SubjectDto> subjectDtos = List.of(subject);
 
-        student.getSubjects().add(subject);
-
-        when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
-
-        List<SubjectDto> subjectDtos = student.getSubjects().stream().map(subjectMapper::entityToDto).collect(Collectors.toList());
+        when(subjectRepository
+                .findSubjectsOfStudent(1))
+                .thenReturn(subjectDtos);
 
-        assertEquals(subjectDtos, service.getAllSubjectsOfStudent(student.getId()));
-        verify(studentRepository, times(1)).findById(student.getId());
+        assertEquals(subjectDtos, service.getAllSubjectsOfStudent(1));
+        verify(subjectRepository, times(1)).findSubjectsOfStudent(1);
     }
 
     @Test
     void addSubjectToStudent_WhenStudentAlreadyHasSubject_ShouldThrownEntityAlreadyAddedException() {
-        Student student = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .subjects(new ArrayList<>())
-                .build();
-
-        Subject subject = Subject
-                .builder()
-                .id(1)
-                .name("Math")
-                .build();
-
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
-
+                .addSubject(1, 1))
+                .thenReturn(0);
+        when(studentRepository
+                .existsById(1))
+                .thenReturn(true);
         when(subjectRepository
-                .findById(1))
-                .thenReturn(Optional.of(subject));
-        student.getSubjects().add(subject);
+                .existsById(1))
+                .thenReturn(true);
 
-        assertThrows(EntityAlreadyAddedException.class, () -> service.addSubjectToStudent(student.getId(), subject.getId()));
-        verify(studentRepository, never()).save(any(Student.class));
+        assertThrows(EntityAlreadyAddedException.class, () -> service.addSubjectToStudent(1, 1));
+        verify(studentRepository, never()).addToSubjectCount(anyInt(), anyInt());
+        verify(subjectRepository, never()).addToStudentCount(anyInt(), anyInt());
     }
 
     @Test
     void addSubjectToStudent_WhenSubjectDoesntExists_ShouldAddedSubject() {
-        Student student = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .subjects(new ArrayList<>())
-                .build();
-
-        Subject subject = Subject
-                .builder()
-                .id(1)
-                .name("Math")
-                .build();
-
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
+                .addSubject(1, 1))
+                .thenReturn(1);
 
-        when(subjectRepository
-                .findById(1))
-                .thenReturn(Optional.of(subject));
-        service.addSubjectToStudent(student.getId(), subject.getId());
-        verify(studentRepository, times(1)).save(any(Student.class));
+        service.addSubjectToStudent(1, 1);
+        verify(studentRepository, times(1)).addSubject(1, 1);
+        verify(subjectRepository, never()).findById(anyInt());
     }
 
     @Test
     void deleteSubjectFromStudent_WhenSubjectExists_ShouldDeleteSubject() {
-        Student student = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .subjects(new ArrayList<>())
-                .build();
-
-        Subject subject = Subject
-                .builder()
-                .id(1)
-                .name("Math")
-                .build();
-        student.getSubjects().add(subject);
-
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
+                .removeSubject(1, 1))
+                .thenReturn(1);
+
+        service.deleteSubjectFromStudent(1, 1);
+        verify(studentRepository, times(1)).removeSubject(1, 1);
+        verify(studentRepository, never()).existsById(anyInt());
+        verify(studentRepository, times(1)).addToSubjectCount(1, -1);
+        verify(subjectRepository, times(1)).addToStudentCount(1, -1);
+    }
 
+    @Test
+    void deleteSubjectFromStudent_WhenSubjectDoesNotExist_ShouldThrowNoEntityFoundException() {
+        when(studentRepository
+                .removeSubject(1, 1))
+                .thenReturn(0);
+        when(studentRepository
+                .existsById(1))
+                .thenReturn(true);
         when(subjectRepository
-                .findById(1))
+                .existsById(1))
+                .thenReturn(false);
 
-                .thenReturn(Optional.of(subject));
-        service.deleteSubjectFromStudent(student.getId(), subject.getId());
+        assertThrows(NoEntityFoundException.class, () -> service.deleteSubjectFromStudent(1, 1));
     }
 
     @Test
     void deleteTeacherFromStudent_WhenTeacherExists_ShouldDeleteTeacher() {
-        Student student = Student.builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .teachers(new ArrayList<>())
-                .build();
-
-        Teacher teacher = Teacher.builder()
-                .id(1)
-                .firstName("ivan")
-                .lastName("ivanov")
-                .middleName("ivanovich")
-                .age(31)
-                .students(new ArrayList<>())
-                .build();
-
-        student.getTeachers().add(teacher);
-
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
+                .removeTeacher(1, 1))
+                .thenReturn(1);
 
-        when(teacherRepository
-                .findById(1))
-                .thenReturn(Optional.of(teacher));
-        service.deleteTeacherFromStudent(student.getId(), teacher.getId());
+        service.deleteTeacherFromStudent(1, 1);
+        verify(studentRepository, times(1)).removeTeacher(1, 1);
     }
 }
@@ -1,23 +1,43 @@
 package com.example.university.service;
 
+import com.example.university.config.CacheConfig;
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.SubjectDto;
+import com.example.university.dto.Versioned;
 import com.example.university.entity.Subject;
+import com.example.university.exception.EntityVersionMismatchException;
+import com.example.university.exception.InvalidFieldsException;
+import com.example.university.exception.InvalidRequestParameterException;
 import com.example.university.exception.NoEntityFoundException;
 import com.example.university.mapper.SubjectMapper;
+import com.example.university.repository.StudentRepository;
 import com.example.university.repository.SubjectRepository;
+import com.example.university.repository.TeacherRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -35,12 +55,42 @@ class SubjectServiceImplTest {
     @InjectMocks
     private SubjectServiceImpl service;
 
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @Mock
     private SubjectRepository subjectRepository;
 
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private TeacherRepository teacherRepository;
+
     @Mock
     private SubjectMapper subjectMapper;
 
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache cache;
+
+    @Test
+    void getSubjectsByIds_WhenNoIds_ShouldNotQuery() {
+        BatchLookup<SubjectDto> lookup = service.getSubjectsByIds(List.of());
+
+        assertEquals(List.of(), lookup.getItems());
+        assertEquals(List.of(), lookup.getMissingIds());
+        verify(subjectRepository, never()).findDtosByIds(any());
+    }
+
+    @Test
+    void getSubjectStats_WhenSortIsUnknown_ShouldThrowInvalidRequestParameterException() {
+        assertThrows(InvalidRequestParameterException.class, () -> service.getSubjectStats("teachers", null, CursorPage.DEFAULT_LIMIT));
+        verify(subjectRepository, never()).findStats(any(), anyLong(), anyInt(), anyInt());
+    }
+
     @Test
     void getSubjectById_WhenSubjectDoesNotExist_ShouldThrowNoEntityFoundException() {
         when(subjectRepository
@@ -52,8 +102,14 @@ class SubjectServiceImplTest {
     }
 
     @Test
-    void getSubjectById_WhenSubjectExists_ReturnsSubject() {
+    void getSubjectById_WhenSubjectExists_ReturnsSubjectWithItsVersion() {
         Subject subject = Subject
+                .builder()
+                .id(1)
+                .name("Math")
+                .version(6)
+                .build();
+        SubjectDto subjectDto = SubjectDto
                 .builder()
                 .id(1)
                 .name("Math")
@@ -62,30 +118,28 @@ class SubjectServiceImplTest {
         when(subjectRepository
                 .findById(1))
                 .thenReturn(Optional.of(subject));
+        when(subjectMapper
+                .entityToDto(subject))
+                .thenReturn(subjectDto);
 
-        assertEquals(subjectMapper.entityToDto(subject), service.getSubjectById(1));
-        verify(subjectRepository, times(1)).findById(1);
+        assertEquals(new Versioned<>(subjectDto, 6), service.getSubjectById(1));
+        verify(subjectRepository, never()).findDtoById(anyInt());
     }
 
     @Test
-    void getAllSubjects_WhenCalled_ReturnsListSubjectDtos() {
-        List<Subject> subjects = List.of(
-                Subject.builder().id(1).name("Math").build(),
-                Subject.builder().id(2).name("Russian").build(),
-                Subject.builder().id(3).name("English").build()
+    void getSubjects_WhenCalled_ReturnsPageOfSubjectDtos() {
+        List<SubjectDto> subjects = List.of(
+                SubjectDto.builder().id(1).name("Math").build(),
+                SubjectDto.builder().id(2).name("Russian").build(),
+                SubjectDto.builder().id(3).name("English").build()
         );
         when(subjectRepository
-                .findAll())
+                .findDtosAfter(0, PageRequest.of(0, CursorPage.DEFAULT_LIMIT + 1)))
                 .thenReturn(subjects);
 
-        List<SubjectDto> expectedDtos = subjects
-                .stream()
-                .map(subjectMapper::entityToDto)
-                .collect(Collectors.toList());
-
-        List<SubjectDto> actualDtos = service.getAllSubjects();
-        assertEquals(expectedDtos, actualDtos);
-        verify(subjectRepository, times(1)).findAll();
+        List<SubjectDto> actualDtos = service.getSubjects(null, CursorPage.DEFAULT_LIMIT).getItems();
+        assertEquals(subjects, actualDtos);
+        verify(subjectRepository, times(1)).findDtosAfter(0, PageRequest.of(0, CursorPage.DEFAULT_LIMIT + 1));
     }
 
     @Test
@@ -113,6 +167,17 @@ class SubjectServiceImplTest {
         verify(subjectRepository, times(1)).save(any(Subject.class));
     }
 
+    @Test
+    void saveSubjects_WhenTeacherDoesNotExist_ShouldThrowNoEntityFoundException() {
+        when(teacherRepository
+                .existsById(1))
+                .thenReturn(false);
+
+        List<SubjectDto> dtos = List.of(SubjectDto.builder().name("Math").build());
+        assertThrows(NoEntityFoundException.class, () -> service.saveSubjects(1, dtos));
+        verify(subjectMapper, never()).dtoToEntity(any());
+    }
+
     @Test
     void deleteSubject_WhenSubjectExists_ShouldDeleteSubject() {
         Subject subject = Subject
@@ -121,11 +186,28 @@ class SubjectServiceImplTest {
                 .name("Math")
                 .build();
 
+        when(studentRepository
+                .findIdsEnrolledInAny(List.of(subject.getId())))
+                .thenReturn(List.of(4, 6));
         when(subjectRepository
-                .findById(subject.getId()))
-                .thenReturn(Optional.of(subject));
+                .deleteByIds(List.of(subject.getId())))
+                .thenReturn(1);
+        when(cacheManager.getCache(any())).thenReturn(cache);
         service.deleteSubject(subject.getId());
-        verify(subjectRepository, times(1)).deleteById(subject.getId());
+        verify(studentRepository, times(1)).subtractSubjects(List.of(subject.getId()));
+        verify(cache, times(1)).evict(subject.getId());
+        verify(cache, times(1)).evict(4);
+        verify(cache, times(1)).evict(6);
+        verify(cache, never()).clear();
+    }
+
+    @Test
+    void deleteSubject_WhenSubjectDoesNotExist_ShouldThrowNoEntityFoundException() {
+        when(subjectRepository
+                .deleteByIds(List.of(1)))
+                .thenReturn(0);
+
+        assertThrows(NoEntityFoundException.class, () -> service.deleteSubject(1));
     }
 
     @Test
@@ -151,10 +233,79 @@ class SubjectServiceImplTest {
                 .entityToDto(existingSubject))
                 .thenReturn(subjectDto);
 
-        SubjectDto updatedSubjectDto = service.updateSubject(existingSubject.getId(), subjectDto);
+        SubjectDto updatedSubjectDto = service.updateSubject(existingSubject.getId(), subjectDto, null);
         assertEquals(subjectDto, updatedSubjectDto);
 
         verify(subjectRepository, times(1)).save(existingSubject);
         verify(subjectMapper, times(1)).entityToDto(existingSubject);
     }
+
+    @Test
+    void updateSubject_WhenVersionDoesNotMatch_ShouldThrowEntityVersionMismatchException() {
+        Subject existingSubject = Subject
+                .builder()
+                .id(1)
+                .name("Math")
+                .version(1)
+                .build();
+
+        when(subjectRepository
+                .findById(existingSubject.getId()))
+                .thenReturn(Optional.of(existingSubject));
+
+        assertThrows(EntityVersionMismatchException.class,
+                () -> service.updateSubject(1, SubjectDto.builder().name("Physics").build(), 0L));
+        assertEquals("Math", existingSubject.getName());
+        verify(subjectRepository, never()).save(any(Subject.class));
+    }
+
+    @Test
+    void patchSubject_WhenNameIsNull_ShouldThrowInvalidFieldsException() {
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("name", null);
+
+        InvalidFieldsException exception = assertThrows(InvalidFieldsException.class, () -> service.patchSubject(1, changes, null));
+        assertEquals(Map.of("name", "Name cannot be null"), exception.getErrors());
+        verifyNoInteractions(subjectRepository);
+    }
+
+    @Test
+    void addStudentsToSubject_WhenSomeStudentsAreEnrolled_ShouldInsertAndTouchOnlyNewStudents() {
+        when(subjectRepository
+                .existsById(1))
+                .thenReturn(true);
+        when(studentRepository
+                .findExistingIds(List.of(1, 2, 3)))
+                .thenReturn(List.of(1, 2, 3));
+        when(studentRepository
+                .findIdsEnrolledIn(1, List.of(1, 2, 3)))
+                .thenReturn(List.of(2));
+        when(studentRepository
+                .addSubjectToStudents(1, List.of(1, 3)))
+                .thenReturn(2);
+        when(cacheManager.getCache(CacheConfig.STUDENTS)).thenReturn(cache);
+
+        assertEquals(2, service.addStudentsToSubject(1, List.of(3, 1, 2, 3)));
+        verify(studentRepository, times(1)).recountSubjects(List.of(1, 3));
+        verify(studentRepository, never()).findDtosByIds(any());
+        verify(cache, times(1)).evict(1);
+        verify(cache, times(1)).evict(3);
+        verify(cache, never()).evict(2);
+        verify(subjectRepository, times(1)).addToStudentCount(1, 2);
+    }
+
+    @Test
+    void addStudentsToSubject_WhenSomeStudentsDoNotExist_ShouldThrowNoEntityFoundException() {
+        when(subjectRepository
+                .existsById(1))
+                .thenReturn(true);
+        when(studentRepository
+                .findExistingIds(List.of(1, 2, 3)))
+                .thenReturn(List.of(2));
+
+        NoEntityFoundException e = assertThrows(NoEntityFoundException.class,
+                () -> service.addStudentsToSubject(1, List.of(1, 2, 3)));
+        assertEquals("Students are not found with ids [1, 3]", e.getMessage());
+        verify(studentRepository, never()).addSubjectToStudents(anyInt(), any());
+    }
 }
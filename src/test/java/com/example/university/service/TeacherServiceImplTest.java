@@ -1,34 +1,49 @@
 package com.example.university.service;
 
+import com.example.university.config.CacheConfig;
+import com.example.university.dto.BatchLookup;
+import com.example.university.dto.CursorPage;
 import com.example.university.dto.StudentDto;
 import com.example.university.dto.SubjectDto;
 import com.example.university.dto.TeacherDto;
-import com.example.university.entity.Student;
+import com.example.university.dto.TeacherStats;
+import com.example.university.dto.Versioned;
 import com.example.university.entity.Subject;
 import com.example.university.entity.Teacher;
 import com.example.university.exception.EntityAlreadyAddedException;
+import com.example.university.exception.EntityVersionMismatchException;
+import com.example.university.exception.InvalidRequestParameterException;
 import com.example.university.exception.NoEntityFoundException;
-import com.example.university.mapper.StudentMapper;
 import com.example.university.mapper.SubjectMapper;
 import com.example.university.mapper.TeacherMapper;
 import com.example.university.repository.StudentRepository;
 import com.example.university.repository.SubjectRepository;
 import com.example.university.repository.TeacherRepository;
+import com.example.university.search.NamePrefixIndex;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import javax.validation.Validation;
+import javax.validation.Validator;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -47,6 +62,9 @@ class TeacherServiceImplTest {
     @InjectMocks
     private TeacherServiceImpl service;
 
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @Mock
     private StudentRepository studentRepository;
 
@@ -56,18 +74,24 @@ class TeacherServiceImplTest {
     @Mock
     private SubjectRepository subjectRepository;
 
-    @Mock
-    private StudentMapper studentMapper;
-
     @Mock
     private TeacherMapper teacherMapper;
 
     @Mock
     private SubjectMapper subjectMapper;
 
+    @Mock
+    private NamePrefixIndex<TeacherDto> nameIndex;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache cache;
+
     @Test
-    void getAllTeachers_WhenCalled_ReturnsListTeacherDtos() {
-        Teacher teacher1 = Teacher
+    void getTeachers_WhenCalled_ReturnsPageOfTeacherDtos() {
+        TeacherDto teacher1 = TeacherDto
                 .builder()
                 .id(1)
                 .firstName("ivan")
@@ -75,7 +99,7 @@ class TeacherServiceImplTest {
                 .middleName("ivanovich")
                 .age(31)
                 .build();
-        Teacher teacher2 = Teacher
+        TeacherDto teacher2 = TeacherDto
                 .builder()
                 .id(2)
                 .firstName("zaur")
@@ -83,7 +107,7 @@ class TeacherServiceImplTest {
                 .middleName("alekseivich")
                 .age(37)
                 .build();
-        Teacher teacher3 = Teacher
+        TeacherDto teacher3 = TeacherDto
                 .builder()
                 .id(3)
                 .firstName("aleksey")
@@ -92,19 +116,47 @@ class TeacherServiceImplTest {
                 .age(25)
                 .build();
 
-        List<Teacher> teachers = List.of(teacher1, teacher2, teacher3);
+        List<TeacherDto> teachers = List.of(teacher1, teacher2, teacher3);
 
         when(teacherRepository
-                .findAll())
+                .findDtosAfter(0, PageRequest.of(0, CursorPage.DEFAULT_LIMIT + 1)))
                 .thenReturn(teachers);
-        List<TeacherDto> expectedDtos = teachers
-                .stream()
-                .map(teacherMapper::entityToDto)
-                .collect(Collectors.toList());
-
-        List<TeacherDto> actualDtos = service.getAllTeachers();
-        assertEquals(expectedDtos, actualDtos);
-        verify(teacherRepository, times(1)).findAll();
+
+        List<TeacherDto> actualDtos = service.getTeachers(null, CursorPage.DEFAULT_LIMIT).getItems();
+        assertEquals(teachers, actualDtos);
+        verify(teacherRepository, times(1)).findDtosAfter(0, PageRequest.of(0, CursorPage.DEFAULT_LIMIT + 1));
+    }
+
+    @Test
+    void getTeachersByIds_WhenSomeTeachersDoNotExist_ReturnsFoundInRequestOrderAndReportsMissing() {
+        TeacherDto teacher1 = TeacherDto.builder().id(1).firstName("ilyas").lastName("nasirov").middleName("urakbayevich").age(25).build();
+        TeacherDto teacher2 = TeacherDto.builder().id(2).firstName("ivan").lastName("ivanov").middleName("ivanovich").age(41).build();
+
+        when(teacherRepository.findDtosByIds(any()))
+                .thenReturn(List.of(teacher1, teacher2));
+
+        BatchLookup<TeacherDto> lookup = service.getTeachersByIds(List.of(2, 8, 1, 9));
+        assertEquals(List.of(teacher2, teacher1), lookup.getItems());
+        assertEquals(List.of(8, 9), lookup.getMissingIds());
+    }
+
+    @Test
+    void getTeacherStats_WhenSortedByStudents_ReturnsCursorOfLastCountAndId() {
+        TeacherStats lastOfPage = mock(TeacherStats.class);
+        when(lastOfPage.getId()).thenReturn(7);
+        when(lastOfPage.getStudentCount()).thenReturn(5L);
+        List<TeacherStats> stats = List.of(mock(TeacherStats.class), lastOfPage, mock(TeacherStats.class));
+
+        when(teacherRepository
+                .findStats("students", Long.MAX_VALUE, 0, 3))
+                .thenReturn(stats);
+
+        CursorPage<TeacherStats> page = service.getTeacherStats("students", null, 2);
+        assertEquals(stats.subList(0, 2), page.getItems());
+
+        CursorPage.Position position = CursorPage.decodeKeyedCursor(page.getNextCursor());
+        assertEquals(5, position.getKey());
+        assertEquals(7, position.getId());
     }
 
     @Test
@@ -118,8 +170,17 @@ class TeacherServiceImplTest {
     }
 
     @Test
-    void getTeacherById_WhenTeacherExists_ReturnsTeacher() {
+    void getTeacherById_WhenTeacherExists_ReturnsTeacherWithItsVersion() {
         Teacher teacher = Teacher
+                .builder()
+                .id(1)
+                .firstName("ivan")
+                .lastName("ivanov")
+                .middleName("ivanovich")
+                .age(31)
+                .version(2)
+                .build();
+        TeacherDto teacherDto = TeacherDto
                 .builder()
                 .id(1)
                 .firstName("ivan")
@@ -131,10 +192,12 @@ class TeacherServiceImplTest {
         when(teacherRepository
                 .findById(1))
                 .thenReturn(Optional.of(teacher));
+        when(teacherMapper
+                .entityToDto(teacher))
+                .thenReturn(teacherDto);
 
-        TeacherDto teacherDto = teacherMapper.entityToDto(teacher);
-        assertEquals(teacherDto, service.getTeacherById(1));
-        verify(teacherRepository, times(1)).findById(1);
+        assertEquals(new Versioned<>(teacherDto, 2), service.getTeacherById(1));
+        verify(teacherRepository, never()).findDtoById(anyInt());
     }
 
     @Test
@@ -194,12 +257,48 @@ class TeacherServiceImplTest {
                 .entityToDto(existingTeacher))
                 .thenReturn(teacherDto);
 
-        TeacherDto updatedTeacherDto = service.updateTeacher(existingTeacher.getId(), teacherDto);
+        TeacherDto updatedTeacherDto = service.updateTeacher(existingTeacher.getId(), teacherDto, 0L);
         assertEquals(teacherDto, updatedTeacherDto);
         verify(teacherRepository, times(1)).save(any(Teacher.class));
         verify(teacherMapper, times(1)).entityToDto(existingTeacher);
     }
 
+    @Test
+    void updateTeacher_WhenVersionDoesNotMatch_ShouldThrowEntityVersionMismatchException() {
+        Teacher existingTeacher = Teacher
+                .builder()
+                .id(1)
+                .firstName("ivan")
+                .lastName("ivanov")
+                .middleName("ivanovich")
+                .age(30)
+                .version(5)
+                .build();
+
+        when(teacherRepository
+                .findById(existingTeacher.getId()))
+                .thenReturn(Optional.of(existingTeacher));
+
+        assertThrows(EntityVersionMismatchException.class, () -> service.updateTeacher(1, TeacherDto.builder().build(), 4L));
+        verify(teacherRepository, never()).save(any(Teacher.class));
+    }
+
+    @Test
+    void patchTeacher_WhenOnlyReadOnlyFieldsAreGiven_ShouldThrowInvalidRequestParameterException() {
+        Map<String, Object> changes = Map.of("id", 2, "studentCount", 10);
+
+        assertThrows(InvalidRequestParameterException.class, () -> service.patchTeacher(1, changes, null));
+        verifyNoInteractions(teacherRepository);
+    }
+
+    @Test
+    void patchTeacher_WhenValueHasWrongType_ShouldThrowInvalidRequestParameterException() {
+        Map<String, Object> changes = Map.of("age", "thirty");
+
+        assertThrows(InvalidRequestParameterException.class, () -> service.patchTeacher(1, changes, null));
+        verifyNoInteractions(teacherRepository);
+    }
+
     @Test
     void deleteTeacher_WhenTeacherExists_ShouldDeleteTeacher() {
         Teacher teacher = Teacher
@@ -211,11 +310,37 @@ class TeacherServiceImplTest {
                 .age(31)
                 .build();
 
+        when(subjectRepository
+                .findIdsOfTeachers(List.of(teacher.getId())))
+                .thenReturn(List.of(5));
+        when(studentRepository
+                .findIdsEnrolledInAny(List.of(5)))
+                .thenReturn(List.of(7));
         when(teacherRepository
-                .findById(teacher.getId()))
-                .thenReturn(Optional.of(teacher));
+                .deleteByIds(List.of(teacher.getId())))
+                .thenReturn(1);
+        when(cacheManager.getCache(any())).thenReturn(cache);
         service.deleteTeacher(teacher.getId());
-        verify(teacherRepository, times(1)).deleteById(teacher.getId());
+        verify(studentRepository, times(1)).subtractSubjects(List.of(5));
+        verify(nameIndex, times(1)).remove(teacher.getId());
+        verify(cacheManager, times(1)).getCache(CacheConfig.TEACHERS);
+        verify(cacheManager, times(1)).getCache(CacheConfig.SUBJECTS);
+        verify(cacheManager, times(1)).getCache(CacheConfig.STUDENTS);
+        verify(cache, times(1)).evict(teacher.getId());
+        verify(cache, times(1)).evict(5);
+        verify(cache, times(1)).evict(7);
+        verify(cache, never()).clear();
+    }
+
+    @Test
+    void deleteTeachers_WhenIdsAreMissing_ShouldSkipThemAndCountDeleted() {
+        when(teacherRepository
+                .deleteByIds(List.of(4, 8)))
+                .thenReturn(1);
+
+        assertEquals(1, service.deleteTeachers(List.of(8, 4)));
+        verify(studentRepository, never()).findIdsEnrolledInAny(any());
+        verify(studentRepository, never()).subtractSubjects(any());
     }
 
     @Test
@@ -293,166 +418,192 @@ class TeacherServiceImplTest {
 
     @Test
     void getAllSubjectsOfTeacher_WhenTeacherHasSubjects_ShouldReturnAllSubjects() {
-        Teacher teacher = Teacher
-                .builder()
-                .id(1)
-                .firstName("igor")
-                .lastName("jekov")
-                .middleName("Mixailovich")
-                .age(31)
-                .subjects(new ArrayList<>())
-                .build();
-
-        Subject subject = Subject
+        SubjectDto subject = SubjectDto
                 .builder()
                 .id(1)
                 .name("Math")
                 .build();
+        List<SubjectDto> subjectDtos = List.of(subject);
 
-        teacher.getSubjects().add(subject);
+        when(subjectRepository
+                .findSubjectsOfTeacher(1))
+                .thenReturn(subjectDtos);
 
-        when(teacherRepository
-                .findById(1))
-                .thenReturn(Optional.of(teacher));
-        List<SubjectDto> subjectDtos = teacher
-                .getSubjects()
-                .stream()
-                .map(subjectMapper::entityToDto)
-                .collect(Collectors.toList());
-
-        assertEquals(subjectDtos, service.getAllSubjectsOfTeacher(teacher.getId()));
-        verify(teacherRepository, times(1)).findById(teacher.getId());
+        assertEquals(subjectDtos, service.getAllSubjectsOfTeacher(1));
+        verify(subjectRepository, times(1)).findSubjectsOfTeacher(1);
+        verify(teacherRepository, never()).findById(1);
     }
 
     @Test
-    void deleteSubjectFromTeacher_WhenSubjectExists_ShouldDeleteSubject() {
-        Teacher teacher = Teacher
-                .builder()
-                .id(1)
-                .firstName("igor")
-                .lastName("jekov")
-                .middleName("Mixailovich")
-                .age(31)
-                .subjects(new ArrayList<>())
-                .build();
+    void getAllSubjectsOfTeacher_WhenTeacherHasNoSubjects_ShouldReturnEmptyList() {
+        when(subjectRepository
+                .findSubjectsOfTeacher(1))
+                .thenReturn(List.of(SubjectDto.builder().id(0).build()));
 
-        Subject subject = Subject
-                .builder()
-                .id(1)
-                .name("Math")
-                .build();
+        assertEquals(List.of(), service.getAllSubjectsOfTeacher(1));
+    }
 
-        teacher.getSubjects().add(subject);
-        when(teacherRepository
-                .findById(1))
-                .thenReturn(Optional.of(teacher));
+    @Test
+    void getAllSubjectsOfTeacher_WhenTeacherDoesNotExist_ShouldThrowNoEntityFoundException() {
         when(subjectRepository
-                .findById(1))
+                .findSubjectsOfTeacher(1))
+                .thenReturn(List.of());
 
-                .thenReturn(Optional.of(subject));
-        service.deleteSubjectOfTeacher(teacher.getId(), subject.getId());
-        assertEquals(0, teacher.getSubjects().size());
+        assertThrows(NoEntityFoundException.class, () -> service.getAllSubjectsOfTeacher(1));
+    }
+
+    @Test
+    void deleteSubjectFromTeacher_WhenSubjectExists_ShouldDeleteSubject() {
+        when(studentRepository.findIdsEnrolledInAny(List.of(1))).thenReturn(List.of(3));
+        when(subjectRepository.deleteOfTeacher(1, 2)).thenReturn(1);
+        when(cacheManager.getCache(CacheConfig.STUDENTS)).thenReturn(cache);
+
+        service.deleteSubjectOfTeacher(2, 1);
+
+        verify(studentRepository, times(1)).subtractSubjectOfTeacher(1, 2);
+        verify(cache, times(1)).evict(3);
+        verify(teacherRepository, never()).findById(anyInt());
+        verify(subjectRepository, never()).findById(anyInt());
+    }
+
+    @Test
+    void deleteSubjectFromTeacher_WhenTeacherDoesNotExist_ShouldThrowNoEntityFoundException() {
+        when(subjectRepository.deleteOfTeacher(1, 2)).thenReturn(0);
+        when(teacherRepository.existsById(2)).thenReturn(false);
+
+        assertThrows(NoEntityFoundException.class, () -> service.deleteSubjectOfTeacher(2, 1));
     }
 
     @Test
     void getAllStudentsOfTeacher_WhenTeacherHasStudents_ShouldReturnAllStudents() {
-        Teacher teacher = Teacher
-                .builder()
-                .id(1)
-                .firstName("igor")
-                .lastName("jekov")
-                .middleName("Mixailovich")
-                .age(31)
-                .students(new ArrayList<>())
-                .build();
-        Student student = Student
+        StudentDto student = StudentDto
                 .builder()
                 .id(1)
                 .firstName("ilyas")
                 .lastName("nasirov")
                 .middleName("urakbayevich")
                 .age(25)
-                .teachers(new ArrayList<>())
                 .build();
+        List<StudentDto> studentDtos = List.of(student);
 
-        teacher.getStudents().add(student);
+        when(studentRepository
+                .findStudentsOfTeacher(1))
+                .thenReturn(studentDtos);
 
-        when(teacherRepository
-                .findById(1))
-                .thenReturn(Optional.of(teacher));
-        List<StudentDto> studentDtos = teacher
-                .getStudents()
-                .stream()
-                .map(studentMapper::entityToDto)
-                .collect(Collectors.toList());
-
-        assertEquals(studentDtos, service.getAllStudentsOfTeacher(teacher.getId()));
-        verify(teacherRepository, times(1)).findById(teacher.getId());
+        assertEquals(studentDtos, service.getAllStudentsOfTeacher(1));
+        verify(studentRepository, times(1)).findStudentsOfTeacher(1);
+    }
+
+    @Test
+    void getAllStudentsOfTeacher_WhenTeacherDoesNotExist_ShouldThrowNoEntityFoundException() {
+        when(studentRepository
+                .findStudentsOfTeacher(1))
+                .thenReturn(List.of());
+
+        assertThrows(NoEntityFoundException.class, () -> service.getAllStudentsOfTeacher(1));
     }
 
     @Test
     void deleteStudentOfTeacher_WhenStudentExists_ShouldDeleteStudent() {
-        Teacher teacher = Teacher
-                .builder()
-                .id(1)
-                .firstName("igor")
-                .lastName("jekov")
-                .middleName("Mixailovich")
-                .age(31)
-                .students(new ArrayList<>())
-                .build();
-        Student student = Student
-                .builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .teachers(new ArrayList<>())
-                .build();
-        teacher.getStudents().add(student);
+        when(studentRepository
+                .removeTeacher(1, 1))
+                .thenReturn(1);
 
+        service.deleteStudentOfTeacher(1, 1);
+        verify(studentRepository, times(1)).removeTeacher(1, 1);
+        verify(teacherRepository, never()).findById(1);
+        verify(teacherRepository, times(1)).addToStudentCount(1, -1);
+    }
+
+    @Test
+    void deleteStudentOfTeacher_WhenStudentIsNotAdded_ShouldDoNothing() {
+        when(studentRepository
+                .removeTeacher(1, 1))
+                .thenReturn(0);
         when(teacherRepository
-                .findById(1))
-                .thenReturn(Optional.of(teacher));
+                .existsById(1))
+                .thenReturn(true);
         when(studentRepository
-                .findById(1))
+                .existsById(1))
+                .thenReturn(true);
 
-                .thenReturn(Optional.of(student));
-        service.deleteStudentOfTeacher(teacher.getId(), student.getId());
-
-        verify(teacherRepository).save(teacher);
+        service.deleteStudentOfTeacher(1, 1);
     }
 
     @Test
     void addStudentToTeacher_WhenStudentDoesntExists_ShouldAddedStudent() {
-        Teacher teacher = Teacher.builder()
-                .id(1)
-                .firstName("igor")
-                .lastName("jekov")
-                .middleName("Mixailovich")
-                .age(31)
-                .students(new ArrayList<>())
-                .build();
-        Student student = Student.builder()
-                .id(1)
-                .firstName("ilyas")
-                .lastName("nasirov")
-                .middleName("urakbayevich")
-                .age(25)
-                .teachers(new ArrayList<>())
-                .build();
+        when(studentRepository
+                .addTeacher(1, 1))
+                .thenReturn(1);
 
+        service.addStudentToTeacher(1, 1);
+        verify(studentRepository, times(1)).addTeacher(1, 1);
+        verify(teacherRepository, never()).save(any(Teacher.class));
+        verify(teacherRepository, times(1)).addToStudentCount(1, 1);
+    }
+
+    @Test
+    void addStudentToTeacher_WhenStudentAlreadyAdded_ShouldThrowEntityAlreadyAddedException() {
+        when(studentRepository
+                .addTeacher(1, 1))
+                .thenReturn(0);
         when(teacherRepository
-                .findById(1))
-                .thenReturn(Optional.of(teacher));
+                .existsById(1))
+                .thenReturn(true);
+        when(studentRepository
+                .existsById(1))
+                .thenReturn(true);
+
+        assertThrows(EntityAlreadyAddedException.class, () -> service.addStudentToTeacher(1, 1));
+    }
+
+    @Test
+    void addStudentsToTeacher_WhenTeacherDoesNotExist_ShouldThrowNoEntityFoundException() {
+        when(teacherRepository
+                .existsById(1))
+                .thenReturn(false);
 
+        assertThrows(NoEntityFoundException.class, () -> service.addStudentsToTeacher(1, List.of(1, 2)));
+        verify(studentRepository, never()).findExistingIds(any());
+    }
+
+    @Test
+    void addStudentsToTeacher_WhenAllStudentsExist_ShouldReturnNumberOfAddedStudents() {
+        when(teacherRepository
+                .existsById(1))
+                .thenReturn(true);
         when(studentRepository
-                .findById(1))
-                .thenReturn(Optional.of(student));
+                .findExistingIds(List.of(1, 2)))
+                .thenReturn(List.of(1, 2));
+        when(studentRepository
+                .addTeacherToStudents(1, List.of(1, 2)))
+                .thenReturn(2);
+        when(cacheManager.getCache(CacheConfig.STUDENTS)).thenReturn(cache);
+
+        assertEquals(2, service.addStudentsToTeacher(1, List.of(1, 2)));
+        verify(studentRepository, times(1)).incrementVersions(List.of(1, 2));
+        verify(teacherRepository, times(1)).addToStudentCount(1, 2);
+        verify(cache, times(1)).evict(1);
+        verify(cache, times(1)).evict(2);
+        verify(teacherRepository, never()).findDtoById(anyInt());
+    }
+
+    @Test
+    void addStudentsToTeacher_WhenAllStudentsAreAdded_ShouldNotTouchStudents() {
+        when(teacherRepository
+                .existsById(1))
+                .thenReturn(true);
+        when(studentRepository
+                .findExistingIds(List.of(1, 2)))
+                .thenReturn(List.of(1, 2));
+        when(studentRepository
+                .findIdsAssignedTo(1, List.of(1, 2)))
+                .thenReturn(List.of(2, 1));
 
-        service.addStudentToTeacher(teacher.getId(), student.getId());
-        verify(teacherRepository, times(1)).save(teacher);
+        assertEquals(0, service.addStudentsToTeacher(1, List.of(1, 2)));
+        verify(studentRepository, never()).addTeacherToStudents(anyInt(), any());
+        verify(studentRepository, never()).incrementVersions(any());
+        verify(teacherRepository, never()).addToStudentCount(anyInt(), anyInt());
     }
 
 }